@@ -0,0 +1 @@
+java -Dlogback.configurationFile=logback.xml -Dfile.encoding="UTF-8" -cp robozonky-app-${project.version}.jar com.github.triceo.robozonky.strategy.rules.StrategyCompiler %*
@@ -0,0 +1,3 @@
+#!/bin/bash
+BASEDIR=$(dirname "$0")
+$JAVA_HOME/bin/java -Dlogback.configurationFile=logback.xml -Dfile.encoding="UTF-8" -cp $BASEDIR/robozonky-app-${project.version}.jar com.github.triceo.robozonky.strategy.rules.StrategyCompiler "$@"
@@ -31,10 +31,12 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.github.triceo.robozonky.Investor;
+import com.github.triceo.robozonky.Marketplace;
 import com.github.triceo.robozonky.app.authentication.AuthenticationHandler;
 import com.github.triceo.robozonky.app.util.UnrecoverableRoboZonkyException;
 import com.github.triceo.robozonky.app.version.VersionCheck;
 import com.github.triceo.robozonky.authentication.Authentication;
+import com.github.triceo.robozonky.authentication.Authenticator;
 import com.github.triceo.robozonky.remote.Investment;
 import com.github.triceo.robozonky.remote.ZonkyApi;
 import org.slf4j.Logger;
@@ -50,29 +52,46 @@ class App {
         System.exit(returnCode.getCode());
     }
 
-    static Optional<AppContext> processCommandLine(final String... args) {
+    /**
+     * Start setting up the application.
+     *
+     * @param logInEarly Whether to log in in parallel with the rest of the setup.
+     * @param args Command line arguments.
+     * @return Empty when the command line could not be parsed.
+     */
+    private static Optional<Bootstrap> bootstrap(final boolean logInEarly, final String... args) {
         final Optional<CommandLineInterface> optionalCli = CommandLineInterface.parse(args);
         if (!optionalCli.isPresent()) {
             return Optional.empty();
         }
         final CommandLineInterface cli = optionalCli.get();
-        final Optional<AuthenticationHandler> auth = new AuthenticationHandlerProvider().apply(cli);
-        if (!auth.isPresent()) {
-            return Optional.empty();
-        }
-        return cli.getCliOperatingMode().setup(cli, auth.get());
+        // daemon logs in by itself once the sessions start
+        final boolean logIn = logInEarly && cli.getCliOperatingMode() != OperatingMode.DAEMON;
+        return Optional.of(new Bootstrap(cli, new AuthenticationHandlerProvider(), logIn));
+    }
+
+    static Optional<AppContext> processCommandLine(final String... args) {
+        return App.bootstrap(false, args).flatMap(Bootstrap::getContext);
     }
 
-    private static void core(final AppContext ctx) throws UnrecoverableRoboZonkyException {
+    private static void core(final AppContext ctx, final Bootstrap bootstrap) throws UnrecoverableRoboZonkyException {
         App.LOGGER.info("===== RoboZonky at your service! =====");
         final boolean isDryRun = ctx.isDryRun();
         if (isDryRun) {
             App.LOGGER.info("RoboZonky is doing a dry run. It will simulate investing, but not invest any real money.");
         }
-        final Collection<Investment> result = App.invest(ctx); // perform the investing operations
+        if (ctx.getOperatingMode() == OperatingMode.DAEMON) {
+            new Daemon(ctx).run(); // will only return after the daemon was stopped
+        } else {
+            final Collection<Investment> result = App.invest(ctx, bootstrap); // perform the investing operations
+            App.reportInvestmentsMade(result, isDryRun);
+        }
+        App.LOGGER.info("===== RoboZonky out. =====");
+    }
+
+    static void reportInvestmentsMade(final Collection<Investment> result, final boolean isDryRun) {
         App.storeInvestmentsMade(result, isDryRun);
         App.LOGGER.info("RoboZonky {}invested into {} loans.", isDryRun ? "would have " : "", result.size());
-        App.LOGGER.info("===== RoboZonky out. =====");
     }
 
     public static void main(final String... args) {
@@ -81,10 +100,12 @@ class App {
                 System.getProperty("java.version"), System.getProperty("os.name"), System.getProperty("os.version"),
                 System.getProperty("os.arch"), Locale.getDefault());
         final Future<String> latestVersion = VersionCheck.retrieveLatestVersion();
+        Authenticator.warmUp(); // HTTP client infrastructure initializes while strategy is being loaded
         try {
-            final Optional<AppContext> optionalCtx = App.processCommandLine(args);
+            final Optional<Bootstrap> bootstrap = App.bootstrap(true, args);
+            final Optional<AppContext> optionalCtx = bootstrap.flatMap(Bootstrap::getContext);
             if (optionalCtx.isPresent()) {
-                App.core(optionalCtx.get());
+                App.core(optionalCtx.get(), bootstrap.get());
                 App.exit(ReturnCode.OK, latestVersion);
             } else {
                 App.exit(ReturnCode.ERROR_WRONG_PARAMETERS, latestVersion);
@@ -99,11 +120,16 @@ class App {
     }
 
     /**
-     * Check the current version against a different version. Print log message with results.
+     * Check the current version against a different version. Print log message with results. Never waits for the
+     * version to be retrieved, so that it can not delay the application.
      * @param futureVersion Version to check against.
      * @return True when a more recent version was found.
      */
     static boolean newerRoboZonkyVersionExists(final Future<String> futureVersion) {
+        if (!futureVersion.isDone()) {
+            App.LOGGER.debug("Version check did not finish in time, skipping.");
+            return false;
+        }
         try {
             final String version = futureVersion.get();
             final boolean hasNewer = VersionCheck.isCurrentVersionOlderThan(version);
@@ -153,7 +179,7 @@ class App {
     }
 
     static Function<Investor, Collection<Investment>> getInvestingFunction(final AppContext ctx) {
-        final boolean useStrategy = ctx.getOperatingMode() == OperatingMode.STRATEGY_DRIVEN;
+        final boolean useStrategy = ctx.getOperatingMode() != OperatingMode.USER_DRIVEN;
         // figure out what to execute
         return useStrategy ? Investor::invest : i -> {
             final Optional<Investment> optional = i.invest(ctx.getLoanId(), ctx.getLoanAmount());
@@ -161,14 +187,45 @@ class App {
         };
     }
 
-    private static Collection<Investment> invest(final AppContext ctx) throws UnrecoverableRoboZonkyException {
+    /**
+     * Perform one investing session with an existing login.
+     *
+     * @param ctx Application context.
+     * @param login Authenticated APIs.
+     * @return Investments made in the session.
+     */
+    static Collection<Investment> invest(final AppContext ctx, final Authentication login) {
+        final BigDecimal balance = App.getAvailableBalance(ctx, login.getZonkyApi());
+        final Investor i = ctx.getOperatingMode() == OperatingMode.USER_DRIVEN ? // no loans to retrieve
+                new Investor(login.getZonkyApi(), login.getZotifyApi(), ctx.getInvestmentStrategy(), balance) :
+                new Investor(login.getZonkyApi(), login.getZotifyApi(), ctx.getInvestmentStrategy(), balance,
+                        ctx.getRetriever());
+        return App.getInvestingFunction(ctx).apply(i);
+    }
+
+    /**
+     * Perform one of many investing sessions with an existing login. Only loans that are new or changed since the
+     * previous session will be considered.
+     *
+     * @param ctx Application context.
+     * @param login Authenticated APIs.
+     * @param marketplace Marketplace shared by all the sessions.
+     * @return Investments made in the session.
+     */
+    static Collection<Investment> invest(final AppContext ctx, final Authentication login,
+                                         final Marketplace marketplace) {
+        final BigDecimal balance = App.getAvailableBalance(ctx, login.getZonkyApi());
+        final Investor i = new Investor(login.getZonkyApi(), login.getZotifyApi(), marketplace,
+                ctx.getInvestmentStrategy(), balance, ctx.getRetriever());
+        return App.getInvestingFunction(ctx).apply(i);
+    }
+
+    private static Collection<Investment> invest(final AppContext ctx, final Bootstrap bootstrap)
+            throws UnrecoverableRoboZonkyException {
         final AuthenticationHandler handler = ctx.getAuthenticationHandler();
-        final Authentication login = handler.login();
+        final Authentication login = bootstrap.getLogin();
         try { // execute the investment
-            final BigDecimal balance = App.getAvailableBalance(ctx, login.getZonkyApi());
-            final Investor i = new Investor(login.getZonkyApi(), login.getZotifyApi(), ctx.getInvestmentStrategy(),
-                    balance);
-            return App.getInvestingFunction(ctx).apply(i);
+            return App.invest(ctx, login);
         } finally { // make sure logout is processed at all costs
             handler.logout(login);
         }
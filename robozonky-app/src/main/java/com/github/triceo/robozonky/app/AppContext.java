@@ -15,6 +15,9 @@
  */
 package com.github.triceo.robozonky.app;
 
+import java.time.Duration;
+
+import com.github.triceo.robozonky.ParallelRetriever;
 import com.github.triceo.robozonky.app.authentication.AuthenticationHandler;
 import com.github.triceo.robozonky.strategy.InvestmentStrategy;
 
@@ -25,6 +28,8 @@ class AppContext {
     private final OperatingMode operatingMode;
     private final boolean isDryRun;
     private int dryRunBalance = -1, loanId = -1, loanAmount = -1;
+    private Duration daemonInterval = null;
+    private ParallelRetriever retriever = null;
 
     public AppContext(final AuthenticationHandler authenticator, final int loanId, final int loanAmount) {
         this.operatingMode = OperatingMode.USER_DRIVEN;
@@ -44,18 +49,42 @@ class AppContext {
         this.isDryRun = true;
     }
 
-    public AppContext(final AuthenticationHandler authenticator, final InvestmentStrategy investmentStrategy) {
+    public AppContext(final AuthenticationHandler authenticator, final InvestmentStrategy investmentStrategy,
+                      final ParallelRetriever retriever) {
         this.operatingMode = OperatingMode.STRATEGY_DRIVEN;
         this.investmentStrategy = investmentStrategy;
+        this.retriever = retriever;
         this.authenticator = authenticator;
         this.isDryRun = false;
     }
 
     public AppContext(final AuthenticationHandler authenticator, final InvestmentStrategy investmentStrategy,
-                      final int dryRunBalance) {
+                      final ParallelRetriever retriever, final int dryRunBalance) {
         this.operatingMode = OperatingMode.STRATEGY_DRIVEN;
         this.investmentStrategy = investmentStrategy;
+        this.retriever = retriever;
+        this.authenticator = authenticator;
+        this.dryRunBalance = dryRunBalance;
+        this.isDryRun = true;
+    }
+
+    public AppContext(final AuthenticationHandler authenticator, final InvestmentStrategy investmentStrategy,
+                      final ParallelRetriever retriever, final Duration daemonInterval) {
+        this.operatingMode = OperatingMode.DAEMON;
+        this.investmentStrategy = investmentStrategy;
+        this.retriever = retriever;
         this.authenticator = authenticator;
+        this.daemonInterval = daemonInterval;
+        this.isDryRun = false;
+    }
+
+    public AppContext(final AuthenticationHandler authenticator, final InvestmentStrategy investmentStrategy,
+                      final ParallelRetriever retriever, final Duration daemonInterval, final int dryRunBalance) {
+        this.operatingMode = OperatingMode.DAEMON;
+        this.investmentStrategy = investmentStrategy;
+        this.retriever = retriever;
+        this.authenticator = authenticator;
+        this.daemonInterval = daemonInterval;
         this.dryRunBalance = dryRunBalance;
         this.isDryRun = true;
     }
@@ -87,4 +116,12 @@ class AppContext {
     public InvestmentStrategy getInvestmentStrategy() {
         return investmentStrategy;
     }
+
+    public Duration getDaemonInterval() {
+        return daemonInterval;
+    }
+
+    public ParallelRetriever getRetriever() {
+        return retriever;
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.app;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.github.triceo.robozonky.app.authentication.AuthenticationHandler;
+import com.github.triceo.robozonky.app.util.UnrecoverableRoboZonkyException;
+import com.github.triceo.robozonky.authentication.Authentication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares everything the application needs before it starts investing. Opening the guarded storage and configuring
+ * the operating mode (which includes loading the strategy) do not depend on one another and run in parallel. Login
+ * only needs the guarded storage, therefore it may optionally start as soon as the storage is open, without waiting
+ * for the strategy. Should the rest of the setup then fail, such login is logged out again.
+ */
+class Bootstrap {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Bootstrap.class);
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "robozonky-bootstrap");
+        t.setDaemon(true); // never block JVM exit
+        return t;
+    });
+
+    private static Authentication login(final AuthenticationHandler handler) {
+        try {
+            return handler.login();
+        } catch (final UnrecoverableRoboZonkyException ex) {
+            throw new CompletionException(ex);
+        }
+    }
+
+    private static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException ex) { // rethrow whatever the task itself threw
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw ex;
+            }
+        }
+    }
+
+    private final CompletableFuture<Optional<AuthenticationHandler>> authentication;
+    private final CompletableFuture<Optional<AppContext>> context;
+    private final CompletableFuture<Optional<Authentication>> login;
+
+    /**
+     * Start the setup. Returns immediately.
+     *
+     * @param cli Parsed command line.
+     * @param authenticationProvider Opens the guarded storage.
+     * @param logInEarly Whether to log in as soon as possible. Should only be used when the login will actually be
+     * needed right after the setup.
+     */
+    public Bootstrap(final CommandLineInterface cli,
+                     final Function<CommandLineInterface, Optional<AuthenticationHandler>> authenticationProvider,
+                     final boolean logInEarly) {
+        this.authentication = CompletableFuture.supplyAsync(() -> authenticationProvider.apply(cli),
+                Bootstrap.EXECUTOR);
+        final OperatingMode mode = cli.getCliOperatingMode();
+        final CompletableFuture<Optional<Function<AuthenticationHandler, AppContext>>> configuration =
+                CompletableFuture.supplyAsync(() -> mode.configure(cli), Bootstrap.EXECUTOR);
+        this.context = this.authentication.thenCombine(configuration,
+                (auth, conf) -> auth.flatMap(a -> conf.map(c -> c.apply(a))));
+        this.login = logInEarly ?
+                this.authentication.thenApplyAsync(auth -> auth.map(Bootstrap::login), Bootstrap.EXECUTOR) : null;
+    }
+
+    private void discardLogin() {
+        final Optional<Authentication> possibleLogin = this.login.exceptionally(ex -> Optional.empty()).join();
+        if (!possibleLogin.isPresent()) {
+            return;
+        }
+        Bootstrap.LOGGER.debug("Setup failed, discarding login.");
+        try {
+            this.authentication.join().get().logout(possibleLogin.get());
+        } catch (final RuntimeException ex) {
+            Bootstrap.LOGGER.debug("Failed logging out.", ex);
+        }
+    }
+
+    /**
+     * Wait for the setup to finish.
+     *
+     * @return All information required for proper execution of the application. Empty when the command line, the
+     * guarded storage or the strategy were wrong.
+     */
+    public Optional<AppContext> getContext() {
+        final Optional<AppContext> result = Bootstrap.join(this.context);
+        if (!result.isPresent() && this.login != null) {
+            this.discardLogin();
+        }
+        return result;
+    }
+
+    /**
+     * Wait for the login, logging in now unless done early. Only to be called after {@link #getContext()} returned a
+     * context.
+     *
+     * @return Authenticated APIs.
+     * @throws UnrecoverableRoboZonkyException When login fails.
+     */
+    public Authentication getLogin() throws UnrecoverableRoboZonkyException {
+        final AppContext ctx = this.getContext().orElseThrow(() -> new IllegalStateException("Setup failed."));
+        if (this.login == null) {
+            return ctx.getAuthenticationHandler().login();
+        }
+        try {
+            return Bootstrap.join(this.login).orElseThrow(() -> new IllegalStateException("Should not happen."));
+        } catch (final CompletionException ex) {
+            if (ex.getCause() instanceof UnrecoverableRoboZonkyException) {
+                throw (UnrecoverableRoboZonkyException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+}
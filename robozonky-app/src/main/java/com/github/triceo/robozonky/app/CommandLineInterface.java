@@ -46,6 +46,11 @@ class CommandLineInterface {
     static final Option OPTION_STRATEGY = Option.builder("s").hasArg().longOpt("strategy")
             .argName("Investment strategy").desc("Points to a file that holds the investment strategy configuration.")
             .build();
+    static final Option OPTION_DAEMON = Option.builder("m").hasArg().longOpt("daemon")
+            .argName("Investment strategy")
+            .desc("Keep running and periodically invest based on the strategy configuration in this file.").build();
+    static final Option OPTION_INTERVAL = Option.builder("i").hasArg().longOpt("interval")
+            .argName("Seconds between sessions").desc("How long to wait between two daemon sessions.").build();
     static final Option OPTION_INVESTMENT = Option.builder("l").hasArg().longOpt("loan")
             .argName("Single loan ID").desc("Ignore strategy, invest to one specific loan and exit.")
             .build();
@@ -62,6 +67,11 @@ class CommandLineInterface {
     static final Option OPTION_USE_TOKEN = Option.builder("r").hasArg().optionalArg(true)
             .argName("Seconds before expiration").longOpt("refresh")
             .desc("Once logged in, RoboZonky will never log out unless login expires. Use with caution.").build();
+    static final Option OPTION_PARALLELISM = Option.builder("c").hasArg().longOpt("calls")
+            .argName("Parallel remote calls").desc("How many loans to retrieve from Zonky at the same time.").build();
+    static final Option OPTION_TIMEOUT = Option.builder("t").hasArg().longOpt("timeout")
+            .argName("Seconds per remote call").desc("How long to wait for a loan to be retrieved from Zonky.")
+            .build();
     static final Option OPTION_DRY_RUN = Option.builder("d").hasArg().optionalArg(true).
             argName("Dry run balance").longOpt("dry").desc("Simulate the investments, but never actually spend money.")
             .build();
@@ -172,7 +182,24 @@ class CommandLineInterface {
     }
 
     Optional<String> getStrategyConfigurationFilePath() {
-        return this.getOptionValue(OperatingMode.STRATEGY_DRIVEN.getSelectingOption());
+        final Optional<String> strategy = this.getOptionValue(OperatingMode.STRATEGY_DRIVEN.getSelectingOption());
+        if (strategy.isPresent()) {
+            return strategy;
+        } else {
+            return this.getOptionValue(OperatingMode.DAEMON.getSelectingOption());
+        }
+    }
+
+    Optional<Integer> getDaemonIntervalInSeconds() {
+        return this.getIntegerOptionValue(CommandLineInterface.OPTION_INTERVAL);
+    }
+
+    Optional<Integer> getParallelism() {
+        return this.getIntegerOptionValue(CommandLineInterface.OPTION_PARALLELISM);
+    }
+
+    Optional<Integer> getTimeoutInSeconds() {
+        return this.getIntegerOptionValue(CommandLineInterface.OPTION_TIMEOUT);
     }
 
     public Optional<String> getUsername() {
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.app;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.github.triceo.robozonky.Marketplace;
+import com.github.triceo.robozonky.app.util.UnrecoverableRoboZonkyException;
+import com.github.triceo.robozonky.app.version.VersionCheck;
+import com.github.triceo.robozonky.authentication.Authentication;
+import com.github.triceo.robozonky.remote.Investment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs investing sessions periodically, as configured by {@link OperatingMode#DAEMON}. The strategy and the login are
+ * kept across sessions, and every session only considers loans that are new or changed since the previous one. When a
+ * session fails, the login is discarded and the next session will log in again, considering the whole marketplace.
+ * The daemon is stopped by terminating the JVM, at which point it logs out. Errors other than a failed session, such
+ * as {@link Error}s, stop the daemon as well.
+ */
+class Daemon {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Daemon.class);
+    /**
+     * The version was already checked on startup, new releases are only looked for this often. Checks in between
+     * are answered from the cache, but checking only as often as the cache expires could keep missing the expiry.
+     */
+    static final Duration VERSION_CHECK_INTERVAL = VersionCheck.CACHE_TTL.dividedBy(4);
+
+    private final AppContext ctx;
+    private final Marketplace marketplace = new Marketplace();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread t = new Thread(r, "robozonky-daemon");
+        t.setDaemon(true); // the main thread keeps the JVM alive
+        return t;
+    });
+    private final AtomicBoolean stopping = new AtomicBoolean(false);
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private Authentication login = null; // only accessed from the executor, or after it has terminated
+    private volatile Throwable failure = null;
+
+    public Daemon(final AppContext ctx) {
+        this.ctx = ctx;
+    }
+
+    private void logout() {
+        if (this.login == null) {
+            return;
+        }
+        try {
+            this.ctx.getAuthenticationHandler().logout(this.login);
+        } catch (final RuntimeException ex) {
+            Daemon.LOGGER.debug("Failed logging out.", ex);
+        } finally {
+            this.login = null;
+        }
+    }
+
+    /**
+     * Perform a single investing session, logging in first if necessary. Never throws, since that would silently stop
+     * all subsequent sessions from being scheduled. Unexpected errors instead stop the daemon explicitly.
+     */
+    void runSession() {
+        try {
+            if (this.login == null) {
+                this.login = this.ctx.getAuthenticationHandler().login();
+            }
+            final Collection<Investment> result = App.invest(this.ctx, this.login, this.marketplace);
+            App.reportInvestmentsMade(result, this.ctx.isDryRun());
+        } catch (final UnrecoverableRoboZonkyException ex) {
+            Daemon.LOGGER.error("Login failed, will retry during the next session.", ex);
+        } catch (final RuntimeException ex) {
+            Daemon.LOGGER.error("Session failed, will log in again for the next session.", ex);
+            this.marketplace.reset(); // loans from this session may not have been considered
+            this.logout();
+        } catch (final Throwable ex) {
+            Daemon.LOGGER.error("Unexpected error, RoboZonky daemon will stop.", ex);
+            this.failure = ex;
+            new Thread(this::stop, "robozonky-daemon-stop").start(); // stop() waits for this session to finish
+        }
+    }
+
+    /**
+     * Look for a newer version in the background, reporting the result once known. Never blocks the sessions.
+     */
+    void checkVersion() {
+        final CompletableFuture<String> version = VersionCheck.retrieveLatestVersion();
+        version.whenComplete((result, ex) -> App.newerRoboZonkyVersionExists(version));
+    }
+
+    /**
+     * Start the sessions and wait until {@link #stop()} is called, either directly, from a shutdown hook or after an
+     * unexpected error.
+     *
+     * @throws IllegalStateException When the daemon stopped due to an unexpected error, which will be the cause.
+     */
+    public void run() {
+        final long interval = this.ctx.getDaemonInterval().toMillis();
+        Daemon.LOGGER.info("RoboZonky will invest every {} seconds until stopped.", interval / 1000);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "robozonky-daemon-shutdown"));
+        this.executor.scheduleWithFixedDelay(this::runSession, 0, interval, TimeUnit.MILLISECONDS);
+        final long versionCheckInterval = Daemon.VERSION_CHECK_INTERVAL.toMillis();
+        this.executor.scheduleWithFixedDelay(this::checkVersion, versionCheckInterval, versionCheckInterval,
+                TimeUnit.MILLISECONDS);
+        try {
+            this.stopped.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.stop();
+        }
+        if (this.failure != null) {
+            throw new IllegalStateException("RoboZonky daemon failed.", this.failure);
+        }
+    }
+
+    /**
+     * Wait for the session in progress to finish, prevent any further sessions and log out. Repeated calls have no
+     * effect.
+     */
+    public void stop() {
+        if (!this.stopping.compareAndSet(false, true)) {
+            return;
+        }
+        Daemon.LOGGER.info("RoboZonky daemon stopping.");
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                Daemon.LOGGER.warn("Session in progress did not finish in time.");
+                this.executor.shutdownNow();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.logout();
+            this.stopped.countDown();
+        }
+    }
+
+}
@@ -17,11 +17,14 @@
 package com.github.triceo.robozonky.app;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Optional;
+import java.util.function.Function;
 
+import com.github.triceo.robozonky.ParallelRetriever;
 import com.github.triceo.robozonky.app.authentication.AuthenticationHandler;
 import com.github.triceo.robozonky.strategy.InvestmentStrategy;
 import com.github.triceo.robozonky.strategy.InvestmentStrategyParseException;
@@ -37,46 +40,31 @@ enum OperatingMode {
     /**
      * Requires a strategy and performs 0 or more investments based on the strategy.
      */
-    STRATEGY_DRIVEN(CommandLineInterface.OPTION_STRATEGY, CommandLineInterface.OPTION_DRY_RUN) {
+    STRATEGY_DRIVEN(CommandLineInterface.OPTION_STRATEGY, CommandLineInterface.OPTION_PARALLELISM,
+            CommandLineInterface.OPTION_TIMEOUT, CommandLineInterface.OPTION_DRY_RUN) {
         /**
          *
          * @param cli Parsed command line.
-         * @param auth Pre-processed authentication information.
-         * @return Empty if strategy missing, not loaded or not parsed.
+         * @return Empty if strategy missing, not loaded or not parsed, or when the retrieval settings are wrong.
          */
         @Override
-        public Optional<AppContext> setup(final CommandLineInterface cli, final AuthenticationHandler auth) {
+        public Optional<Function<AuthenticationHandler, AppContext>> configure(final CommandLineInterface cli) {
             if (cli.getLoanAmount().isPresent() || cli.getLoanId().isPresent()) {
                 cli.printHelp("Loan data makes no sense in this context.", true);
                 return Optional.empty();
             }
-            final Optional<String> strategyFilePath = cli.getStrategyConfigurationFilePath();
-            if (!strategyFilePath.isPresent()) {
-                cli.printHelp("Strategy file must be provided.", true);
+            final Optional<ParallelRetriever> retriever = OperatingMode.createRetriever(cli);
+            if (!retriever.isPresent()) {
                 return Optional.empty();
             }
-            final File strategyConfig = new File(strategyFilePath.get());
-            if (!strategyConfig.exists()) {
-                cli.printHelp("Investment strategy file does not exist: " + strategyConfig.getAbsolutePath(), true);
-                return Optional.empty();
-            } else if (!strategyConfig.canRead()) {
-                cli.printHelp("Investment strategy file can not be read: " + strategyConfig.getAbsolutePath(), true);
-                return Optional.empty();
-            } else try {
-                final Optional<InvestmentStrategy> strategy = InvestmentStrategy.load(strategyConfig);
-                if (!strategy.isPresent()) {
-                    OperatingMode.LOGGER.error("No investment strategy found to support {}.",
-                            strategyConfig.getAbsolutePath());
-                    return Optional.empty();
-                } else if (cli.isDryRun()) {
-                    final int balance = cli.getDryRunBalance().orElse(-1);
-                    return Optional.of(new AppContext(auth, strategy.get(), balance));
-                } else {
-                    return Optional.of(new AppContext(auth, strategy.get()));
-                }
-            } catch (final InvestmentStrategyParseException ex) {
-                OperatingMode.LOGGER.error("Failed parsing strategy.", ex);
+            final Optional<InvestmentStrategy> strategy = OperatingMode.loadStrategy(cli);
+            if (!strategy.isPresent()) {
                 return Optional.empty();
+            } else if (cli.isDryRun()) {
+                final int balance = cli.getDryRunBalance().orElse(-1);
+                return Optional.of(auth -> new AppContext(auth, strategy.get(), retriever.get(), balance));
+            } else {
+                return Optional.of(auth -> new AppContext(auth, strategy.get(), retriever.get()));
             }
         }
     },
@@ -88,11 +76,10 @@ enum OperatingMode {
         /**
          *
          * @param cli Parsed command line.
-         * @param auth Pre-processed authentication information.
          * @return Empty when loan ID or loan amount are empty or missing.
          */
         @Override
-        public Optional<AppContext> setup(final CommandLineInterface cli, final AuthenticationHandler auth) {
+        public Optional<Function<AuthenticationHandler, AppContext>> configure(final CommandLineInterface cli) {
             final Optional<Integer> loanId = cli.getLoanId();
             final Optional<Integer> loanAmount = cli.getLoanAmount();
             if (!loanId.isPresent() || loanId.get() < 1) {
@@ -103,14 +90,108 @@ enum OperatingMode {
                 return Optional.empty();
             } else if (cli.isDryRun()) {
                 final int balance = cli.getDryRunBalance().orElse(-1);
-                return Optional.of(new AppContext(auth, loanId.get(), loanAmount.get(), balance));
+                return Optional.of(auth -> new AppContext(auth, loanId.get(), loanAmount.get(), balance));
+            } else {
+                return Optional.of(auth -> new AppContext(auth, loanId.get(), loanAmount.get()));
+            }
+        }
+    },
+    /**
+     * Requires a strategy and keeps running, performing 0 or more investments based on the strategy periodically.
+     * Strategy, authentication and the JVM itself are reused across the investing sessions.
+     */
+    DAEMON(CommandLineInterface.OPTION_DAEMON, CommandLineInterface.OPTION_INTERVAL,
+            CommandLineInterface.OPTION_PARALLELISM, CommandLineInterface.OPTION_TIMEOUT,
+            CommandLineInterface.OPTION_DRY_RUN) {
+        /**
+         *
+         * @param cli Parsed command line.
+         * @return Empty if strategy missing, not loaded or not parsed, or when the interval or the retrieval settings
+         * are wrong.
+         */
+        @Override
+        public Optional<Function<AuthenticationHandler, AppContext>> configure(final CommandLineInterface cli) {
+            if (cli.getLoanAmount().isPresent() || cli.getLoanId().isPresent()) {
+                cli.printHelp("Loan data makes no sense in this context.", true);
+                return Optional.empty();
+            }
+            final int seconds = cli.getDaemonIntervalInSeconds()
+                    .orElse(OperatingMode.DEFAULT_DAEMON_INTERVAL_IN_SECONDS);
+            if (seconds < 1) {
+                cli.printHelp("Interval between sessions must be greater than 0.", true);
+                return Optional.empty();
+            }
+            final Duration interval = Duration.ofSeconds(seconds);
+            final Optional<ParallelRetriever> retriever = OperatingMode.createRetriever(cli);
+            if (!retriever.isPresent()) {
+                return Optional.empty();
+            }
+            final Optional<InvestmentStrategy> strategy = OperatingMode.loadStrategy(cli);
+            if (!strategy.isPresent()) {
+                return Optional.empty();
+            } else if (cli.isDryRun()) {
+                final int balance = cli.getDryRunBalance().orElse(-1);
+                return Optional.of(auth -> new AppContext(auth, strategy.get(), retriever.get(), interval, balance));
             } else {
-                return Optional.of(new AppContext(auth, loanId.get(), loanAmount.get()));
+                return Optional.of(auth -> new AppContext(auth, strategy.get(), retriever.get(), interval));
             }
         }
     };
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OperatingMode.class);
+    private static final int DEFAULT_DAEMON_INTERVAL_IN_SECONDS = 60;
+
+    /**
+     * Set up concurrent retrieval of loans as given on the command line. Will print help in case of wrong values.
+     *
+     * @param cli Parsed command line.
+     * @return Empty if parallelism or timeout are less than 1.
+     */
+    private static Optional<ParallelRetriever> createRetriever(final CommandLineInterface cli) {
+        final int parallelism = cli.getParallelism().orElse(ParallelRetriever.DEFAULT_PARALLELISM);
+        final int timeout = cli.getTimeoutInSeconds()
+                .orElse((int)ParallelRetriever.DEFAULT_TIMEOUT.getSeconds());
+        if (parallelism < 1) {
+            cli.printHelp("Number of parallel remote calls must be greater than 0.", true);
+            return Optional.empty();
+        } else if (timeout < 1) {
+            cli.printHelp("Remote call timeout must be greater than 0.", true);
+            return Optional.empty();
+        }
+        return Optional.of(new ParallelRetriever(parallelism, Duration.ofSeconds(timeout)));
+    }
+
+    /**
+     * Load the strategy from the file given on the command line. Will print help in case of trouble with the file.
+     *
+     * @param cli Parsed command line.
+     * @return Empty if strategy missing, not loaded or not parsed.
+     */
+    private static Optional<InvestmentStrategy> loadStrategy(final CommandLineInterface cli) {
+        final Optional<String> strategyFilePath = cli.getStrategyConfigurationFilePath();
+        if (!strategyFilePath.isPresent()) {
+            cli.printHelp("Strategy file must be provided.", true);
+            return Optional.empty();
+        }
+        final File strategyConfig = new File(strategyFilePath.get());
+        if (!strategyConfig.exists()) {
+            cli.printHelp("Investment strategy file does not exist: " + strategyConfig.getAbsolutePath(), true);
+            return Optional.empty();
+        } else if (!strategyConfig.canRead()) {
+            cli.printHelp("Investment strategy file can not be read: " + strategyConfig.getAbsolutePath(), true);
+            return Optional.empty();
+        } else try {
+            final Optional<InvestmentStrategy> strategy = InvestmentStrategy.load(strategyConfig);
+            if (!strategy.isPresent()) {
+                OperatingMode.LOGGER.error("No investment strategy found to support {}.",
+                        strategyConfig.getAbsolutePath());
+            }
+            return strategy;
+        } catch (final InvestmentStrategyParseException ex) {
+            OperatingMode.LOGGER.error("Failed parsing strategy.", ex);
+            return Optional.empty();
+        }
+    }
 
     private final Option selectingOption;
     private final Collection<Option> otherOptions;
@@ -136,6 +217,16 @@ enum OperatingMode {
         return otherOptions;
     }
 
+    /**
+     * Validate the command line for this operating mode and load everything it requires, such as the strategy.
+     * Authentication is not needed for that, so that the two can be prepared independently.
+     *
+     * @param cli Parsed command line.
+     * @return Turns authentication information into all information required for proper execution of the
+     * application. Empty on failure.
+     */
+    public abstract Optional<Function<AuthenticationHandler, AppContext>> configure(final CommandLineInterface cli);
+
     /**
      * Properly set up the application with this operating mode.
      *
@@ -143,5 +234,7 @@ enum OperatingMode {
      * @param auth Pre-processed authentication information.
      * @return All information required for proper execution of the application. Empty on failure.
      */
-    public abstract Optional<AppContext> setup(final CommandLineInterface cli, final AuthenticationHandler auth);
+    public Optional<AppContext> setup(final CommandLineInterface cli, final AuthenticationHandler auth) {
+        return this.configure(cli).map(f -> f.apply(auth));
+    }
 }
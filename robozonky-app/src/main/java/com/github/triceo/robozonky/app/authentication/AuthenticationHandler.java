@@ -19,17 +19,20 @@ package com.github.triceo.robozonky.app.authentication;
 import java.io.Reader;
 import java.io.StringReader;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
 import java.util.Optional;
-import javax.xml.bind.JAXBException;
 
+import com.github.triceo.robozonky.app.util.IOUtils;
 import com.github.triceo.robozonky.app.util.UnrecoverableRoboZonkyException;
 import com.github.triceo.robozonky.authentication.Authentication;
 import com.github.triceo.robozonky.authentication.Authenticator;
 import com.github.triceo.robozonky.operations.LoginOperation;
 import com.github.triceo.robozonky.operations.LogoutOperation;
+import com.github.triceo.robozonky.operations.Resilience;
 import com.github.triceo.robozonky.remote.ZonkyApiToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,8 +46,8 @@ public class AuthenticationHandler {
      * never log out, but the session may expire if not refresh regularly. This is potentially unsafe, as it will
      * eventually store a plain-text access token on the hard drive, for everyone to see.
      *
-     * The token will only be refreshed if RoboZonky is launched some time between the token expiration and 60 seconds
-     * before then.
+     * The token will be refreshed in the background 60 seconds before it expires, for as long as RoboZonky is
+     * running.
      *
      * @param data Provider for the sensitive information, such as passwords and tokens.
      * @param isDryRun Whether or not the API should be allowed to invest actual money.
@@ -59,12 +62,12 @@ public class AuthenticationHandler {
      * never log out, but the session may expire if not refresh regularly. This is potentially unsafe, as it will
      * eventually store a plain-text access token on the hard drive, for everyone to see.
      *
-     * The token will only be refreshed if RoboZonky is launched between token expiration and X second before token
-     * expiration, where X comes from the arguments of this method.
+     * The token will be refreshed in the background X seconds before it expires, for as long as RoboZonky is
+     * running. X comes from the arguments of this method.
      *
      * @param data Provider for the sensitive information, such as passwords and tokens.
      * @param isDryRun Whether or not the API should be allowed to invest actual money.
-     * @param time Access token will be refreshed after expiration minus this.
+     * @param time Access token will be refreshed at expiration minus this.
      * @param unit Unit of time applied to the previous argument.
      * @return This.
      */
@@ -118,11 +121,34 @@ public class AuthenticationHandler {
     }
 
     /**
-     * Based on information received until this point, decide on the proper authentication method.
+     * Persist a token that was refreshed in the background, so that it can be reused by the next run.
+     *
+     * @param token The new token.
+     */
+    private void storeRefreshedToken(final ZonkyApiToken token) {
+        if (!this.tokenBased) { // token will not be reused
+            return;
+        }
+        try {
+            final boolean tokenStored = this.data.setToken(new StringReader(ZonkyApiToken.encode(token)));
+            AuthenticationHandler.LOGGER.debug("Refreshed token stored: {}.", tokenStored);
+        } catch (final IllegalArgumentException ex) {
+            AuthenticationHandler.LOGGER.info("Failed writing refreshed access token.", ex);
+        }
+    }
+
+    /**
+     * Based on information received until this point, decide on the proper authentication method. Whichever it is,
+     * the access token will be kept fresh in the background.
      *
      * @return Authentication method matching user preferences.
      */
     Authenticator build() {
+        return this.chooseAuthenticator().refreshingToken(
+                Duration.ofSeconds(this.tokenRefreshBeforeExpirationInSeconds), this::storeRefreshedToken);
+    }
+
+    private Authenticator chooseAuthenticator() {
         if (!this.tokenBased) {
             AuthenticationHandler.LOGGER.debug("Password-based authentication requested.");
             if (!this.data.deleteToken()) {
@@ -137,7 +163,7 @@ public class AuthenticationHandler {
         }
         boolean deleteToken = false;
         try {
-            final ZonkyApiToken token = ZonkyApiToken.unmarshal(tokenStream.get());
+            final ZonkyApiToken token = ZonkyApiToken.decode(IOUtils.toString(tokenStream.get()));
             final LocalDateTime obtained = this.data.getTokenSetDate().get();
             final LocalDateTime expires = obtained.plus(token.getExpiresIn(), ChronoUnit.SECONDS);
             AuthenticationHandler.LOGGER.debug("Token obtained on {}, expires on {}.", obtained, expires);
@@ -149,14 +175,14 @@ public class AuthenticationHandler {
                 return this.buildWithPassword();
             }
             if (expires.minus(this.tokenRefreshBeforeExpirationInSeconds, ChronoUnit.SECONDS).isBefore(now)) {
-                AuthenticationHandler.LOGGER.debug("Access token expiring, will be refreshed.");
-                deleteToken = true;
-                return Authenticator.withAccessTokenAndRefresh(this.data.getUsername(), token, this.dryRun);
+                // still valid; reuse it while it is being refreshed in the background
+                AuthenticationHandler.LOGGER.debug("Access token expiring, will be refreshed right away.");
             } else {
                 AuthenticationHandler.LOGGER.debug("Reusing access token.");
-                return Authenticator.withAccessToken(this.data.getUsername(), token, this.dryRun);
             }
-        } catch (final JAXBException ex) {
+            final Instant obtainedOn = obtained.atZone(ZoneId.systemDefault()).toInstant();
+            return Authenticator.withAccessToken(this.data.getUsername(), token, obtainedOn, this.dryRun);
+        } catch (final IllegalArgumentException ex) {
             AuthenticationHandler.LOGGER.warn("Failed parsing token, using password-based authentication.", ex);
             deleteToken = true;
             return this.buildWithPassword();
@@ -181,8 +207,8 @@ public class AuthenticationHandler {
         if (tokenStream.isPresent()) { // token already exists, do not logout
             return false;
         } else try { // try to store token
-            final String marshalled = ZonkyApiToken.marshal(token);
-            final boolean tokenStored = this.data.setToken(new StringReader(marshalled));
+            final String encoded = ZonkyApiToken.encode(token);
+            final boolean tokenStored = this.data.setToken(new StringReader(encoded));
             if (tokenStored) {
                 AuthenticationHandler.LOGGER.debug("Token stored successfully.");
                 return false;
@@ -190,7 +216,7 @@ public class AuthenticationHandler {
                 AuthenticationHandler.LOGGER.debug("Failed storing token.");
                 return true;
             }
-        } catch (final JAXBException ex) {
+        } catch (final IllegalArgumentException ex) {
             AuthenticationHandler.LOGGER.info("Failed writing access token, will need to use password next time.", ex);
             return true;
         }
@@ -204,7 +230,7 @@ public class AuthenticationHandler {
      */
     public Authentication login() throws UnrecoverableRoboZonkyException {
         final Authenticator auth = this.build();
-        final Optional<Authentication> possibleLogin = new LoginOperation().apply(auth);
+        final Optional<Authentication> possibleLogin = new LoginOperation().decorate(Resilience.forLogin()).apply(auth);
         if (!possibleLogin.isPresent()) {
             throw new UnrecoverableRoboZonkyException("Login failed.");
         }
@@ -212,19 +238,24 @@ public class AuthenticationHandler {
     }
 
     /**
-     * Log out of the Zonky API, if necessary. Will not log out if there is an active token.
+     * Log out of the Zonky API, if necessary. Will not log out if there is an active token. Either way, the login will
+     * be closed and its APIs can no longer be used.
      *
      * @param login Previously returned by {@link #login()}.
      * @return True if it was decided to log out.
      */
     public boolean logout(final Authentication login) {
-        final boolean logoutAllowed = this.isLogoutAllowed(login.getZonkyApiToken());
-        if (logoutAllowed) {
-            new LogoutOperation().apply(login.getZonkyApi());
-            return true;
-        } else { // if we're using the token, we should never log out
-            AuthenticationHandler.LOGGER.info("Refresh token needs to be reused, not logging out of Zonky.");
-            return false;
+        try {
+            final boolean logoutAllowed = this.isLogoutAllowed(login.getZonkyApiToken());
+            if (logoutAllowed) {
+                new LogoutOperation().apply(login.getZonkyApi());
+                return true;
+            } else { // if we're using the token, we should never log out
+                AuthenticationHandler.LOGGER.info("Refresh token needs to be reused, not logging out of Zonky.");
+                return false;
+            }
+        } finally {
+            login.close();
         }
     }
 
@@ -108,10 +108,15 @@ class KeyStoreSecretProvider extends SecretProvider {
 
     @Override
     public boolean setToken(final Reader token) {
-        final boolean firstSuccessful = this.set(KeyStoreSecretProvider.ALIAS_TOKEN, token);
-        final boolean secondSuccessful = this.set(KeyStoreSecretProvider.ALIAS_TOKEN_DATE,
-                LocalDateTime.now().toString());
-        return firstSuccessful && secondSuccessful;
+        try (final KeyStoreHandler.Batch batch = this.ksh.batch()) { // token and its date written together
+            final boolean firstSuccessful = this.set(KeyStoreSecretProvider.ALIAS_TOKEN, token);
+            final boolean secondSuccessful = this.set(KeyStoreSecretProvider.ALIAS_TOKEN_DATE,
+                    LocalDateTime.now().toString());
+            return firstSuccessful && secondSuccessful;
+        } catch (final IOException ex) {
+            KeyStoreSecretProvider.LOGGER.warn("Failed saving keystore.", ex);
+            return false;
+        }
     }
 
     @Override
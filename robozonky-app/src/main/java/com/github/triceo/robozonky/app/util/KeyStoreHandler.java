@@ -16,20 +16,25 @@
 
 package com.github.triceo.robozonky.app.util;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableEntryException;
 import java.security.cert.CertificateException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.crypto.SecretKey;
@@ -42,9 +47,43 @@ import org.slf4j.LoggerFactory;
 /**
  * Simple abstraction for dealing with the overly complicated {@link KeyStore} API. Always call {@link #save()} to
  * persist changes made.
+ *
+ * Every entry is only decrypted once and then kept in memory, until it is changed through this API. Several changes
+ * can be persisted at once using {@link #batch()}.
  */
 public class KeyStoreHandler {
 
+    /**
+     * Defers all {@link #save()} calls until the batch is closed, at which point all the changes are written at once.
+     * Batches may be nested, only the outermost one writes.
+     */
+    public class Batch implements AutoCloseable {
+
+        private boolean closed = false;
+
+        private Batch() {
+            // only created by the handler
+        }
+
+        /**
+         * End the batch and persist its changes, unless it is nested in another batch.
+         *
+         * @throws IOException If saving the key store failed.
+         */
+        @Override
+        public void close() throws IOException {
+            synchronized (KeyStoreHandler.this) {
+                if (this.closed) {
+                    return;
+                }
+                this.closed = true;
+                KeyStoreHandler.this.openBatches--;
+                KeyStoreHandler.this.save();
+            }
+        }
+
+    }
+
     private static final Logger LOGGER = LoggerFactory.getLogger(KeyStoreHandler.class);
     private static final String KEYSTORE_TYPE = "JCEKS";
     private static final String KEY_TYPE = "PBE";
@@ -119,6 +158,8 @@ public class KeyStoreHandler {
     private final KeyStore keyStore;
     private final KeyStore.ProtectionParameter protectionParameter;
     private final SecretKeyFactory keyFactory;
+    private final Map<String, Optional<String>> cache = new HashMap<>();
+    private int openBatches = 0;
 
     /**
      * Create a new instance, where {@link #isDirty()} will be false.
@@ -150,11 +191,15 @@ public class KeyStoreHandler {
      * @param value The value to be stored.
      * @return True if stored in the key store.
      */
-    public boolean set(final String alias, final String value) {
+    public synchronized boolean set(final String alias, final String value) {
+        if (Optional.of(value).equals(this.cache.get(alias))) { // nothing changes
+            return true;
+        }
         try {
             final SecretKey secret = this.keyFactory.generateSecret(new PBEKeySpec(value.toCharArray()));
             final KeyStore.Entry skEntry = new KeyStore.SecretKeyEntry(secret);
             this.keyStore.setEntry(alias, skEntry, this.protectionParameter);
+            this.cache.put(alias, Optional.of(value));
             this.dirty.set(true);
             return true;
         } catch (final KeyStoreException | InvalidKeySpecException ex) {
@@ -169,7 +214,11 @@ public class KeyStoreHandler {
      * @param alias The alias under which the key will be looked up.
      * @return Present if the alias is present in the key store.
      */
-    public Optional<String> get(final String alias) {
+    public synchronized Optional<String> get(final String alias) {
+        return this.cache.computeIfAbsent(alias, this::load);
+    }
+
+    private Optional<String> load(final String alias) {
         try {
             final KeyStore.SecretKeyEntry skEntry =
                     (KeyStore.SecretKeyEntry)this.keyStore.getEntry(alias, this.protectionParameter);
@@ -192,9 +241,14 @@ public class KeyStoreHandler {
      * @param alias The alias to locate the entry.
      * @return True if there is now no entry with a given key.
      */
-    public boolean delete(final String alias) {
+    public synchronized boolean delete(final String alias) {
         try {
+            if (!this.keyStore.containsAlias(alias)) { // nothing changes
+                this.cache.put(alias, Optional.empty());
+                return true;
+            }
             this.keyStore.deleteEntry(alias);
+            this.cache.put(alias, Optional.empty());
             this.dirty.set(true);
             return true;
         } catch (final KeyStoreException ex) {
@@ -211,20 +265,51 @@ public class KeyStoreHandler {
         return this.dirty.get();
     }
 
+    /**
+     * Start a batch of changes, during which {@link #save()} will have no effect. Use in try-with-resources, so that
+     * the changes are persisted when the batch is closed.
+     *
+     * @return The batch, to be closed when all the changes are done.
+     */
+    public synchronized Batch batch() {
+        this.openBatches++;
+        return new Batch();
+    }
+
     /**
      * Persist whatever operations that have been made using this API. Unless this method is called, no other methods
-     * have effect.
+     * have effect. Does nothing if there are no changes, or within a {@link #batch()}.
+     *
+     * The key store is first written to a temporary file, which then atomically replaces the original. Therefore the
+     * key store file is never left half-written.
      *
      * @throws IOException If saving the key store failed.
      */
-    public void save() throws IOException {
-        try (final OutputStream os = new BufferedOutputStream(new FileOutputStream(this.keyStoreFile))) {
+    public synchronized void save() throws IOException {
+        if (!this.isDirty() || this.openBatches > 0) {
+            return;
+        }
+        final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        try {
+            this.keyStore.store(contents, this.password); // closes the stream, so that it can not be synced
+        } catch (final KeyStoreException | NoSuchAlgorithmException | CertificateException ex) {
+            throw new IllegalStateException("Should not happen.", ex);
+        }
+        final Path target = this.keyStoreFile.getAbsoluteFile().toPath();
+        final Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (final FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+                contents.writeTo(fos);
+                fos.getFD().sync();
+            }
             try {
-                this.keyStore.store(os, this.password);
-                this.dirty.set(false);
-            } catch (final KeyStoreException | NoSuchAlgorithmException | CertificateException ex) {
-                throw new IllegalStateException("Should not happen.", ex);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
             }
+            this.dirty.set(false);
+        } finally {
+            Files.deleteIfExists(tmp);
         }
     }
 
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.app.version;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the latest released version on disk, so that Maven Central does not need to be asked on every run. The
+ * remembered version is only used until it is older than a given time-to-live.
+ */
+class VersionCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VersionCache.class);
+    private static final String VERSION_KEY = "version", CHECKED_KEY = "checked";
+
+    /**
+     * Releases do not happen more often than this, therefore there is no need to check more often either.
+     */
+    static final Duration DEFAULT_TTL = Duration.ofDays(1);
+
+    private final File file;
+    private final Duration ttl;
+    private final Clock clock;
+
+    VersionCache(final File file, final Duration ttl, final Clock clock) {
+        this.file = file;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    public VersionCache(final File file) {
+        this(file, VersionCache.DEFAULT_TTL, Clock.systemUTC());
+    }
+
+    /**
+     * Retrieve the remembered version.
+     *
+     * @return Empty when nothing remembered, or when remembered too long ago.
+     */
+    public synchronized Optional<String> get() {
+        if (!this.file.canRead()) {
+            return Optional.empty();
+        }
+        final Properties props = new Properties();
+        try (final InputStream is = new FileInputStream(this.file)) {
+            props.load(is);
+            final String version = props.getProperty(VersionCache.VERSION_KEY);
+            final Instant checked = Instant.parse(props.getProperty(VersionCache.CHECKED_KEY, ""));
+            if (version == null || checked.plus(this.ttl).isBefore(this.clock.instant())) {
+                return Optional.empty();
+            }
+            VersionCache.LOGGER.trace("Using version {} checked at {}.", version, checked);
+            return Optional.of(version);
+        } catch (final IOException | DateTimeParseException ex) {
+            VersionCache.LOGGER.debug("Failed reading cached version, ignoring.", ex);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Remember the version as of now.
+     *
+     * @param version Latest released version.
+     */
+    public synchronized void set(final String version) {
+        final Properties props = new Properties();
+        props.setProperty(VersionCache.VERSION_KEY, version);
+        props.setProperty(VersionCache.CHECKED_KEY, this.clock.instant().toString());
+        try (final OutputStream os = new FileOutputStream(this.file)) {
+            props.store(os, "Latest known release of RoboZonky.");
+        } catch (final IOException ex) { // the next run will simply check again
+            VersionCache.LOGGER.debug("Failed caching version.", ex);
+        }
+    }
+
+}
@@ -16,9 +16,14 @@
 
 package com.github.triceo.robozonky.app.version;
 
+import java.io.File;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 /**
  * Class to perform version checks of the current version against the latest released version.
@@ -26,14 +31,39 @@ import java.util.concurrent.Future;
 public class VersionCheck {
 
     /**
-     * Will retrieve the latest version available in Maven Central. Executes in single thread executor.
-     * @return Latest known release version of RoboZonky, as a {@link Future} to be retrieved later.
+     * How long the latest version is remembered before it is retrieved from Maven Central again.
      */
-    public static Future<String> retrieveLatestVersion() {
-        final ExecutorService e = Executors.newSingleThreadExecutor();
-        final Future<String> result = e.submit(new VersionRetriever());
-        e.shutdown();
-        return result;
+    public static final Duration CACHE_TTL = VersionCache.DEFAULT_TTL;
+    private static final VersionCache CACHE = new VersionCache(new File("robozonky.version"));
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        final Thread t = new Thread(r, "robozonky-version-check");
+        t.setDaemon(true); // never block JVM exit
+        return t;
+    });
+
+    static CompletableFuture<String> retrieveLatestVersion(final VersionCache cache, final Callable<String> retriever) {
+        final Optional<String> cached = cache.get();
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                final String version = retriever.call();
+                cache.set(version);
+                return version;
+            } catch (final Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, VersionCheck.EXECUTOR);
+    }
+
+    /**
+     * Will retrieve the latest version available in Maven Central, unless it was retrieved recently. Executes in a
+     * background thread which will not prevent the JVM from exiting.
+     * @return Latest known release version of RoboZonky, as a {@link CompletableFuture} to be retrieved later.
+     */
+    public static CompletableFuture<String> retrieveLatestVersion() {
+        return VersionCheck.retrieveLatestVersion(VersionCheck.CACHE, new VersionRetriever());
     }
 
     /**
@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.StringJoiner;
 import java.util.concurrent.Callable;
@@ -50,6 +52,10 @@ class VersionRetriever implements Callable<String> {
     private static final String GROUP_ID = VersionRetriever.class.getPackage().getImplementationVendor();
     private static final String ARTIFACT_ID = "robozonky-app";
     private static final Pattern COMPILE = Pattern.compile("\\Q.\\E");
+    /**
+     * Version check is not important enough to wait for a slow network.
+     */
+    static final Duration TIMEOUT = Duration.ofSeconds(5);
 
     private final String groupId, artifactId;
 
@@ -104,7 +110,10 @@ class VersionRetriever implements Callable<String> {
     public String call() throws Exception {
         final URL url = VersionRetriever.getMavenCentralUrl(this.groupId, this.artifactId);
         VersionRetriever.LOGGER.trace("RoboZonky version check starting from {}.", url);
-        try (final InputStream urlStream = url.openStream()) {
+        final URLConnection connection = url.openConnection();
+        connection.setConnectTimeout((int) VersionRetriever.TIMEOUT.toMillis());
+        connection.setReadTimeout((int) VersionRetriever.TIMEOUT.toMillis());
+        try (final InputStream urlStream = connection.getInputStream()) {
             return VersionRetriever.parseVersionString(urlStream);
         } finally {
             VersionRetriever.LOGGER.trace("RoboZonky update check finished.");
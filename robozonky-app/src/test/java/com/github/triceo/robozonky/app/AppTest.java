@@ -146,6 +146,7 @@ public class AppTest {
     @Test
     public void versionCheckFailed() throws InterruptedException, ExecutionException {
         final Future<String> future = Mockito.mock(Future.class);
+        Mockito.when(future.isDone()).thenReturn(true);
         Mockito.doThrow(new InterruptedException()).when(future).get();
         Assertions.assertThat(App.newerRoboZonkyVersionExists(future)).isFalse();
     }
@@ -153,8 +154,17 @@ public class AppTest {
     @Test
     public void versionCheckNotFoundNewerVersion() throws InterruptedException, ExecutionException {
         final Future<String> future = Mockito.mock(Future.class);
+        Mockito.when(future.isDone()).thenReturn(true);
         Mockito.when(future.get()).thenReturn("1.0.0");
         Assertions.assertThat(App.newerRoboZonkyVersionExists(future)).isFalse();
     }
 
+    @Test
+    public void versionCheckNotWaitedFor() throws InterruptedException, ExecutionException {
+        final Future<String> future = Mockito.mock(Future.class);
+        Mockito.when(future.isDone()).thenReturn(false);
+        Assertions.assertThat(App.newerRoboZonkyVersionExists(future)).isFalse();
+        Mockito.verify(future, Mockito.never()).get();
+    }
+
 }
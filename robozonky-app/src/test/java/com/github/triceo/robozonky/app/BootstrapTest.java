@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.app;
+
+import java.util.Optional;
+
+import com.github.triceo.robozonky.app.authentication.AuthenticationHandler;
+import com.github.triceo.robozonky.app.util.UnrecoverableRoboZonkyException;
+import com.github.triceo.robozonky.authentication.Authentication;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class BootstrapTest {
+
+    private static CommandLineInterface mockCli(final Optional<Integer> loanId) {
+        final CommandLineInterface cli = Mockito.mock(CommandLineInterface.class);
+        Mockito.when(cli.getCliOperatingMode()).thenReturn(OperatingMode.USER_DRIVEN);
+        Mockito.when(cli.getLoanId()).thenReturn(loanId);
+        Mockito.when(cli.getLoanAmount()).thenReturn(Optional.of(200));
+        return cli;
+    }
+
+    @Test
+    public void earlyLogin() throws UnrecoverableRoboZonkyException {
+        final AuthenticationHandler handler = Mockito.mock(AuthenticationHandler.class);
+        final Authentication login = Mockito.mock(Authentication.class);
+        Mockito.when(handler.login()).thenReturn(login);
+        final Bootstrap b = new Bootstrap(BootstrapTest.mockCli(Optional.of(1)), cli -> Optional.of(handler), true);
+        final Optional<AppContext> ctx = b.getContext();
+        Assertions.assertThat(ctx).isPresent();
+        Assertions.assertThat(ctx.get().getAuthenticationHandler()).isSameAs(handler);
+        Assertions.assertThat(b.getLogin()).isSameAs(login);
+        Mockito.verify(handler, Mockito.times(1)).login();
+        Mockito.verify(handler, Mockito.never()).logout(Matchers.any());
+    }
+
+    @Test
+    public void lateLogin() throws UnrecoverableRoboZonkyException {
+        final AuthenticationHandler handler = Mockito.mock(AuthenticationHandler.class);
+        final Authentication login = Mockito.mock(Authentication.class);
+        Mockito.when(handler.login()).thenReturn(login);
+        final Bootstrap b = new Bootstrap(BootstrapTest.mockCli(Optional.of(1)), cli -> Optional.of(handler), false);
+        Assertions.assertThat(b.getContext()).isPresent();
+        Mockito.verify(handler, Mockito.never()).login();
+        Assertions.assertThat(b.getLogin()).isSameAs(login);
+    }
+
+    @Test
+    public void earlyLoginDiscardedOnWrongCommandLine() throws UnrecoverableRoboZonkyException {
+        final AuthenticationHandler handler = Mockito.mock(AuthenticationHandler.class);
+        final Authentication login = Mockito.mock(Authentication.class);
+        Mockito.when(handler.login()).thenReturn(login);
+        final Bootstrap b = new Bootstrap(BootstrapTest.mockCli(Optional.empty()), cli -> Optional.of(handler), true);
+        Assertions.assertThat(b.getContext()).isEmpty();
+        Mockito.verify(handler, Mockito.times(1)).logout(login);
+    }
+
+    @Test
+    public void noLoginWithoutStorage() throws UnrecoverableRoboZonkyException {
+        final AuthenticationHandler handler = Mockito.mock(AuthenticationHandler.class);
+        final Bootstrap b = new Bootstrap(BootstrapTest.mockCli(Optional.of(1)), cli -> Optional.empty(), true);
+        Assertions.assertThat(b.getContext()).isEmpty();
+        Mockito.verify(handler, Mockito.never()).login();
+    }
+
+    @Test(expected = UnrecoverableRoboZonkyException.class)
+    public void loginFailurePropagated() throws UnrecoverableRoboZonkyException {
+        final AuthenticationHandler handler = Mockito.mock(AuthenticationHandler.class);
+        Mockito.when(handler.login()).thenThrow(new UnrecoverableRoboZonkyException());
+        final Bootstrap b = new Bootstrap(BootstrapTest.mockCli(Optional.of(1)), cli -> Optional.of(handler), true);
+        Assertions.assertThat(b.getContext()).isPresent();
+        b.getLogin();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unexpectedFailurePropagated() {
+        final Bootstrap b = new Bootstrap(BootstrapTest.mockCli(Optional.of(1)), cli -> {
+            throw new IllegalArgumentException();
+        }, false);
+        b.getContext();
+    }
+
+}
@@ -121,4 +121,18 @@ public class CommandLineInterfaceTest {
         softly.assertAll();
     }
 
+
+    @Test
+    public void minimalDaemonCli() {
+        final CommandLineInterface cli = CommandLineInterfaceTest.process(
+                CommandLineInterface.parse("-m", "somePath", "-i", "30", "-u", "user", "-p", "password"));
+        final SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(cli.getCliOperatingMode()).isEqualTo(OperatingMode.DAEMON);
+        softly.assertThat(cli.getStrategyConfigurationFilePath()).contains("somePath");
+        softly.assertThat(cli.getDaemonIntervalInSeconds()).contains(30);
+        softly.assertThat(cli.getLoanId()).isEmpty();
+        softly.assertThat(cli.isDryRun()).isFalse();
+        softly.assertAll();
+    }
+
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.app;
+
+import java.time.Duration;
+
+import com.github.triceo.robozonky.app.authentication.AuthenticationHandler;
+import com.github.triceo.robozonky.app.util.UnrecoverableRoboZonkyException;
+import com.github.triceo.robozonky.app.version.VersionCheck;
+import com.github.triceo.robozonky.authentication.Authentication;
+import com.github.triceo.robozonky.remote.ZonkyApi;
+import com.github.triceo.robozonky.strategy.InvestmentStrategy;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class DaemonTest {
+
+    private static AppContext mockContext(final AuthenticationHandler handler) {
+        final AppContext ctx = Mockito.mock(AppContext.class);
+        Mockito.when(ctx.getOperatingMode()).thenReturn(OperatingMode.DAEMON);
+        Mockito.when(ctx.getAuthenticationHandler()).thenReturn(handler);
+        Mockito.when(ctx.getInvestmentStrategy()).thenReturn(Mockito.mock(InvestmentStrategy.class));
+        Mockito.when(ctx.getDaemonInterval()).thenReturn(Duration.ofSeconds(1));
+        return ctx;
+    }
+
+    @Test
+    public void loginReusedAcrossSessions() throws UnrecoverableRoboZonkyException {
+        final Authentication login = Mockito.mock(Authentication.class);
+        final AuthenticationHandler handler = Mockito.mock(AuthenticationHandler.class);
+        Mockito.when(handler.login()).thenReturn(login);
+        final AppContext ctx = DaemonTest.mockContext(handler);
+        Mockito.when(ctx.isDryRun()).thenReturn(true);
+        Mockito.when(ctx.getDryRunBalance()).thenReturn(0); // nothing will be invested
+        final Daemon d = new Daemon(ctx);
+        d.runSession();
+        d.runSession();
+        Mockito.verify(handler, Mockito.times(1)).login();
+        Mockito.verify(handler, Mockito.never()).logout(Matchers.any());
+        d.stop();
+        Mockito.verify(handler, Mockito.times(1)).logout(login);
+    }
+
+    @Test
+    public void loginRepeatedAfterFailedSession() throws UnrecoverableRoboZonkyException {
+        final ZonkyApi api = Mockito.mock(ZonkyApi.class);
+        Mockito.when(api.getWallet()).thenThrow(IllegalStateException.class);
+        final Authentication login = Mockito.mock(Authentication.class);
+        Mockito.when(login.getZonkyApi()).thenReturn(api);
+        final AuthenticationHandler handler = Mockito.mock(AuthenticationHandler.class);
+        Mockito.when(handler.login()).thenReturn(login);
+        final Daemon d = new Daemon(DaemonTest.mockContext(handler));
+        d.runSession();
+        Mockito.verify(handler, Mockito.times(1)).logout(login);
+        d.runSession();
+        Mockito.verify(handler, Mockito.times(2)).login();
+        d.stop();
+    }
+
+    @Test
+    public void failedLoginRetried() throws UnrecoverableRoboZonkyException {
+        final AuthenticationHandler handler = Mockito.mock(AuthenticationHandler.class);
+        Mockito.when(handler.login()).thenThrow(UnrecoverableRoboZonkyException.class);
+        final Daemon d = new Daemon(DaemonTest.mockContext(handler));
+        d.runSession();
+        d.runSession();
+        Mockito.verify(handler, Mockito.times(2)).login();
+        d.stop();
+        Mockito.verify(handler, Mockito.never()).logout(Matchers.any());
+    }
+
+    @Test
+    public void versionCheckedMoreOftenThanCacheExpires() {
+        Assertions.assertThat(Daemon.VERSION_CHECK_INTERVAL).isLessThan(VersionCheck.CACHE_TTL);
+    }
+
+    @Test(timeout = 10000)
+    public void stopsOnError() throws UnrecoverableRoboZonkyException {
+        final AuthenticationHandler handler = Mockito.mock(AuthenticationHandler.class);
+        final Error error = new LinkageError();
+        Mockito.when(handler.login()).thenThrow(error);
+        final Daemon d = new Daemon(DaemonTest.mockContext(handler));
+        Assertions.assertThatThrownBy(d::run).isInstanceOf(IllegalStateException.class).hasCause(error);
+        Mockito.verify(handler, Mockito.times(1)).login();
+    }
+
+}
@@ -18,6 +18,7 @@ package com.github.triceo.robozonky.app;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Optional;
 
 import com.github.triceo.robozonky.app.authentication.AuthenticationHandler;
@@ -50,6 +51,8 @@ public class OperatingModeTest {
         final CommandLineInterface cli = Mockito.mock(CommandLineInterface.class);
         Mockito.when(cli.getLoanAmount()).thenReturn(loanId);
         Mockito.when(cli.getLoanId()).thenReturn(loanAmount);
+        Mockito.when(cli.getParallelism()).thenReturn(Optional.empty());
+        Mockito.when(cli.getTimeoutInSeconds()).thenReturn(Optional.empty());
         return cli;
     }
 
@@ -183,5 +186,90 @@ public class OperatingModeTest {
                 .isEmpty();
         this.ensureHelpCalled(cli);
     }
-}
 
+    @Test
+    public void standardDaemon() {
+        final CommandLineInterface cli = OperatingModeTest.mockCli();
+        Mockito.when(cli.getStrategyConfigurationFilePath())
+                .thenReturn(Optional.of("src/main/assembly/resources/robozonky-dynamic.cfg"));
+        Mockito.when(cli.getDaemonIntervalInSeconds()).thenReturn(Optional.of(30));
+        final Optional<AppContext> optionalResult =
+                OperatingMode.DAEMON.setup(cli, Mockito.mock(AuthenticationHandler.class));
+        Assertions.assertThat(optionalResult).isPresent();
+        final AppContext result = optionalResult.get();
+        Assertions.assertThat(result.getOperatingMode()).isEqualTo(OperatingMode.DAEMON);
+        Assertions.assertThat(result.getInvestmentStrategy()).isNotNull();
+        Assertions.assertThat(result.getDaemonInterval()).isEqualTo(Duration.ofSeconds(30));
+        Assertions.assertThat(result.isDryRun()).isFalse();
+    }
+
+    @Test
+    public void daemonDryRunDefaultInterval() {
+        final CommandLineInterface cli = OperatingModeTest.mockCli();
+        Mockito.when(cli.getStrategyConfigurationFilePath())
+                .thenReturn(Optional.of("src/main/assembly/resources/robozonky-dynamic.cfg"));
+        Mockito.when(cli.getDaemonIntervalInSeconds()).thenReturn(Optional.empty());
+        Mockito.when(cli.isDryRun()).thenReturn(true);
+        Mockito.when(cli.getDryRunBalance()).thenReturn(Optional.of(1000));
+        final Optional<AppContext> optionalResult =
+                OperatingMode.DAEMON.setup(cli, Mockito.mock(AuthenticationHandler.class));
+        Assertions.assertThat(optionalResult).isPresent();
+        final AppContext result = optionalResult.get();
+        Assertions.assertThat(result.getDaemonInterval()).isEqualTo(Duration.ofMinutes(1));
+        Assertions.assertThat(result.isDryRun()).isTrue();
+        Assertions.assertThat(result.getDryRunBalance()).isEqualTo(1000);
+    }
+
+    @Test
+    public void daemonWrongInterval() {
+        final CommandLineInterface cli = OperatingModeTest.mockCli();
+        Mockito.when(cli.getStrategyConfigurationFilePath())
+                .thenReturn(Optional.of("src/main/assembly/resources/robozonky-dynamic.cfg"));
+        Mockito.when(cli.getDaemonIntervalInSeconds()).thenReturn(Optional.of(0));
+        Assertions.assertThat(OperatingMode.DAEMON.setup(cli, Mockito.mock(AuthenticationHandler.class))).isEmpty();
+        this.ensureHelpCalled(cli);
+    }
+
+    @Test
+    public void daemonCustomRetrieval() {
+        final CommandLineInterface cli = OperatingModeTest.mockCli();
+        Mockito.when(cli.getStrategyConfigurationFilePath())
+                .thenReturn(Optional.of("src/main/assembly/resources/robozonky-dynamic.cfg"));
+        Mockito.when(cli.getDaemonIntervalInSeconds()).thenReturn(Optional.empty());
+        Mockito.when(cli.getParallelism()).thenReturn(Optional.of(2));
+        Mockito.when(cli.getTimeoutInSeconds()).thenReturn(Optional.of(5));
+        final Optional<AppContext> optionalResult =
+                OperatingMode.DAEMON.setup(cli, Mockito.mock(AuthenticationHandler.class));
+        Assertions.assertThat(optionalResult).isPresent();
+        Assertions.assertThat(optionalResult.get().getRetriever()).isNotNull();
+    }
+
+    @Test
+    public void daemonWrongParallelism() {
+        final CommandLineInterface cli = OperatingModeTest.mockCli();
+        Mockito.when(cli.getStrategyConfigurationFilePath())
+                .thenReturn(Optional.of("src/main/assembly/resources/robozonky-dynamic.cfg"));
+        Mockito.when(cli.getDaemonIntervalInSeconds()).thenReturn(Optional.empty());
+        Mockito.when(cli.getParallelism()).thenReturn(Optional.of(0));
+        Assertions.assertThat(OperatingMode.DAEMON.setup(cli, Mockito.mock(AuthenticationHandler.class))).isEmpty();
+        this.ensureHelpCalled(cli);
+    }
+
+    @Test
+    public void strategyDrivenWrongTimeout() {
+        final CommandLineInterface cli = OperatingModeTest.mockCli();
+        Mockito.when(cli.getStrategyConfigurationFilePath())
+                .thenReturn(Optional.of("src/main/assembly/resources/robozonky-dynamic.cfg"));
+        Mockito.when(cli.getTimeoutInSeconds()).thenReturn(Optional.of(0));
+        Assertions.assertThat(OperatingMode.STRATEGY_DRIVEN.setup(cli, Mockito.mock(AuthenticationHandler.class)))
+                .isEmpty();
+        this.ensureHelpCalled(cli);
+    }
+
+    @Test
+    public void daemonLoanGiven() {
+        final CommandLineInterface cli = OperatingModeTest.mockCli(1, 2);
+        Assertions.assertThat(OperatingMode.DAEMON.setup(cli, Mockito.mock(AuthenticationHandler.class))).isEmpty();
+        this.ensureHelpCalled(cli);
+    }
+}
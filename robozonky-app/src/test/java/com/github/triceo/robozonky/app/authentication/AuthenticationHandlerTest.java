@@ -151,7 +151,7 @@ public class AuthenticationHandlerTest {
         Mockito.when(p.setToken(Matchers.any())).thenReturn(false);
         Assertions.assertThat(h.isLogoutAllowed(AuthenticationHandlerTest.TOKEN)).isTrue();
         // make sure when wrong token, logout forced
-        Mockito.when(p.setToken(Matchers.any())).thenThrow(JAXBException.class); // instead of marshalling throwing
+        Mockito.when(p.setToken(Matchers.any())).thenThrow(IllegalArgumentException.class); // as if encoding failed
         Assertions.assertThat(h.isLogoutAllowed(Mockito.mock(ZonkyApiToken.class))).isTrue();
     }
 
@@ -160,8 +160,10 @@ public class AuthenticationHandlerTest {
         final SecretProvider sip = Mockito.mock(SecretProvider.class);
         Mockito.when(sip.getToken()).thenReturn(Optional.of(Mockito.mock(Reader.class)));
         final AuthenticationHandler a = AuthenticationHandler.tokenBased(sip, true);
-        final boolean result = a.logout(Mockito.mock(Authentication.class));
+        final Authentication login = Mockito.mock(Authentication.class);
+        final boolean result = a.logout(login);
         Assertions.assertThat(result).isFalse();
+        Mockito.verify(login, Mockito.times(1)).close(); // clients released even without logging out
     }
 
 }
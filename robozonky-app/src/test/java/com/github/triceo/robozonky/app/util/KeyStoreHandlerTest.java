@@ -68,4 +68,39 @@ public class KeyStoreHandlerTest {
         Assertions.assertThat(ksh2.get(key)).isEmpty();
     }
 
+    @Test
+    public void cacheFollowsChanges() throws IOException, KeyStoreException {
+        final File target = File.createTempFile("robozonky-", ".keystore");
+        target.delete();
+        final KeyStoreHandler ksh = KeyStoreHandler.create(target, KeyStoreHandlerTest.PASSWORD);
+        final String key = "abc";
+        Assertions.assertThat(ksh.get(key)).isEmpty(); // absence is remembered too
+        ksh.set(key, "def");
+        Assertions.assertThat(ksh.get(key)).contains("def");
+        ksh.set(key, "ghi");
+        Assertions.assertThat(ksh.get(key)).contains("ghi");
+        ksh.delete(key);
+        Assertions.assertThat(ksh.get(key)).isEmpty();
+    }
+
+    @Test
+    public void batchSavesOnce() throws IOException, KeyStoreException {
+        final File target = File.createTempFile("robozonky-", ".keystore");
+        target.delete();
+        final KeyStoreHandler ksh = KeyStoreHandler.create(target, KeyStoreHandlerTest.PASSWORD);
+        try (final KeyStoreHandler.Batch batch = ksh.batch()) {
+            ksh.set("a", "b");
+            ksh.save(); // deferred until the end of the batch
+            Assertions.assertThat(ksh.isDirty()).isTrue();
+            ksh.set("c", "d");
+        }
+        Assertions.assertThat(ksh.isDirty()).isFalse();
+        final KeyStoreHandler ksh2 = KeyStoreHandler.open(target, KeyStoreHandlerTest.PASSWORD);
+        Assertions.assertThat(ksh2.get("a")).contains("b");
+        Assertions.assertThat(ksh2.get("c")).contains("d");
+        // no leftover temporary files
+        Assertions.assertThat(target.getParentFile().listFiles((dir, name) -> name.startsWith(target.getName())))
+                .containsOnly(target);
+    }
+
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.app.version;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Collections;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class VersionCacheTest {
+
+    private static File newFile() throws IOException {
+        final File f = File.createTempFile("robozonky-", ".version");
+        f.delete();
+        return f;
+    }
+
+    private static VersionCache newCache(final File f, final Instant now) {
+        return new VersionCache(f, VersionCache.DEFAULT_TTL, Clock.fixed(now, ZoneId.systemDefault()));
+    }
+
+    @Test
+    public void emptyWhenMissing() throws IOException {
+        Assertions.assertThat(new VersionCache(VersionCacheTest.newFile()).get()).isEmpty();
+    }
+
+    @Test
+    public void freshUsed() throws IOException {
+        final File f = VersionCacheTest.newFile();
+        final Instant now = Instant.now();
+        VersionCacheTest.newCache(f, now).set("1.0.0");
+        final Instant later = now.plus(VersionCache.DEFAULT_TTL);
+        Assertions.assertThat(VersionCacheTest.newCache(f, later).get()).contains("1.0.0");
+    }
+
+    @Test
+    public void staleIgnored() throws IOException {
+        final File f = VersionCacheTest.newFile();
+        final Instant now = Instant.now();
+        VersionCacheTest.newCache(f, now).set("1.0.0");
+        final Instant later = now.plus(VersionCache.DEFAULT_TTL).plus(Duration.ofSeconds(1));
+        Assertions.assertThat(VersionCacheTest.newCache(f, later).get()).isEmpty();
+    }
+
+    @Test
+    public void corruptedIgnored() throws IOException {
+        final File f = VersionCacheTest.newFile();
+        Files.write(f.toPath(), Collections.singleton("version=1.0.0\nchecked=yesterday"));
+        Assertions.assertThat(new VersionCache(f).get()).isEmpty();
+    }
+
+}
@@ -16,10 +16,14 @@
 
 package com.github.triceo.robozonky.app.version;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 import org.assertj.core.api.Assertions;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 public class VersionCheckTest {
 
@@ -35,6 +39,40 @@ public class VersionCheckTest {
         Assertions.assertThat(version.get()).isNotNull();
     }
 
+    private static VersionCache newCache() throws IOException {
+        final File f = File.createTempFile("robozonky-", ".version");
+        f.delete();
+        return new VersionCache(f);
+    }
+
+    @Test
+    public void retrievedVersionCached() throws Exception {
+        final VersionCache cache = VersionCheckTest.newCache();
+        Assertions.assertThat(VersionCheck.retrieveLatestVersion(cache, () -> "1.0.0").get()).isEqualTo("1.0.0");
+        Assertions.assertThat(cache.get()).contains("1.0.0");
+    }
+
+    @Test
+    public void cachedVersionNotRetrieved() throws Exception {
+        final VersionCache cache = VersionCheckTest.newCache();
+        cache.set("1.0.0");
+        final VersionRetriever retriever = Mockito.mock(VersionRetriever.class);
+        final CompletableFuture<String> version = VersionCheck.retrieveLatestVersion(cache, retriever);
+        Assertions.assertThat(version).isDone();
+        Assertions.assertThat(version.get()).isEqualTo("1.0.0");
+        Mockito.verify(retriever, Mockito.never()).call();
+    }
+
+    @Test
+    public void failedRetrievalNotCached() throws Exception {
+        final VersionCache cache = VersionCheckTest.newCache();
+        final CompletableFuture<String> version = VersionCheck.retrieveLatestVersion(cache, () -> {
+            throw new IOException();
+        });
+        Assertions.assertThat(version.handle((result, ex) -> ex).get()).hasCauseInstanceOf(IOException.class);
+        Assertions.assertThat(cache.get()).isEmpty();
+    }
+
     @Test
     public void compareVersions() throws Exception {
         Assertions.assertThat(VersionCheck.isCurrentVersionOlderThan(null)).isFalse(); // just in tests
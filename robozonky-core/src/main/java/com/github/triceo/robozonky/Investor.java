@@ -20,15 +20,18 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
+import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.github.triceo.robozonky.operations.InvestOperation;
+import com.github.triceo.robozonky.operations.Resilience;
+import com.github.triceo.robozonky.remote.AsyncApi;
+import com.github.triceo.robozonky.remote.BlockedAmount;
 import com.github.triceo.robozonky.remote.Investment;
 import com.github.triceo.robozonky.remote.Loan;
+import com.github.triceo.robozonky.remote.Paginator;
 import com.github.triceo.robozonky.remote.Statistics;
 import com.github.triceo.robozonky.remote.ZonkyApi;
 import com.github.triceo.robozonky.remote.ZotifyApi;
@@ -43,17 +46,6 @@ public class Investor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Investor.class);
 
-    /**
-     * Determine whether or not a given loan is present among existing investments.
-     *
-     * @param loan Loan in question.
-     * @param investments Known investments.
-     * @return True if present.
-     */
-    private static boolean isLoanPresent(final Loan loan, final Collection<Investment> investments) {
-        return investments.stream().filter(i -> loan.getId() == i.getLoanId()).findFirst().isPresent();
-    }
-
     static Collection<Investment> mergeInvestments(final Collection<Investment> left,
                                                    final Collection<Investment> right) {
         if (left.isEmpty() && right.isEmpty()) {
@@ -62,12 +54,13 @@ public class Investor {
             return Collections.unmodifiableCollection(right);
         } else if (right.isEmpty()) {
             return Collections.unmodifiableCollection(left);
-        } else {
-            final Map<Integer, Investment> investments
-                    = left.stream().collect(Collectors.toMap(Investment::getLoanId, Function.identity()));
-            right.stream().filter(investment -> !investments.containsKey(investment.getLoanId()))
-                    .forEach(investment -> investments.put(investment.getLoanId(), investment));
-            return Collections.unmodifiableCollection(investments.values());
+        } else { // keep the first investment for every loan, in the order in which they came
+            final LoanIdSet loanIds = new LoanIdSet();
+            final List<Investment> investments = new ArrayList<>(left.size() + right.size());
+            Stream.concat(left.stream(), right.stream())
+                    .filter(investment -> loanIds.add(investment.getLoanId()))
+                    .forEach(investments::add);
+            return Collections.unmodifiableCollection(investments);
         }
     }
 
@@ -96,7 +89,7 @@ public class Investor {
             return Optional.empty();
         }
         final Investment investment = new Investment(l, amount);
-        return new InvestOperation().apply(api, investment);
+        return new InvestOperation().decorate(Resilience.forInvesting()).apply(api, investment);
     }
 
     /**
@@ -110,19 +103,27 @@ public class Investor {
      * already invested as evidenced by the blocked amount. It also unnecessarily deals with the second case, since
      * that is represented by a blocked amount as well. But that does no harm.
      *
+     * Loans are retrieved concurrently, so that the time it takes does not grow with the number of blocked amounts.
+     *
      * @param api Authenticated API that will be used to retrieve the user's blocked amounts from the wallet.
+     * @param retriever Used to retrieve the loans represented by the blocked amounts.
      * @return Every blocked amount represents a future investment. This method returns such investments.
      */
-    static List<Investment> retrieveInvestmentsRepresentedByBlockedAmounts(final ZonkyApi api) {
-        return Collections.unmodifiableList(api.getBlockedAmounts(99, 0).stream()
-                .filter(blocked -> blocked.getLoanId() > 0) // 0 == Zonky investors' fee
-                .map(blocked -> {
-                    final int loanId = blocked.getLoanId();
-                    final int loanAmount = blocked.getAmount();
-                    final Investment i = new Investment(api.getLoan(loanId), loanAmount);
-                    Investor.LOGGER.debug("{} CZK is being blocked by loan {}.", loanAmount, loanId);
-                    return i;
-                }).collect(Collectors.toList()));
+    static List<Investment> retrieveInvestmentsRepresentedByBlockedAmounts(final ZonkyApi api,
+                                                                           final ParallelRetriever retriever) {
+        final List<BlockedAmount> blockedAmounts;
+        try (final Stream<BlockedAmount> allBlockedAmounts = Paginator.stream(api::getBlockedAmounts)) {
+            blockedAmounts = allBlockedAmounts
+                    .filter(blocked -> blocked.getLoanId() > 0) // 0 == Zonky investors' fee
+                    .collect(Collectors.toList());
+        }
+        return retriever.retrieve(blockedAmounts, blocked -> {
+            final int loanId = blocked.getLoanId();
+            final int loanAmount = blocked.getAmount();
+            final Investment i = new Investment(api.getLoan(loanId), loanAmount);
+            Investor.LOGGER.debug("{} CZK is being blocked by loan {}.", loanAmount, loanId);
+            return i;
+        });
     }
 
     /**
@@ -138,11 +139,14 @@ public class Investor {
 
     private final ZonkyApi zonkyApi;
     private final ZotifyApi zotifyApi;
+    private final Marketplace marketplace;
     private final BigDecimal initialBalance;
     private final InvestmentStrategy strategy;
+    private final ParallelRetriever retriever;
+    private final LoanIdSet loansRecommended = new LoanIdSet();
 
     /**
-     * Standard constructor.
+     * Standard constructor. The whole marketplace will be considered for investing.
      *
      * @param zonky Authenticated API ready to retrieve user information.
      * @param zotify Marketplace cache for reading loans out of.
@@ -151,11 +155,67 @@ public class Investor {
      */
     public Investor(final ZonkyApi zonky, final ZotifyApi zotify, final InvestmentStrategy strategy,
                     final BigDecimal initialBalance) {
+        this(zonky, zotify, strategy, initialBalance, new ParallelRetriever());
+    }
+
+    /**
+     * Standard constructor. The whole marketplace will be considered for investing.
+     *
+     * @param zonky Authenticated API ready to retrieve user information.
+     * @param zotify Marketplace cache for reading loans out of.
+     * @param strategy Strategy used to determine the loans to invest in and the amounts to invest into them.
+     * @param initialBalance How much available cash the user has in their wallet.
+     * @param retriever Used to retrieve loans concurrently.
+     */
+    public Investor(final ZonkyApi zonky, final ZotifyApi zotify, final InvestmentStrategy strategy,
+                    final BigDecimal initialBalance, final ParallelRetriever retriever) {
+        this(zonky, zotify, null, strategy, initialBalance, retriever);
+    }
+
+    /**
+     * Constructor for repeated sessions. Only the loans that are new or have changed since the previous session will
+     * be considered for investing.
+     *
+     * @param zonky Authenticated API ready to retrieve user information.
+     * @param zotify Marketplace cache for reading loans out of.
+     * @param marketplace Keeps track of the marketplace across sessions.
+     * @param strategy Strategy used to determine the loans to invest in and the amounts to invest into them.
+     * @param initialBalance How much available cash the user has in their wallet.
+     */
+    public Investor(final ZonkyApi zonky, final ZotifyApi zotify, final Marketplace marketplace,
+                    final InvestmentStrategy strategy, final BigDecimal initialBalance) {
+        this(zonky, zotify, marketplace, strategy, initialBalance, new ParallelRetriever());
+    }
+
+    /**
+     * Constructor for repeated sessions. Only the loans that are new or have changed since the previous session will
+     * be considered for investing.
+     *
+     * @param zonky Authenticated API ready to retrieve user information.
+     * @param zotify Marketplace cache for reading loans out of.
+     * @param marketplace Keeps track of the marketplace across sessions.
+     * @param strategy Strategy used to determine the loans to invest in and the amounts to invest into them.
+     * @param initialBalance How much available cash the user has in their wallet.
+     * @param retriever Used to retrieve loans concurrently, best shared across the sessions.
+     */
+    public Investor(final ZonkyApi zonky, final ZotifyApi zotify, final Marketplace marketplace,
+                    final InvestmentStrategy strategy, final BigDecimal initialBalance,
+                    final ParallelRetriever retriever) {
         this.zonkyApi = zonky;
         this.zotifyApi = zotify;
+        this.marketplace = marketplace;
         this.initialBalance = initialBalance;
         Investor.LOGGER.info("RoboZonky starting account balance is {} CZK.", this.initialBalance);
         this.strategy = strategy;
+        this.retriever = retriever;
+    }
+
+    private Collection<Loan> retrieveMarketplace(final ZotifyApi api) {
+        if (this.marketplace == null) {
+            return api.getLoans();
+        } else {
+            return this.marketplace.getNewOrChangedLoans(api);
+        }
     }
 
     /**
@@ -163,19 +223,22 @@ public class Investor {
      * by one, in the order prescribed by the strategy, and attempts to invest into these loans. The first such
      * investment operation that succeeds will return.
      *
-     * @param balance How much money the user has in the wallet that can be used for investing.
-     * @param stats User's portfolio coming from the Zonky API.
-     * @param investmentsAlreadyMade Loans already invested into that have not yet disappeared from marketplace.
+     * @param marketplace Snapshot of the marketplace, taken once per session.
+     * @param portfolio User's portfolio, including investments not yet reflected in the Zonky API.
+     * @param loansAlreadyInvested IDs of loans already invested into that have not yet disappeared from marketplace.
      * @return The first {@link #invest(ZonkyApi, Loan, int, int)} which succeeds, or empty if none have.
      */
-    Optional<Investment> investOnce(final BigDecimal balance, final Statistics stats,
-                                    final Collection<Investment> investmentsAlreadyMade) {
-        final PortfolioOverview portfolio = PortfolioOverview.calculate(balance, stats, investmentsAlreadyMade);
-        Investor.LOGGER.debug("Current share of unpaid loans with a given rating is: {}.",
-                portfolio.getSharesOnInvestment());
-        final Collection<Loan> loans = this.strategy.getMatchingLoans(this.zotifyApi.getLoans(), portfolio).stream()
-                .filter(l -> !Investor.isLoanPresent(l, investmentsAlreadyMade)).collect(Collectors.toList());
+    Optional<Investment> investOnce(final Collection<Loan> marketplace, final PortfolioOverview portfolio,
+                                    final LoanIdSet loansAlreadyInvested) {
+        if (Investor.LOGGER.isDebugEnabled()) { // avoid calculating the shares unless necessary
+            Investor.LOGGER.debug("Current share of unpaid loans with a given rating is: {}.",
+                    portfolio.getSharesOnInvestment());
+        }
+        final List<Loan> unseenLoans = marketplace.stream()
+                .filter(l -> !loansAlreadyInvested.contains(l.getId())).collect(Collectors.toList());
+        final Collection<Loan> loans = this.strategy.getMatchingLoans(unseenLoans, portfolio);
         Investor.LOGGER.debug("Strategy recommends the following unseen loans: {}.", loans);
+        loans.forEach(l -> this.loansRecommended.add(l.getId()));
         return loans.stream()
                 .map(l -> {
                     final int invest = this.strategy.recommendInvestmentAmount(l, portfolio);
@@ -187,33 +250,85 @@ public class Investor {
 
     /**
      * One of the two entry points to the investment API. This takes the strategy, determines suitable loans, and tries
-     * to invest in as many of them as the balance allows.
+     * to invest in as many of them as the balance allows. Loans recommended by the strategy but not invested into,
+     * whether because the investment failed or the balance ran out, will be offered again by the {@link Marketplace}
+     * in the next session. Loans rejected by the strategy will be offered again once the portfolio changes.
      *
      * @return Investments made in the session.
      */
     public Collection<Investment> invest() {
         // make sure we have enough money to invest
-        final BigDecimal minimumInvestmentAmount = BigDecimal.valueOf(InvestmentStrategy.MINIMAL_INVESTMENT_ALLOWED);
-        BigDecimal balance = this.initialBalance;
-        if (balance.compareTo(minimumInvestmentAmount) < 0) {
+        final int minimumInvestmentAmount = InvestmentStrategy.MINIMAL_INVESTMENT_ALLOWED;
+        if (this.initialBalance.compareTo(BigDecimal.valueOf(minimumInvestmentAmount)) < 0) {
             return Collections.emptyList(); // no need to do anything else
         }
-        Collection<Investment> investments = Investor.retrieveInvestmentsRepresentedByBlockedAmounts(this.zonkyApi);
-        Investor.LOGGER.debug("The following loans are coming from the API as already invested into: {}", investments);
-        final Statistics stats = Investor.retrieveStatistics(this.zonkyApi);
+        // the marketplace is only read once; subsequent iterations re-rank what is left of it
+        final CompletionStage<Collection<Loan>> futureMarketplace =
+                AsyncApi.of(this.zotifyApi).call(this::retrieveMarketplace);
+        if (this.marketplace != null && AsyncApi.await(futureMarketplace).isEmpty() &&
+                !this.marketplace.hasBalanceChanged(this.initialBalance.intValue())) {
+            // repeated sessions mostly find nothing new; in that case, do not bother retrieving anything else
+            Investor.LOGGER.info("No loans to consider on the marketplace.");
+            return Collections.emptyList();
+        }
+        // retrieve the rest of the information in parallel
+        final AsyncApi<ZonkyApi> api = AsyncApi.of(this.zonkyApi);
+        final CompletionStage<List<Investment>> futureInvestments =
+                api.call(zonky -> Investor.retrieveInvestmentsRepresentedByBlockedAmounts(zonky, this.retriever));
+        final CompletionStage<Statistics> futureStats = api.call(Investor::retrieveStatistics);
+        final Collection<Investment> investments;
+        final Statistics stats;
+        final Portfolio portfolio;
+        final Collection<Loan> marketplace;
+        try {
+            final Collection<Loan> newOrChanged = AsyncApi.await(futureMarketplace);
+            if (newOrChanged.isEmpty() && this.marketplace == null) {
+                Investor.LOGGER.info("No loans to consider on the marketplace.");
+                return Collections.emptyList();
+            }
+            investments = AsyncApi.await(futureInvestments);
+            Investor.LOGGER.debug("The following loans are coming from the API as already invested into: {}",
+                    investments);
+            stats = AsyncApi.await(futureStats);
+            portfolio = new Portfolio(this.initialBalance, stats, investments);
+            if (this.marketplace != null && this.marketplace.hasPortfolioChanged(portfolio.getOverview())) {
+                // the strategy may now accept loans that it rejected before
+                Investor.LOGGER.debug("Portfolio changed since the previous session, considering all loans.");
+                marketplace = this.marketplace.getLoans();
+            } else {
+                marketplace = newOrChanged;
+            }
+            if (marketplace.isEmpty()) {
+                Investor.LOGGER.info("No loans to consider on the marketplace.");
+                return Collections.emptyList();
+            }
+            Investor.LOGGER.debug("Marketplace contains {} loans to consider.", marketplace.size());
+        } finally { // no-op when completed; otherwise calls not yet started will never start
+            futureInvestments.toCompletableFuture().cancel(true);
+            futureStats.toCompletableFuture().cancel(true);
+        }
+        final LoanIdSet loansAlreadyInvested = LoanIdSet.of(investments);
         // and start investing
+        this.loansRecommended.clear();
         final Collection<Investment> investmentsMade = new ArrayList<>();
         do {
-            final Optional<Investment> investment = this.investOnce(balance, stats, investments);
+            final Optional<Investment> investment = this.investOnce(marketplace, portfolio.getOverview(),
+                    loansAlreadyInvested);
             if (!investment.isPresent()) { // there is nothing to invest into; RoboZonky is finished now
                 break;
             }
             final Investment i = investment.get();
             investmentsMade.add(i);
-            investments = Investor.mergeInvestments(investments, Collections.singletonList(i));
-            balance = balance.subtract(BigDecimal.valueOf(i.getAmount()));
-            Investor.LOGGER.info("New account balance is {} CZK.", balance);
-        } while (balance.compareTo(minimumInvestmentAmount) >= 0);
+            loansAlreadyInvested.add(i.getLoanId());
+            portfolio.apply(i);
+            Investor.LOGGER.info("New account balance is {} CZK.", portfolio.getCzkAvailable());
+        } while (portfolio.getCzkAvailable() >= minimumInvestmentAmount);
+        if (this.marketplace != null) {
+            this.marketplace.setPortfolio(portfolio.getOverview()); // the portfolio that the loans were evaluated against
+            this.loansRecommended.stream()
+                    .filter(id -> !loansAlreadyInvested.contains(id))
+                    .forEach(this.marketplace::forget);
+        }
         return Collections.unmodifiableCollection(investmentsMade);
     }
 
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+import com.github.triceo.robozonky.remote.Investment;
+
+/**
+ * Set of loan IDs, used to quickly determine whether a loan has already been invested into. Zonky hands out loan IDs as
+ * a dense sequence of positive integers, therefore a bit set is both the fastest and the most compact representation.
+ * Not thread-safe.
+ */
+class LoanIdSet {
+
+    /**
+     * Create a set with the IDs of loans represented by the given investments.
+     *
+     * @param investments Investments in question.
+     * @return New mutable set.
+     */
+    public static LoanIdSet of(final Collection<Investment> investments) {
+        final LoanIdSet result = new LoanIdSet();
+        for (final Investment i: investments) {
+            result.add(i.getLoanId());
+        }
+        return result;
+    }
+
+    private final BitSet ids = new BitSet();
+
+    /**
+     * Add loan ID to the set.
+     *
+     * @param loanId ID of the loan in question.
+     * @return True if the ID was not yet present.
+     */
+    public boolean add(final int loanId) {
+        if (loanId < 0) {
+            throw new IllegalArgumentException("Loan ID must not be negative: " + loanId);
+        } else if (this.ids.get(loanId)) {
+            return false;
+        }
+        this.ids.set(loanId);
+        return true;
+    }
+
+    /**
+     * Whether or not a given loan ID is present in the set.
+     *
+     * @param loanId ID of the loan in question.
+     * @return True if present.
+     */
+    public boolean contains(final int loanId) {
+        return loanId >= 0 && this.ids.get(loanId);
+    }
+
+    /**
+     * @return Number of loan IDs in the set.
+     */
+    public int size() {
+        return this.ids.cardinality();
+    }
+
+    /**
+     * @return Loan IDs in the set, in ascending order.
+     */
+    public IntStream stream() {
+        return this.ids.stream();
+    }
+
+    /**
+     * Remove all loan IDs from the set.
+     */
+    public void clear() {
+        this.ids.clear();
+    }
+
+}
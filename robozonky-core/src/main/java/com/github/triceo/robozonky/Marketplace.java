@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import com.github.triceo.robozonky.remote.Api;
+import com.github.triceo.robozonky.remote.Loan;
+import com.github.triceo.robozonky.remote.MyInvestment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the marketplace across investing sessions, so that repeated polling is cheap. The marketplace is
+ * requested conditionally, using the entity tag and the last modification date from the previous response, if the
+ * server provided them. Whatever comes back is compared with the previous snapshot, and only the loans that are new
+ * or have changed since are returned.
+ *
+ * Loans that were returned once will not be returned again until they change. Callers who fail to process the loans
+ * should call {@link #reset()}, callers who fail to process some of them should {@link #forget(int)} those.
+ *
+ * Whether a loan is worth investing into also depends on the portfolio, therefore the marketplace also remembers the
+ * portfolio that the loans were last evaluated against. When the portfolio changes, callers should evaluate the whole
+ * {@link #getLoans()} again, since previously rejected loans may now be acceptable.
+ */
+public class Marketplace {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Marketplace.class);
+    private static final GenericType<List<Loan>> LOANS = new GenericType<List<Loan>>() {};
+
+    /**
+     * Summarizes the parts of the loan that change while the loan is on the marketplace.
+     *
+     * @param loan Loan in question.
+     * @return Different values for loans that differ in those parts, with a negligible chance of collision.
+     */
+    static long fingerprint(final Loan loan) {
+        long result = Double.doubleToLongBits(loan.getRemainingInvestment());
+        result = 31 * result + loan.getInvestmentsCount();
+        result = 31 * result + loan.getQuestionsCount();
+        result = 31 * result + (loan.isCovered() ? 1 : 0);
+        result = 31 * result + (loan.isPublished() ? 1 : 0);
+        result = 31 * result + (loan.isTopped() ? 1 : 0);
+        final MyInvestment myInvestment = loan.getMyInvestment();
+        result = 31 * result + (myInvestment == null ? 0 : myInvestment.getAmount() + 1);
+        return result;
+    }
+
+    private String entityTag = null, lastModified = null;
+    private Map<Integer, Long> fingerprints = Collections.emptyMap();
+    private List<Loan> loans = Collections.emptyList();
+    private PortfolioOverview portfolio = null;
+
+    /**
+     * Compare the marketplace with the previous snapshot, which is replaced by the new marketplace.
+     *
+     * @param loans Current contents of the marketplace.
+     * @return Loans not present in the previous snapshot or changed since then, in the original order.
+     */
+    synchronized List<Loan> update(final Collection<Loan> loans) {
+        final Map<Integer, Long> current = new HashMap<>(loans.size() * 4 / 3 + 1);
+        final List<Loan> result = new ArrayList<>();
+        for (final Loan loan: loans) {
+            final long fingerprint = Marketplace.fingerprint(loan);
+            current.put(loan.getId(), fingerprint);
+            final Long previous = this.fingerprints.get(loan.getId());
+            if (previous == null || previous != fingerprint) {
+                result.add(loan);
+            }
+        }
+        Marketplace.LOGGER.debug("Marketplace has {} loans, {} of them new or changed.", loans.size(), result.size());
+        this.fingerprints = current;
+        this.loans = Collections.unmodifiableList(new ArrayList<>(loans));
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Retrieve the marketplace and figure out which loans have appeared or changed since the last call.
+     *
+     * @param api API to retrieve the marketplace from.
+     * @return Loans new or changed since the last call. Empty when the server reports the marketplace unchanged.
+     */
+    public synchronized List<Loan> getNewOrChangedLoans(final Api api) {
+        final Response response = api.getLoans(this.entityTag, this.lastModified);
+        try {
+            if (response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+                Marketplace.LOGGER.debug("Marketplace not modified since {}.", this.lastModified);
+                return Collections.emptyList();
+            } else if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+                throw new WebApplicationException("Failed retrieving marketplace.", response.getStatus());
+            }
+            final List<Loan> loans = response.readEntity(Marketplace.LOANS);
+            this.entityTag = response.getHeaderString(HttpHeaders.ETAG);
+            this.lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+            return this.update(loans);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Latest known contents of the marketplace, as of the last call to {@link #getNewOrChangedLoans(Api)}.
+     *
+     * @return Loans in the original order.
+     */
+    public synchronized List<Loan> getLoans() {
+        return this.loans;
+    }
+
+    /**
+     * Whether the loans need to be evaluated again, since the portfolio differs from the one they were last evaluated
+     * against.
+     *
+     * @param portfolio Current portfolio.
+     * @return True if different from the one last given to {@link #setPortfolio(PortfolioOverview)}.
+     */
+    public synchronized boolean hasPortfolioChanged(final PortfolioOverview portfolio) {
+        return !portfolio.equals(this.portfolio);
+    }
+
+    /**
+     * Cheaper variant of {@link #hasPortfolioChanged(PortfolioOverview)}, for when the portfolio is not yet known.
+     * The share of ratings in the portfolio only changes with investments and repayments, both of which change the
+     * balance as well.
+     *
+     * @param balance Current available balance in the wallet.
+     * @return True if different from the one in the portfolio last given to {@link #setPortfolio(PortfolioOverview)}.
+     */
+    public synchronized boolean hasBalanceChanged(final int balance) {
+        return this.portfolio == null || this.portfolio.getCzkAvailable() != balance;
+    }
+
+    /**
+     * Remember the portfolio that the loans were last evaluated against.
+     *
+     * @param portfolio Portfolio in question.
+     */
+    public synchronized void setPortfolio(final PortfolioOverview portfolio) {
+        this.portfolio = portfolio;
+    }
+
+    /**
+     * Forget the loan, so that the next call to {@link #getNewOrChangedLoans(Api)} returns it again, even if it has
+     * not changed. That call will not be conditional, since the server could otherwise report the marketplace
+     * unchanged.
+     *
+     * @param loanId ID of the loan in question.
+     */
+    public synchronized void forget(final int loanId) {
+        if (this.fingerprints.containsKey(loanId)) {
+            this.fingerprints.remove(loanId);
+            this.entityTag = null;
+            this.lastModified = null;
+        }
+    }
+
+    /**
+     * Forget the previous snapshot, so that the next call to {@link #getNewOrChangedLoans(Api)} returns the whole
+     * marketplace.
+     */
+    public synchronized void reset() {
+        this.entityTag = null;
+        this.lastModified = null;
+        this.fingerprints = Collections.emptyMap();
+        this.loans = Collections.emptyList();
+        this.portfolio = null;
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Performs a number of independent remote calls concurrently, with at most a given number of them in flight at any
+ * given time. Results are returned in the order of the inputs, regardless of the order in which the calls finished.
+ *
+ * The threads are shared by all the {@link #retrieve(List, Function)} calls on the same instance, and they are only
+ * kept alive while there is work for them. Instances are therefore meant to be reused, such as across daemon sessions.
+ */
+public class ParallelRetriever {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelRetriever.class);
+
+    /**
+     * Default maximum number of calls in flight at the same time.
+     */
+    public static final int DEFAULT_PARALLELISM = 8;
+    /**
+     * Default maximum time a single call may take.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Tracks the time when the call actually started, so that time spent waiting for a free thread does not count
+     * towards the timeout.
+     */
+    private static class TimedCall<I, O> implements Callable<O> {
+
+        private final I input;
+        private final Function<I, O> function;
+        private volatile long startedAt = -1;
+
+        public TimedCall(final I input, final Function<I, O> function) {
+            this.input = input;
+            this.function = function;
+        }
+
+        public boolean isStarted() {
+            return this.startedAt >= 0;
+        }
+
+        public long getStartedAt() {
+            return this.startedAt;
+        }
+
+        @Override
+        public O call() {
+            this.startedAt = System.nanoTime();
+            return this.function.apply(this.input);
+        }
+
+    }
+
+    private final long timeoutNanos;
+    private final ExecutorService executor;
+
+    /**
+     * Retriever with {@link #DEFAULT_PARALLELISM} and {@link #DEFAULT_TIMEOUT}.
+     */
+    public ParallelRetriever() {
+        this(ParallelRetriever.DEFAULT_PARALLELISM, ParallelRetriever.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param parallelism Maximum number of calls in flight at the same time.
+     * @param timeout Maximum time a single call may take, not counting the time spent waiting for its turn.
+     */
+    public ParallelRetriever(final int parallelism, final Duration timeout) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        } else if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Timeout must be positive.");
+        }
+        this.timeoutNanos = timeout.toNanos();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), r -> {
+                    final Thread t = new Thread(r, "robozonky-retriever");
+                    t.setDaemon(true); // never block JVM exit
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true); // idle retriever holds no threads
+        this.executor = executor;
+    }
+
+    private <O> O waitFor(final TimedCall<?, O> call, final Future<O> future) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        while (!call.isStarted() && !future.isDone()) { // not yet running, keep waiting for a free thread
+            try {
+                return future.get(this.timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (final TimeoutException ex) {
+                continue;
+            }
+        }
+        final long remaining = call.getStartedAt() + this.timeoutNanos - System.nanoTime();
+        return future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Apply the function to every input concurrently. Blocks until all the calls have finished. If any of the calls
+     * fails or exceeds the timeout, all the calls still in flight will be cancelled.
+     *
+     * @param inputs Inputs to the function, one per call.
+     * @param function Function performing the remote call.
+     * @param <I> Type of the inputs.
+     * @param <O> Type of the results.
+     * @return Results of the function, in the same order as the inputs.
+     * @throws IllegalStateException When any of the calls timed out or was interrupted.
+     * @throws RuntimeException When any of the calls failed, this will be the exception it failed with.
+     */
+    public <I, O> List<O> retrieve(final List<I> inputs, final Function<I, O> function) {
+        if (inputs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ParallelRetriever.LOGGER.trace("Retrieving {} items.", inputs.size());
+        final List<TimedCall<I, O>> calls = new ArrayList<>(inputs.size());
+        final List<Future<O>> futures = new ArrayList<>(inputs.size());
+        for (final I input : inputs) {
+            final TimedCall<I, O> call = new TimedCall<>(input, function);
+            calls.add(call);
+            futures.add(this.executor.submit(call));
+        }
+        try {
+            final List<O> results = new ArrayList<>(inputs.size());
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(this.waitFor(calls.get(i), futures.get(i)));
+            }
+            return Collections.unmodifiableList(results);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IllegalStateException("Should not happen.", cause);
+        } catch (final TimeoutException | CancellationException ex) {
+            throw new IllegalStateException("Remote call timed out.", ex);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for remote calls.", ex);
+        } finally { // cancels whatever is still in flight in case of failure
+            futures.forEach(f -> f.cancel(true));
+        }
+    }
+
+}
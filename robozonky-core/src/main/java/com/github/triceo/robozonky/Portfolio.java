@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+import com.github.triceo.robozonky.remote.Investment;
+import com.github.triceo.robozonky.remote.Rating;
+import com.github.triceo.robozonky.remote.RiskPortfolio;
+import com.github.triceo.robozonky.remote.Statistics;
+
+/**
+ * Mutable state of user's portfolio throughout an investing session. Every investment made is applied to the
+ * portfolio in constant time, instead of recalculating the whole portfolio from {@link Statistics} again. Strategies
+ * never see this class, they get an immutable {@link PortfolioOverview} instead.
+ */
+class Portfolio {
+
+    private final int[] czkInvestedPerRating = new int[Rating.values().length];
+    private int czkAvailable, czkInvested;
+
+    /**
+     * @param balance Current available balance in the wallet.
+     * @param stats Statistics retrived from the Zonky API.
+     * @param investments Investments not yet reflected in the Zonky API.
+     */
+    public Portfolio(final BigDecimal balance, final Statistics stats, final Collection<Investment> investments) {
+        this.czkAvailable = balance.intValue();
+        // first figure out how much we have in outstanding loans
+        for (final RiskPortfolio risk: stats.getRiskPortfolio()) {
+            this.add(risk.getRating(), risk.getUnpaid());
+        }
+        // then make sure the share reflects investments made by ZonkyBot which have not yet been reflected in the API
+        for (final Investment investment: investments) {
+            this.add(investment.getRating(), investment.getAmount());
+        }
+    }
+
+    private void add(final Rating rating, final int amount) {
+        this.czkInvestedPerRating[rating.ordinal()] += amount;
+        this.czkInvested += amount;
+    }
+
+    /**
+     * Reflect a new investment in the portfolio. The amount invested is moved from the available balance to the rating
+     * of the investment.
+     *
+     * @param investment Investment that has just been made.
+     */
+    public void apply(final Investment investment) {
+        final int amount = investment.getAmount();
+        this.add(investment.getRating(), amount);
+        this.czkAvailable -= amount;
+    }
+
+    /**
+     * Available balance in the wallet.
+     * @return Amount in CZK.
+     */
+    public int getCzkAvailable() {
+        return this.czkAvailable;
+    }
+
+    /**
+     * Take an immutable snapshot of the portfolio, not affected by any subsequent {@link #apply(Investment)}.
+     * @return Never null.
+     */
+    public PortfolioOverview getOverview() {
+        return new PortfolioOverview(this.czkAvailable, this.czkInvested, this.czkInvestedPerRating.clone());
+    }
+
+}
@@ -21,27 +21,21 @@ import java.math.RoundingMode;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import com.github.triceo.robozonky.remote.Investment;
-import com.github.triceo.robozonky.remote.OverallPortfolio;
 import com.github.triceo.robozonky.remote.Rating;
-import com.github.triceo.robozonky.remote.RiskPortfolio;
 import com.github.triceo.robozonky.remote.Statistics;
 import com.github.triceo.robozonky.strategy.InvestmentStrategy;
 
 /**
  * Class with some aggregate statistics about user's portfolio. Used primarily as the main input into
- * {@link InvestmentStrategy}.
+ * {@link InvestmentStrategy}. Instances are immutable; see {@link Portfolio} for the mutable counterpart used while
+ * investing.
  */
 public class PortfolioOverview {
 
-    private static int sum(final Collection<Integer> vals) {
-        return vals.stream().reduce(0, (a, b) -> a + b);
-    }
-
     /**
      * Prepare an immutable portfolio overview, based on the provided information.
      * @param balance Current available balance in the wallet.
@@ -51,38 +45,35 @@ public class PortfolioOverview {
      */
     public static PortfolioOverview calculate(final BigDecimal balance, final Statistics stats,
                                               final Collection<Investment> investments) {
-        // first figure out how much we have in outstanding loans
-        final Map<Rating, Integer> amounts = stats.getRiskPortfolio().stream().collect(
-                Collectors.toMap(RiskPortfolio::getRating, OverallPortfolio::getUnpaid)
-        );
-        // then make sure the share reflects investments made by ZonkyBot which have not yet been reflected in the API
-        investments.forEach(previousInvestment -> {
-            final Rating r = previousInvestment.getRating();
-            amounts.compute(r, (k, v) -> (v == null ? 0 : v) + previousInvestment.getAmount());
-        });
-        return new PortfolioOverview(balance, amounts);
+        return new Portfolio(balance, stats, investments).getOverview();
     }
 
     private final int czkAvailable, czkInvested;
-    private final Map<Rating, Integer> czkInvestedPerRating;
-    private final Map<Rating, BigDecimal> sharesOnInvestment;
+    private final int[] czkInvestedPerRating;
+    private volatile Map<Rating, BigDecimal> sharesOnInvestment;
 
-    private PortfolioOverview(final BigDecimal czkAvailable, final Map<Rating, Integer> czkInvestedPerRating) {
-        this.czkAvailable = czkAvailable.intValue();
-        this.czkInvested = PortfolioOverview.sum(czkInvestedPerRating.values());
+    /**
+     * @param czkAvailable Available balance in the wallet.
+     * @param czkInvested Sum total of all the amounts in the second argument.
+     * @param czkInvestedPerRating Amounts yet unpaid, indexed by {@link Rating#ordinal()}. Will not be copied.
+     */
+    PortfolioOverview(final int czkAvailable, final int czkInvested, final int[] czkInvestedPerRating) {
+        this.czkAvailable = czkAvailable;
+        this.czkInvested = czkInvested;
         this.czkInvestedPerRating = czkInvestedPerRating;
+    }
+
+    private Map<Rating, BigDecimal> calculateSharesOnInvestment() {
         if (this.czkInvested == 0) {
-            this.sharesOnInvestment = Collections.emptyMap();
-        } else {
-            this.sharesOnInvestment = Arrays.stream(Rating.values()).collect(Collectors.toMap(
-                    Function.identity(),
-                    r -> {
-                        final BigDecimal invested = BigDecimal.valueOf(this.czkInvested);
-                        final BigDecimal investedPerRating = BigDecimal.valueOf(this.getCzkInvested(r));
-                        return investedPerRating.divide(invested, 4, RoundingMode.HALF_EVEN);
-                    })
-            );
+            return Collections.emptyMap();
+        }
+        final BigDecimal invested = BigDecimal.valueOf(this.czkInvested);
+        final Map<Rating, BigDecimal> shares = new EnumMap<>(Rating.class);
+        for (final Rating r: Rating.values()) {
+            final BigDecimal investedPerRating = BigDecimal.valueOf(this.getCzkInvested(r));
+            shares.put(r, investedPerRating.divide(invested, 4, RoundingMode.HALF_EVEN));
         }
+        return Collections.unmodifiableMap(shares);
     }
 
     /**
@@ -107,7 +98,7 @@ public class PortfolioOverview {
      * @return Amount in CZK.
      */
     public int getCzkInvested(final Rating r) {
-        return this.czkInvestedPerRating.getOrDefault(r, 0);
+        return this.czkInvestedPerRating[r.ordinal()];
     }
 
     /**
@@ -116,14 +107,39 @@ public class PortfolioOverview {
      * @return Share of the given rating on overall investments.
      */
     public BigDecimal getShareOnInvestment(final Rating r) {
-        return this.sharesOnInvestment.getOrDefault(r, BigDecimal.ZERO);
+        return this.getSharesOnInvestment().getOrDefault(r, BigDecimal.ZERO);
     }
 
     /**
-     * Retrieve {@link #getShareOnInvestment(Rating)} for all ratings.
+     * Retrieve {@link #getShareOnInvestment(Rating)} for all ratings. Only calculated when first requested.
      * @return All ratings will be present.
      */
     public Map<Rating, BigDecimal> getSharesOnInvestment() {
-        return this.sharesOnInvestment;
+        Map<Rating, BigDecimal> shares = this.sharesOnInvestment;
+        if (shares == null) { // the result is always the same, so concurrent calculation does no harm
+            shares = this.calculateSharesOnInvestment();
+            this.sharesOnInvestment = shares;
+        }
+        return shares;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        } else if (o == null || this.getClass() != o.getClass()) {
+            return false;
+        }
+        final PortfolioOverview that = (PortfolioOverview) o;
+        return this.czkAvailable == that.czkAvailable && this.czkInvested == that.czkInvested &&
+                Arrays.equals(this.czkInvestedPerRating, that.czkInvestedPerRating);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.czkAvailable;
+        result = 31 * result + this.czkInvested;
+        result = 31 * result + Arrays.hashCode(this.czkInvestedPerRating);
+        return result;
     }
 }
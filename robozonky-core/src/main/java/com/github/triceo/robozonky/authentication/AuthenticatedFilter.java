@@ -16,6 +16,7 @@
 package com.github.triceo.robozonky.authentication;
 
 import java.io.IOException;
+import java.util.function.Supplier;
 import javax.ws.rs.client.ClientRequestContext;
 
 import com.github.triceo.robozonky.remote.ZonkyApiToken;
@@ -26,10 +27,15 @@ class AuthenticatedFilter extends CommonFilter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AuthenticatedFilter.class);
 
-    private final char[] accessToken; // treat the access token as if it were a password
+    private final Supplier<ZonkyApiToken> token;
 
-    public AuthenticatedFilter(final ZonkyApiToken token) {
-        this.accessToken = token.getAccessToken() == null ? new char[] {} : token.getAccessToken().toCharArray();
+    /**
+     * @param token Provides the current access token, which may change over time.
+     * @param rateLimiter Limit on requests to the host, shared by all filters for that host.
+     */
+    public AuthenticatedFilter(final Supplier<ZonkyApiToken> token, final RateLimiter rateLimiter) {
+        super(rateLimiter);
+        this.token = token;
     }
 
     @Override
@@ -39,7 +45,8 @@ class AuthenticatedFilter extends CommonFilter {
 
     @Override
     public void filter(final ClientRequestContext clientRequestContext) throws IOException {
-        clientRequestContext.getHeaders().add("Authorization", "Bearer " + String.valueOf(accessToken));
+        final String accessToken = this.token.get().getAccessToken();
+        clientRequestContext.getHeaders().add("Authorization", "Bearer " + (accessToken == null ? "" : accessToken));
         super.filter(clientRequestContext);
     }
 }
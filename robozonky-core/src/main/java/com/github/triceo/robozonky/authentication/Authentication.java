@@ -16,23 +16,38 @@
 
 package com.github.triceo.robozonky.authentication;
 
+import java.util.Arrays;
+import java.util.Collection;
+import javax.ws.rs.client.Client;
+
 import com.github.triceo.robozonky.remote.ZonkyApi;
 import com.github.triceo.robozonky.remote.ZonkyApiToken;
 import com.github.triceo.robozonky.remote.ZotifyApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Immutable object representing the result of a successful authentication.
+ * Result of {@link Authenticator#authenticate(String, String)}. Owns the HTTP clients behind the APIs, which are only
+ * released by {@link #close()}. The APIs must not be used after that.
  */
-public class Authentication {
+public class Authentication implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Authentication.class);
 
     private final ZonkyApi api;
     private final ZotifyApi zotifyApi;
-    private final ZonkyApiToken apiToken;
+    private final RefreshableToken apiToken;
+    private final RateLimiter zonkyRateLimiter, zotifyRateLimiter;
+    private final Collection<Client> clients;
 
-    Authentication(final ZonkyApi api, final ZonkyApiToken apiToken, final ZotifyApi zotifyApi) {
+    Authentication(final ZonkyApi api, final RefreshableToken apiToken, final ZotifyApi zotifyApi,
+                   final RateLimiter zonkyRateLimiter, final RateLimiter zotifyRateLimiter, final Client... clients) {
         this.api = api;
         this.zotifyApi = zotifyApi;
         this.apiToken = apiToken;
+        this.zonkyRateLimiter = zonkyRateLimiter;
+        this.zotifyRateLimiter = zotifyRateLimiter;
+        this.clients = Arrays.asList(clients);
     }
 
     public ZonkyApi getZonkyApi() {
@@ -43,7 +58,37 @@ public class Authentication {
         return zotifyApi;
     }
 
+    /**
+     * @return The current access token. May change over time, as the token is being refreshed.
+     */
     public ZonkyApiToken getZonkyApiToken() {
-        return apiToken;
+        return apiToken.get();
+    }
+
+    /**
+     * @return Limit on requests to Zonky, for the purposes of monitoring.
+     */
+    public RateLimiter getZonkyRateLimiter() {
+        return zonkyRateLimiter;
+    }
+
+    /**
+     * @return Limit on requests to Zotify, for the purposes of monitoring.
+     */
+    public RateLimiter getZotifyRateLimiter() {
+        return zotifyRateLimiter;
+    }
+
+    /**
+     * Stop refreshing the token and release the HTTP clients and their connections. Reports how the rate limits
+     * fared during the session.
+     */
+    @Override
+    public void close() {
+        Authentication.LOGGER.debug("Zonky requests: {}.", this.zonkyRateLimiter);
+        Authentication.LOGGER.debug("Zotify requests: {}.", this.zotifyRateLimiter);
+        this.apiToken.close();
+        Authentication.LOGGER.trace("Closing HTTP clients.");
+        this.clients.forEach(Client::close);
     }
 }
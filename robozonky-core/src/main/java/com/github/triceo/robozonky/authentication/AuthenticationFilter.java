@@ -32,6 +32,10 @@ class AuthenticationFilter extends CommonFilter {
         return AuthenticationFilter.LOGGER;
     }
 
+    public AuthenticationFilter(final RateLimiter rateLimiter) {
+        super(rateLimiter);
+    }
+
     @Override
     public void filter(final ClientRequestContext clientRequestContext) throws IOException {
         final String authCode = Base64.getEncoder().encodeToString("web:web".getBytes(Charset.forName("UTF-8")));
@@ -16,6 +16,10 @@
 
 package com.github.triceo.robozonky.authentication;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import com.github.triceo.robozonky.remote.Api;
@@ -25,7 +29,10 @@ import com.github.triceo.robozonky.remote.ZonkyApiToken;
 import com.github.triceo.robozonky.remote.ZotifyApi;
 import org.jboss.resteasy.client.jaxrs.ResteasyClient;
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
-import org.jboss.resteasy.plugins.providers.RegisterBuiltin;
+import org.jboss.resteasy.plugins.providers.DefaultTextPlain;
+import org.jboss.resteasy.plugins.providers.FormUrlEncodedProvider;
+import org.jboss.resteasy.plugins.providers.JaxrsFormProvider;
+import org.jboss.resteasy.plugins.providers.StringTextStar;
 import org.jboss.resteasy.plugins.providers.jackson.ResteasyJackson2Provider;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.slf4j.Logger;
@@ -40,14 +47,51 @@ public class Authenticator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Authenticator.class);
     private static final String TARGET_SCOPE = "SCOPE_APP_WEB";
+    /**
+     * Maximum number of open connections per host, unless specified otherwise. Clients need to support concurrent
+     * requests, see {@link com.github.triceo.robozonky.Investor}.
+     */
+    public static final int DEFAULT_CONNECTION_POOL_SIZE = 10;
+    /**
+     * Timeout for establishing connections and for reading from them, unless specified otherwise.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * RESTEasy is only initialized on first use. Rather than scanning for and registering every built-in provider,
+     * only those that the APIs actually need are registered: JSON for the entities, forms for OAuth and plain text
+     * for error messages.
+     */
+    private static final class ResteasyHolder {
+
+        private static final ResteasyProviderFactory RESTEASY;
+        static {
+            Authenticator.LOGGER.trace("Initializing RESTEasy.");
+            final long start = System.nanoTime();
+            RESTEASY = new ResteasyProviderFactory();
+            RESTEASY.registerProvider(ResteasyJackson2Provider.class);
+            RESTEASY.registerProvider(JaxrsFormProvider.class);
+            RESTEASY.registerProvider(FormUrlEncodedProvider.class);
+            RESTEASY.registerProvider(StringTextStar.class);
+            RESTEASY.registerProvider(DefaultTextPlain.class);
+            Authenticator.LOGGER.debug("RESTEasy initialized in {} ms.",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        static ResteasyProviderFactory get() {
+            return ResteasyHolder.RESTEASY;
+        }
 
-    private static final ResteasyProviderFactory RESTEASY;
-    static {
-        Authenticator.LOGGER.trace("Initializing RESTEasy.");
-        RESTEASY = ResteasyProviderFactory.getInstance();
-        RegisterBuiltin.register(Authenticator.RESTEASY);
-        RESTEASY.registerProvider(ResteasyJackson2Provider.class);
-        Authenticator.LOGGER.trace("RESTEasy initialized.");
+    }
+
+    /**
+     * Initialize the HTTP client infrastructure in the background, so that it is ready by the time of the first
+     * login. Calling this is optional, without it the infrastructure is initialized during the first login.
+     */
+    public static void warmUp() {
+        final Thread t = new Thread(ResteasyHolder::get, "robozonky-warmup");
+        t.setDaemon(true); // never block JVM exit
+        t.start();
     }
 
     /**
@@ -63,7 +107,7 @@ public class Authenticator {
             final ZonkyApiToken token = api.login(username, password, "password", Authenticator.TARGET_SCOPE);
             Authenticator.LOGGER.info("Logged in with Zonky as user '{}' using password.", username);
             return token;
-        }, false, isDryRun);
+        }, false, isDryRun, null, null, null);
     }
 
     /**
@@ -76,10 +120,24 @@ public class Authenticator {
      */
     public static Authenticator withAccessToken(final String username, final ZonkyApiToken token,
                                                 final boolean isDryRun) {
+        return Authenticator.withAccessToken(username, token, null, isDryRun);
+    }
+
+    /**
+     * Prepare for authentication using the Zonky OAuth token.
+     *
+     * @param username Zonky username.
+     * @param token OAuth token.
+     * @param obtained When the token was obtained, so that it can be refreshed in time. Null for now.
+     * @param isDryRun Whether or not we are authenticating for a dry run.
+     * @return Instance ready for authentication.
+     */
+    public static Authenticator withAccessToken(final String username, final ZonkyApiToken token,
+                                                final Instant obtained, final boolean isDryRun) {
         return new Authenticator((ZonkyApi api) -> {
             Authenticator.LOGGER.info("Logged in with Zonky as user '{}' with existing access token.", username);
             return token;
-        }, true, isDryRun);
+        }, true, isDryRun, obtained, null, null);
     }
 
     /**
@@ -97,41 +155,55 @@ public class Authenticator {
             final ZonkyApiToken newToken = api.refresh(tokenId, "refresh_token", Authenticator.TARGET_SCOPE);
             Authenticator.LOGGER.info("Logged in with Zonky as user '{}', refreshing existing access token.", username);
             return newToken;
-        }, true, isDryRun);
+        }, true, isDryRun, null, null, null);
     }
 
-    private static Authentication newAuthenticatedApi(final ZonkyApiToken token, final String zonkyApiUrl,
-                                                      final String zotifyApiUrl,
-                                                      final ResteasyClientBuilder clientBuilder,
-                                                      final boolean isDryRun) {
-        final AuthenticatedFilter f = new AuthenticatedFilter(token);
-        final ZonkyApi api = isDryRun ?
-                Authenticator.newApi(zonkyApiUrl, clientBuilder, f, ZonkyApi.class):
-                Authenticator.newApi(zonkyApiUrl, clientBuilder, f, InvestingZonkyApi.class);
-        final ZotifyApi zotifyApi =
-                Authenticator.newApi(zotifyApiUrl, clientBuilder, new ZotifyFilter(), ZotifyApi.class);
-        return new Authentication(api, token, zotifyApi);
+    private static <T extends Api> T newApi(final ResteasyClient client, final String url,
+                                            final CommonFilter filter, final Class<T> api) {
+        return client.target(url).register(filter).proxy(api);
     }
 
-    private static <T extends Api> T newApi(final String zonkyApiUrl, final ResteasyClientBuilder clientBuilder,
-                                            final CommonFilter filter, final Class<T> api) {
-        // FIXME clients are never closed
-        final ResteasyClient client = clientBuilder.build();
-        client.register(filter);
-        return client.target(zonkyApiUrl).proxy(api);
+    private static ZonkyApiToken refresh(final ZonkyApi api, final ZonkyApiToken token) {
+        return api.refresh(token.getRefreshToken(), "refresh_token", Authenticator.TARGET_SCOPE);
+    }
+
+    private static <T extends ZonkyApi> T newAuthenticatedApi(final ResteasyClient client, final String url,
+                                                              final AuthenticatedFilter filter,
+                                                              final RefreshableToken token, final Class<T> api) {
+        return ReauthenticatingApi.wrap(Authenticator.newApi(client, url, filter, api), api, token);
     }
 
     private final Function<ZonkyApi, ZonkyApiToken> authenticationMethod;
     private final boolean tokenBased, isDryRun;
+    private final Instant tokenObtained;
+    private final Duration refreshBefore;
+    private final Consumer<ZonkyApiToken> onRefresh;
 
     private Authenticator(final Function<ZonkyApi, ZonkyApiToken> authenticationMethod, final boolean tokenBased,
-                          final boolean isDryRun) {
+                          final boolean isDryRun, final Instant tokenObtained, final Duration refreshBefore,
+                          final Consumer<ZonkyApiToken> onRefresh) {
         if (authenticationMethod == null) {
             throw new IllegalArgumentException("Authentication method must be provided.");
         }
         this.authenticationMethod = authenticationMethod;
         this.tokenBased = tokenBased;
         this.isDryRun = isDryRun;
+        this.tokenObtained = tokenObtained;
+        this.refreshBefore = refreshBefore;
+        this.onRefresh = onRefresh;
+    }
+
+    /**
+     * Keep refreshing the access token in the background for as long as the resulting {@link Authentication} is
+     * open. Otherwise the token will expire and the APIs will stop working.
+     *
+     * @param refreshBefore How long before expiration to refresh the token.
+     * @param onRefresh Called with every new token, such as to persist it.
+     * @return New instance ready for authentication.
+     */
+    public Authenticator refreshingToken(final Duration refreshBefore, final Consumer<ZonkyApiToken> onRefresh) {
+        return new Authenticator(this.authenticationMethod, this.tokenBased, this.isDryRun, this.tokenObtained,
+                refreshBefore, onRefresh);
     }
 
     /**
@@ -143,30 +215,73 @@ public class Authenticator {
     }
 
     /**
-     * Perform the actual authentication.
+     * Perform the actual authentication. One client is created for each of the hosts, all the APIs for the same host
+     * share the client and its pool of connections.
      * @param zonkyApiUrl URL to use to connect to Zonky.
      * @param zotifyApiUrl URL to use to connect to the Zotify marketplace cache.
-     * @param clientBuilder The builder to use for the RESTEasy client proxy.
-     * @return Information about the authentication.
+     * @param clientBuilder The builder to use for the RESTEasy clients.
+     * @return Information about the authentication. Owns the clients and needs to be closed.
      */
     Authentication authenticate(final String zonkyApiUrl, final String zotifyApiUrl,
                                 final ResteasyClientBuilder clientBuilder) {
-        final ZonkyApi api = Authenticator.newApi(zonkyApiUrl, clientBuilder, new AuthenticationFilter(),
-                ZonkyApi.class);
-        final ZonkyApiToken token = authenticationMethod.apply(api);
-        return Authenticator.newAuthenticatedApi(token, zonkyApiUrl, zotifyApiUrl, clientBuilder, isDryRun);
+        final ResteasyClient zonkyClient = clientBuilder.build();
+        final ResteasyClient zotifyClient = clientBuilder.build();
+        final RateLimiter zonkyLimiter = new RateLimiter(), zotifyLimiter = new RateLimiter();
+        RefreshableToken token = null;
+        try {
+            final ZonkyApi loginApi = Authenticator.newApi(zonkyClient, zonkyApiUrl,
+                    new AuthenticationFilter(zonkyLimiter), ZonkyApi.class);
+            final Instant obtained = this.tokenObtained == null ? Instant.now() : this.tokenObtained;
+            final ZonkyApiToken initialToken = authenticationMethod.apply(loginApi);
+            token = new RefreshableToken(initialToken, obtained, t -> Authenticator.refresh(loginApi, t),
+                    this.refreshBefore, this.onRefresh);
+            final AuthenticatedFilter f = new AuthenticatedFilter(token, zonkyLimiter);
+            final ZonkyApi api = this.isDryRun ?
+                    Authenticator.newAuthenticatedApi(zonkyClient, zonkyApiUrl, f, token, ZonkyApi.class) :
+                    Authenticator.newAuthenticatedApi(zonkyClient, zonkyApiUrl, f, token, InvestingZonkyApi.class);
+            final ZotifyApi zotifyApi = Authenticator.newApi(zotifyClient, zotifyApiUrl,
+                    new ZotifyFilter(zotifyLimiter), ZotifyApi.class);
+            return new Authentication(api, token, zotifyApi, zonkyLimiter, zotifyLimiter, zonkyClient,
+                    zotifyClient);
+        } catch (final RuntimeException ex) { // nobody else will close the clients
+            if (token != null) {
+                token.close();
+            }
+            zonkyClient.close();
+            zotifyClient.close();
+            throw ex;
+        }
     }
 
     /**
      * Perform the actual authentication. Will throw an unchecked exception in case authentication failed.
      * @param zonkyApiUrl URL to use to connect to Zonky.
      * @param zotifyApiUrl URL to use to connect to the Zotify marketplace cache.
-     * @return Information about the authentication.
+     * @param connectionPoolSize Maximum number of open connections per host.
+     * @param timeout Timeout for establishing connections and for reading from them.
+     * @return Information about the authentication. Owns the HTTP clients and needs to be closed.
      */
-    public Authentication authenticate(final String zonkyApiUrl, final String zotifyApiUrl) {
+    public Authentication authenticate(final String zonkyApiUrl, final String zotifyApiUrl,
+                                       final int connectionPoolSize, final Duration timeout) {
         final ResteasyClientBuilder clientBuilder = new ResteasyClientBuilder();
-        clientBuilder.providerFactory(Authenticator.RESTEASY);
+        clientBuilder.providerFactory(ResteasyHolder.get())
+                .connectionPoolSize(connectionPoolSize)
+                .maxPooledPerRoute(connectionPoolSize)
+                .establishConnectionTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .socketTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
         return this.authenticate(zonkyApiUrl, zotifyApiUrl, clientBuilder);
     }
 
+    /**
+     * Perform the actual authentication, with {@link #DEFAULT_CONNECTION_POOL_SIZE} and {@link #DEFAULT_TIMEOUT}.
+     * Will throw an unchecked exception in case authentication failed.
+     * @param zonkyApiUrl URL to use to connect to Zonky.
+     * @param zotifyApiUrl URL to use to connect to the Zotify marketplace cache.
+     * @return Information about the authentication. Owns the HTTP clients and needs to be closed.
+     */
+    public Authentication authenticate(final String zonkyApiUrl, final String zotifyApiUrl) {
+        return this.authenticate(zonkyApiUrl, zotifyApiUrl, Authenticator.DEFAULT_CONNECTION_POOL_SIZE,
+                Authenticator.DEFAULT_TIMEOUT);
+    }
+
 }
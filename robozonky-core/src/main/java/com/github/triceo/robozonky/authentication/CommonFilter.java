@@ -16,10 +16,12 @@
 package com.github.triceo.robozonky.authentication;
 
 import java.io.IOException;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.client.ClientRequestContext;
 import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.ClientResponseContext;
 import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
 
 import org.slf4j.Logger;
 
@@ -30,10 +32,26 @@ abstract class CommonFilter implements ClientRequestFilter, ClientResponseFilter
     private static final String VERSION = CommonFilter.class.getPackage().getImplementationVersion();
     private static final String URL = "http://triceo.github.io/robozonky/";
 
+    private static RateLimiter.Budget getBudget(final ClientRequestContext clientRequestContext) {
+        final String method = clientRequestContext.getMethod();
+        final boolean isRead = HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method);
+        return isRead ? RateLimiter.Budget.READ : RateLimiter.Budget.WRITE;
+    }
+
+    private final RateLimiter rateLimiter;
+
+    /**
+     * @param rateLimiter Limit on requests to the host, shared by all filters for that host.
+     */
+    protected CommonFilter(final RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
     @Override
     public void filter(final ClientRequestContext clientRequestContext) throws IOException {
         clientRequestContext.getHeaders().putSingle("User-Agent", "RoboZonky " + CommonFilter.VERSION +
                 " (" + CommonFilter.URL + ")");
+        this.rateLimiter.acquire(CommonFilter.getBudget(clientRequestContext));
         this.getLogger().trace("Will '{}' to '{}'.", clientRequestContext.getMethod(), clientRequestContext.getUri());
     }
 
@@ -42,7 +60,8 @@ abstract class CommonFilter implements ClientRequestFilter, ClientResponseFilter
                        final ClientResponseContext clientResponseContext) throws IOException {
         this.getLogger().debug("Operation '{}' to '{}' finished with HTTP {}.", clientRequestContext.getMethod(),
                 clientRequestContext.getUri(), clientResponseContext.getStatus());
+        this.rateLimiter.onResponse(CommonFilter.getBudget(clientRequestContext), clientResponseContext.getStatus(),
+                clientResponseContext.getHeaderString(HttpHeaders.RETRY_AFTER));
     }
 
-
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.authentication;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client-side limit on the rate of requests to a single host. Reads and writes (such as investments) draw from
+ * separate token buckets. Each bucket starts at its initial rate, which is halved whenever the server responds with
+ * HTTP 429 and slowly grows with every successful response. Until the first HTTP 429, the rate may grow up to
+ * {@link #PROBING_FACTOR} times the initial rate, to find out how fast the server allows the requests to be.
+ * Afterwards, it only recovers up to the rate at which the server last objected. When the server says when to retry, all
+ * requests wait until then.
+ */
+public class RateLimiter {
+
+    /**
+     * The bucket a request draws from.
+     */
+    public enum Budget {
+        READ,
+        WRITE
+    }
+
+    static final class Bucket {
+
+        private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+        private final int capacity;
+        private final double minRate, step;
+        private double maxRate, rate, permits;
+        private long lastRefill;
+
+        Bucket(final int capacity, final double initialRate, final long now) {
+            this.capacity = capacity;
+            this.minRate = initialRate / 100;
+            this.step = initialRate / 20;
+            this.maxRate = initialRate * RateLimiter.PROBING_FACTOR; // until the server first objects
+            this.rate = initialRate;
+            this.permits = capacity;
+            this.lastRefill = now;
+        }
+
+        private void refill(final long now) {
+            final double refilled = this.permits + (now - this.lastRefill) * this.rate / Bucket.NANOS_PER_SECOND;
+            this.permits = Math.min(this.capacity, refilled);
+            this.lastRefill = now;
+        }
+
+        /**
+         * Take a permit, possibly one that will only become available in the future.
+         *
+         * @param now Current time in nanoseconds.
+         * @return Nanoseconds until the permit becomes available.
+         */
+        synchronized long reserve(final long now) {
+            this.refill(now);
+            this.permits -= 1;
+            return this.permits >= 0 ? 0 : (long)(-this.permits * Bucket.NANOS_PER_SECOND / this.rate);
+        }
+
+        synchronized void decrease(final long now) {
+            this.refill(now);
+            this.maxRate = this.rate;
+            this.rate = Math.max(this.minRate, this.rate / 2);
+            this.permits = Math.min(0, this.permits); // no more bursts until the bucket refills
+        }
+
+        synchronized void increase(final long now) {
+            this.refill(now);
+            this.rate = Math.min(this.maxRate, this.rate + this.step);
+        }
+
+        synchronized double getRate() {
+            return this.rate;
+        }
+
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimiter.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+    /**
+     * How many times the initial rate may be exceeded before the server first responds with HTTP 429.
+     */
+    static final int PROBING_FACTOR = 2;
+    /**
+     * Initial number of reads per second, unless specified otherwise.
+     */
+    public static final double DEFAULT_READ_RATE = 10;
+    /**
+     * Initial number of writes per second, unless specified otherwise.
+     */
+    public static final double DEFAULT_WRITE_RATE = 2;
+
+    static Duration parseRetryAfter(final String retryAfter, final Supplier<ZonedDateTime> now) {
+        if (retryAfter == null) {
+            return Duration.ZERO;
+        }
+        final String value = retryAfter.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (final NumberFormatException ex) { // not seconds, try HTTP date
+            try {
+                final ZonedDateTime until = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                final Duration d = Duration.between(now.get(), until);
+                return d.isNegative() ? Duration.ZERO : d;
+            } catch (final DateTimeParseException ex2) {
+                RateLimiter.LOGGER.debug("Ignoring unparseable Retry-After '{}'.", retryAfter);
+                return Duration.ZERO;
+            }
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Bucket reads, writes;
+    private final AtomicLong pausedUntil;
+    private final AtomicLong throttledResponses = new AtomicLong(0), delayedRequests = new AtomicLong(0);
+
+    RateLimiter(final double readRate, final double writeRate, final LongSupplier clock) {
+        this.clock = clock;
+        final long now = clock.getAsLong();
+        this.reads = new Bucket((int)Math.ceil(readRate), readRate, now);
+        this.writes = new Bucket((int)Math.ceil(writeRate), writeRate, now);
+        this.pausedUntil = new AtomicLong(now);
+    }
+
+    /**
+     * @param readRate Initial number of reads per second.
+     * @param writeRate Initial number of writes per second.
+     */
+    public RateLimiter(final double readRate, final double writeRate) {
+        this(readRate, writeRate, System::nanoTime);
+    }
+
+    /**
+     * Limit with {@link #DEFAULT_READ_RATE} and {@link #DEFAULT_WRITE_RATE}.
+     */
+    public RateLimiter() {
+        this(RateLimiter.DEFAULT_READ_RATE, RateLimiter.DEFAULT_WRITE_RATE);
+    }
+
+    private Bucket getBucket(final Budget budget) {
+        return budget == Budget.WRITE ? this.writes : this.reads;
+    }
+
+    /**
+     * Take a permit to perform a request.
+     *
+     * @param budget Bucket to take the permit from.
+     * @return Nanoseconds to wait before the request may be performed.
+     */
+    long reserve(final Budget budget) {
+        final long now = this.clock.getAsLong();
+        final long untilPermit = this.getBucket(budget).reserve(now);
+        final long untilResumed = this.pausedUntil.get() - now;
+        return Math.max(untilPermit, untilResumed);
+    }
+
+    /**
+     * Block until a request may be performed.
+     *
+     * @param budget Bucket to take the permit from.
+     * @throws InterruptedIOException When interrupted while waiting.
+     */
+    public void acquire(final Budget budget) throws InterruptedIOException {
+        final long wait = this.reserve(budget);
+        if (wait <= 0) {
+            return;
+        }
+        this.delayedRequests.incrementAndGet();
+        RateLimiter.LOGGER.trace("Delaying {} request by {} ms.", budget, TimeUnit.NANOSECONDS.toMillis(wait));
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rate limit.");
+        }
+    }
+
+    /**
+     * Adapt the rate to the server's response.
+     *
+     * @param budget Bucket the request took its permit from.
+     * @param status HTTP status of the response.
+     * @param retryAfter Value of the Retry-After response header, or null if none.
+     */
+    public void onResponse(final Budget budget, final int status, final String retryAfter) {
+        final long now = this.clock.getAsLong();
+        if (status == RateLimiter.TOO_MANY_REQUESTS) {
+            this.throttledResponses.incrementAndGet();
+            this.getBucket(budget).decrease(now);
+            final Duration pause = RateLimiter.parseRetryAfter(retryAfter, ZonedDateTime::now);
+            this.pausedUntil.accumulateAndGet(now + pause.toNanos(), Math::max);
+            RateLimiter.LOGGER.debug("Server asked to slow down, {} rate now {}/s, pausing for {}.", budget,
+                    this.getRate(budget), pause);
+        } else if (status < 400) {
+            this.getBucket(budget).increase(now);
+        }
+    }
+
+    /**
+     * @param budget Bucket in question.
+     * @return Current number of permits per second.
+     */
+    public double getRate(final Budget budget) {
+        return this.getBucket(budget).getRate();
+    }
+
+    /**
+     * @return Number of responses with HTTP 429 so far.
+     */
+    public long getThrottledResponses() {
+        return this.throttledResponses.get();
+    }
+
+    /**
+     * @return Number of requests that had to wait for a permit so far.
+     */
+    public long getDelayedRequests() {
+        return this.delayedRequests.get();
+    }
+
+    /**
+     * @return How much longer all requests will be paused, as requested by the server.
+     */
+    public Duration getRemainingPause() {
+        final long remaining = this.pausedUntil.get() - this.clock.getAsLong();
+        return remaining > 0 ? Duration.ofNanos(remaining) : Duration.ZERO;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RateLimiter{");
+        sb.append("readRate=").append(this.getRate(Budget.READ));
+        sb.append(", writeRate=").append(this.getRate(Budget.WRITE));
+        sb.append(", throttledResponses=").append(this.getThrottledResponses());
+        sb.append(", delayedRequests=").append(this.getDelayedRequests());
+        sb.append('}');
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.authentication;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotAuthorizedException;
+
+import com.github.triceo.robozonky.remote.ZonkyApi;
+import com.github.triceo.robozonky.remote.ZonkyApiToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recovers from the server rejecting the access token in the middle of a session, such as when the token expired or
+ * was revoked. On HTTP 401, the token is refreshed and, if the request was idempotent, the request is repeated once
+ * with the new token. Other requests fail, but the requests that follow will succeed.
+ */
+class ReauthenticatingApi implements InvocationHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReauthenticatingApi.class);
+
+    /**
+     * @param api API to wrap, using the token through {@link AuthenticatedFilter}.
+     * @param type Interface of the API.
+     * @param token Token used by the API.
+     * @param <T> Type of the API.
+     * @return API which refreshes the token when rejected.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends ZonkyApi> T wrap(final T api, final Class<T> type, final RefreshableToken token) {
+        return (T)Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                new ReauthenticatingApi(api, token));
+    }
+
+    private final Object api;
+    private final RefreshableToken token;
+
+    private ReauthenticatingApi(final Object api, final RefreshableToken token) {
+        this.api = api;
+        this.token = token;
+    }
+
+    private Object invokeOnApi(final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(this.api, args);
+        } catch (final InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        final ZonkyApiToken used = this.token.get();
+        try {
+            return this.invokeOnApi(method, args);
+        } catch (final NotAuthorizedException ex) {
+            ReauthenticatingApi.LOGGER.debug("Access token rejected by '{}', refreshing.", method.getName());
+            try {
+                this.token.refresh(used);
+            } catch (final RuntimeException ex2) {
+                ReauthenticatingApi.LOGGER.warn("Failed refreshing rejected access token.", ex2);
+                throw ex;
+            }
+            if (!method.isAnnotationPresent(GET.class)) { // the request may have had an effect, do not repeat
+                throw ex;
+            }
+            ReauthenticatingApi.LOGGER.debug("Repeating '{}' with refreshed access token.", method.getName());
+            return this.invokeOnApi(method, args);
+        }
+    }
+
+}
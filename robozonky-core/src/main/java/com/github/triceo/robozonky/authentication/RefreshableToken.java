@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.authentication;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.github.triceo.robozonky.remote.ZonkyApiToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the current access token and, if so requested, refreshes it in the background before it expires. This way,
+ * the token is always ready and no API call needs to wait for an OAuth round trip. The token can also be refreshed on
+ * request, when the server unexpectedly rejects it.
+ */
+public class RefreshableToken implements Supplier<ZonkyApiToken>, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshableToken.class);
+    /**
+     * How long to wait before trying again after a failed refresh, and the shortest time between two refreshes.
+     */
+    static final Duration RETRY_DELAY = Duration.ofSeconds(10);
+
+    /**
+     * Calculate when a token should be refreshed. Never sooner than halfway through its lifetime, so that tokens which
+     * do not live much longer than the refresh period are not refreshed over and over.
+     *
+     * @param token Token in question.
+     * @param obtained When the token was obtained.
+     * @param refreshBefore How long before expiration to refresh.
+     * @return When to refresh.
+     */
+    static Instant getRefreshTime(final ZonkyApiToken token, final Instant obtained, final Duration refreshBefore) {
+        final Instant expires = obtained.plusSeconds(token.getExpiresIn());
+        final Instant halfway = obtained.plusSeconds(token.getExpiresIn() / 2);
+        final Instant beforeExpiration = expires.minus(refreshBefore);
+        return beforeExpiration.isBefore(halfway) ? halfway : beforeExpiration;
+    }
+
+    private volatile ZonkyApiToken token;
+    private final Function<ZonkyApiToken, ZonkyApiToken> refresher;
+    private final Duration refreshBefore;
+    private final Consumer<ZonkyApiToken> onRefresh;
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> nextRefresh;
+
+    /**
+     * Hold the token and, if requested, start refreshing it in the background.
+     *
+     * @param token The token to hold.
+     * @param obtained When the token was obtained.
+     * @param refresher Retrieves a new token based on the current one.
+     * @param refreshBefore How long before expiration to refresh. Null to only ever refresh on request, see
+     * {@link #refresh(ZonkyApiToken)}.
+     * @param onRefresh Called with every new token, such as to persist it. May be null.
+     */
+    RefreshableToken(final ZonkyApiToken token, final Instant obtained,
+                     final Function<ZonkyApiToken, ZonkyApiToken> refresher, final Duration refreshBefore,
+                     final Consumer<ZonkyApiToken> onRefresh) {
+        this.token = token;
+        this.refresher = refresher;
+        this.refreshBefore = refreshBefore;
+        this.onRefresh = onRefresh == null ? t -> {} : onRefresh;
+        if (refreshBefore == null) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "robozonky-token-refresh");
+            t.setDaemon(true); // never block JVM exit
+            return t;
+        });
+        this.schedule(Duration.between(Instant.now(), RefreshableToken.getRefreshTime(token, obtained, refreshBefore)));
+    }
+
+    private synchronized void schedule(final Duration delay) {
+        if (this.scheduler == null || this.scheduler.isShutdown()) {
+            return;
+        }
+        if (this.nextRefresh != null) { // refreshed on request before the scheduled time
+            this.nextRefresh.cancel(false);
+        }
+        final long millis = Math.max(0, delay.toMillis());
+        RefreshableToken.LOGGER.debug("Access token will be refreshed in {} seconds.", millis / 1000);
+        this.nextRefresh = this.scheduler.schedule(this::refreshInBackground, millis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ZonkyApiToken refreshNow() {
+        final ZonkyApiToken newToken = this.refresher.apply(this.token);
+        final Instant obtained = Instant.now();
+        this.token = newToken;
+        RefreshableToken.LOGGER.info("Access token refreshed.");
+        try {
+            this.onRefresh.accept(newToken);
+        } catch (final RuntimeException ex) {
+            RefreshableToken.LOGGER.warn("Failed processing refreshed access token.", ex);
+        }
+        if (this.refreshBefore != null) {
+            final Duration delay = Duration.between(Instant.now(),
+                    RefreshableToken.getRefreshTime(newToken, obtained, this.refreshBefore));
+            // never hammer the server, not even when it hands out tokens which expire right away
+            this.schedule(delay.compareTo(RefreshableToken.RETRY_DELAY) < 0 ? RefreshableToken.RETRY_DELAY : delay);
+        }
+        return newToken;
+    }
+
+    private void refreshInBackground() {
+        try {
+            this.refreshNow();
+        } catch (final RuntimeException ex) {
+            RefreshableToken.LOGGER.warn("Failed refreshing access token, will try again.", ex);
+            this.schedule(RefreshableToken.RETRY_DELAY);
+        }
+    }
+
+    /**
+     * Refresh the token right away, such as when the server no longer accepts it. Only one refresh happens for any
+     * number of concurrent callers who found the same token stale.
+     *
+     * @param stale The token that is no longer accepted.
+     * @return The new token.
+     * @throws RuntimeException When the refresh failed.
+     */
+    ZonkyApiToken refresh(final ZonkyApiToken stale) {
+        synchronized (this) {
+            if (this.token != stale) { // somebody else has already refreshed it
+                return this.token;
+            }
+            return this.refreshNow();
+        }
+    }
+
+    /**
+     * @return The current token.
+     */
+    @Override
+    public ZonkyApiToken get() {
+        return this.token;
+    }
+
+    /**
+     * Stop refreshing the token.
+     */
+    @Override
+    public void close() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+    }
+
+}
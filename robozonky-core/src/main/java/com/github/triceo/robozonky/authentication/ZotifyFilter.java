@@ -28,4 +28,8 @@ class ZotifyFilter extends CommonFilter {
         return ZotifyFilter.LOGGER;
     }
 
+    public ZotifyFilter(final RateLimiter rateLimiter) {
+        super(rateLimiter);
+    }
+
 }
@@ -27,6 +27,27 @@ public abstract class BiOperation<In1, In2, Out> implements BiFunction<In1, In2,
 
     protected abstract Out perform(final In1 input1, final In2 input2);
 
+    /**
+     * Change how the operation is performed. Decorators compose, the last one added is the outermost.
+     *
+     * @param decorator Decorator to apply on every call of {@link #perform(Object, Object)}.
+     * @return New operation, decorated.
+     */
+    public BiOperation<In1, In2, Out> decorate(final Decorator decorator) {
+        final BiOperation<In1, In2, Out> self = this;
+        return new BiOperation<In1, In2, Out>() {
+            @Override
+            protected Logger getLogger() {
+                return self.getLogger();
+            }
+
+            @Override
+            protected Out perform(final In1 input1, final In2 input2) {
+                return decorator.call(() -> self.perform(input1, input2));
+            }
+        };
+    }
+
     @Override
     public Optional<Out> apply(final In1 input1, final In2 input2) {
         this.getLogger().trace("Starting on input '{}', '{}'.", input1, input2);
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.operations;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fails fast while the remote side is known to be down. After a given number of consecutive failures, the circuit
+ * opens and every action fails immediately without being performed. Once the circuit has been open for a while, one
+ * action is let through; if it succeeds, the circuit closes, otherwise it stays open for another while.
+ */
+public class CircuitBreaker implements Decorator {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Predicate<Throwable> countedFailures;
+    private final LongSupplier clock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt;
+
+    CircuitBreaker(final int failureThreshold, final Duration openDuration,
+                   final Predicate<Throwable> countedFailures, final LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.countedFailures = countedFailures;
+        this.clock = clock;
+    }
+
+    /**
+     * @param failureThreshold Number of consecutive failures after which the circuit opens.
+     * @param openDuration How long to fail fast before the remote side is given another chance.
+     * @param countedFailures Which failures indicate the remote side is down. Others are rethrown without changing
+     * the state of the circuit.
+     */
+    public CircuitBreaker(final int failureThreshold, final Duration openDuration,
+                          final Predicate<Throwable> countedFailures) {
+        this(failureThreshold, openDuration, countedFailures, System::nanoTime);
+    }
+
+    synchronized State getState() {
+        return this.state;
+    }
+
+    private synchronized void beforeCall() {
+        if (this.state == State.CLOSED) {
+            return;
+        } else if (this.state == State.OPEN && this.clock.getAsLong() - this.openedAt >= this.openNanos) {
+            CircuitBreaker.LOGGER.debug("Circuit half-open, trying again.");
+            this.state = State.HALF_OPEN;
+            return;
+        }
+        throw new IllegalStateException("Circuit open, remote side considered down.");
+    }
+
+    private synchronized void onSuccess() {
+        if (this.state != State.CLOSED) {
+            CircuitBreaker.LOGGER.info("Remote side available again.");
+        }
+        this.state = State.CLOSED;
+        this.consecutiveFailures = 0;
+    }
+
+    private synchronized void onFailure(final RuntimeException ex) {
+        if (!this.countedFailures.test(ex)) {
+            if (this.state == State.HALF_OPEN) { // remote side responded, it is not down
+                this.state = State.CLOSED;
+                this.consecutiveFailures = 0;
+            }
+            return;
+        }
+        this.consecutiveFailures++;
+        if (this.state == State.HALF_OPEN || this.consecutiveFailures >= this.failureThreshold) {
+            if (this.state != State.OPEN) {
+                CircuitBreaker.LOGGER.warn("Remote side considered down, failing fast for the next {} seconds.",
+                        Duration.ofNanos(this.openNanos).getSeconds());
+            }
+            this.state = State.OPEN;
+            this.openedAt = this.clock.getAsLong();
+        }
+    }
+
+    @Override
+    public <T> T call(final Supplier<T> action) {
+        this.beforeCall();
+        try {
+            final T result = action.get();
+            this.onSuccess();
+            return result;
+        } catch (final RuntimeException ex) {
+            this.onFailure(ex);
+            throw ex;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.operations;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Stops waiting for an action that takes too long. The action is interrupted, but blocking network I/O may ignore
+ * that; in such case, the action will only end when its socket times out, while the caller will have long moved on.
+ * Therefore, never use this on actions which must not be left running unseen, such as investing.
+ */
+public class Deadline implements Decorator {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "robozonky-deadline");
+        t.setDaemon(true); // never block JVM exit
+        return t;
+    });
+
+    private final Duration timeout;
+
+    /**
+     * @param timeout Maximum time to wait for the action to finish.
+     */
+    public Deadline(final Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @throws IllegalStateException With {@link TimeoutException} as the cause, when the action did not finish in
+     * time.
+     */
+    @Override
+    public <T> T call(final Supplier<T> action) {
+        final Future<T> result = Deadline.EXECUTOR.submit(action::get);
+        try {
+            return result.get(this.timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (final TimeoutException ex) {
+            result.cancel(true);
+            throw new IllegalStateException("Did not finish within " + this.timeout + ".", ex);
+        } catch (final InterruptedException ex) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting.", ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException("Should not happen.", cause);
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.operations;
+
+import java.util.function.Supplier;
+
+/**
+ * Changes how an {@link Operation} or a {@link BiOperation} is performed, such as by retrying it when it fails. See
+ * {@link Operation#decorate(Decorator)} and {@link BiOperation#decorate(Decorator)}.
+ */
+public interface Decorator {
+
+    /**
+     * Perform the action, as decorated.
+     *
+     * @param action The action to perform.
+     * @param <T> Type of the result.
+     * @return Result of the action.
+     */
+    <T> T call(Supplier<T> action);
+
+    /**
+     * Compose two decorators.
+     *
+     * @param inner Decorator to apply on the action before this one.
+     * @return Decorator which calls this decorator on the action decorated by the inner decorator.
+     */
+    default Decorator wrapping(final Decorator inner) {
+        final Decorator outer = this;
+        return new Decorator() {
+            @Override
+            public <T> T call(final Supplier<T> action) {
+                return outer.call(() -> inner.call(action));
+            }
+        };
+    }
+
+}
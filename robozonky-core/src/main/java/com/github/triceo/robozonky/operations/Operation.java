@@ -27,6 +27,27 @@ public abstract class Operation<In, Out> implements Function<In, Optional<Out>>
 
     protected abstract Out perform(final In input);
 
+    /**
+     * Change how the operation is performed. Decorators compose, the last one added is the outermost.
+     *
+     * @param decorator Decorator to apply on every call of {@link #perform(Object)}.
+     * @return New operation, decorated.
+     */
+    public Operation<In, Out> decorate(final Decorator decorator) {
+        final Operation<In, Out> self = this;
+        return new Operation<In, Out>() {
+            @Override
+            protected Logger getLogger() {
+                return self.getLogger();
+            }
+
+            @Override
+            protected Out perform(final In input) {
+                return decorator.call(() -> self.perform(input));
+            }
+        };
+    }
+
     @Override
     public Optional<Out> apply(final In input) {
         this.getLogger().trace("Starting on input '{}'.", input);
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.operations;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * Decorators for operations against Zonky, and the predicates they use to tell transient failures apart.
+ */
+public final class Resilience {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Shared by all operations against Zonky, so that a failing login also stops investments and vice versa.
+     */
+    static final CircuitBreaker ZONKY = new CircuitBreaker(5, Duration.ofMinutes(1), Resilience::isTransient);
+
+    private Resilience() {
+        // no instances
+    }
+
+    private static boolean hasCause(final Throwable ex, final Class<? extends Throwable> type) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int getStatus(final Throwable ex) {
+        if (ex instanceof WebApplicationException) {
+            final Response response = ((WebApplicationException)ex).getResponse();
+            return response == null ? -1 : response.getStatus();
+        }
+        return -1;
+    }
+
+    /**
+     * @param ex Failure in question.
+     * @return True if the failure is likely to go away on its own, such as a network error, a timeout or a server
+     * error.
+     */
+    public static boolean isTransient(final Throwable ex) {
+        final int status = Resilience.getStatus(ex);
+        return status >= 500 || status == Resilience.TOO_MANY_REQUESTS ||
+                Resilience.hasCause(ex, IOException.class) || Resilience.hasCause(ex, TimeoutException.class);
+    }
+
+    /**
+     * @param ex Failure in question.
+     * @return True if the failure is transient and the request surely had no effect, so that even non-idempotent
+     * requests can be repeated.
+     */
+    public static boolean isSafeToRepeat(final Throwable ex) {
+        final int status = Resilience.getStatus(ex);
+        return status == Response.Status.SERVICE_UNAVAILABLE.getStatusCode() ||
+                status == Resilience.TOO_MANY_REQUESTS || Resilience.hasCause(ex, ConnectException.class) ||
+                Resilience.hasCause(ex, UnknownHostException.class);
+    }
+
+    /**
+     * @return Decorator for {@link LoginOperation}. Retries transient failures and never waits too long.
+     */
+    public static Decorator forLogin() {
+        return Resilience.ZONKY
+                .wrapping(new Retry(3, Duration.ofMillis(250), Duration.ofSeconds(2), Resilience::isTransient))
+                .wrapping(new Deadline(Duration.ofSeconds(20)));
+    }
+
+    /**
+     * @return Decorator for {@link InvestOperation}. Only retries when the investment surely was not made; there is
+     * no deadline, since a timed-out investment might still go through.
+     */
+    public static Decorator forInvesting() {
+        return Resilience.ZONKY
+                .wrapping(new Retry(3, Duration.ofMillis(100), Duration.ofSeconds(1), Resilience::isSafeToRepeat));
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.operations;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Repeats a failed action a limited number of times. Between the attempts, it waits for a random time up to an
+ * exponentially growing limit, so that many clients failing at once do not all retry at once.
+ */
+public class Retry implements Decorator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Retry.class);
+
+    private final int maxAttempts;
+    private final long initialDelay, maxDelay;
+    private final Predicate<Throwable> retryOn;
+
+    /**
+     * @param maxAttempts Maximum number of attempts, including the first one.
+     * @param initialDelay Limit on the wait before the second attempt. Doubled for every subsequent attempt.
+     * @param maxDelay Maximum limit on the wait between attempts.
+     * @param retryOn Which failures to retry, all others will be rethrown immediately.
+     */
+    public Retry(final int maxAttempts, final Duration initialDelay, final Duration maxDelay,
+                 final Predicate<Throwable> retryOn) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt must be allowed.");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay.toMillis();
+        this.maxDelay = maxDelay.toMillis();
+        this.retryOn = retryOn;
+    }
+
+    long getDelayLimit(final int failedAttempts) {
+        final int exponent = Math.min(failedAttempts - 1, 30); // prevent overflow
+        return Math.min(this.maxDelay, this.initialDelay << exponent);
+    }
+
+    @Override
+    public <T> T call(final Supplier<T> action) {
+        int attempt = 1;
+        while (true) {
+            try {
+                return action.get();
+            } catch (final RuntimeException ex) {
+                if (attempt >= this.maxAttempts || !this.retryOn.test(ex)) {
+                    throw ex;
+                }
+                final long delay = ThreadLocalRandom.current().nextLong(this.getDelayLimit(attempt) + 1);
+                Retry.LOGGER.debug("Attempt {} failed, retrying in {} ms.", attempt, delay, ex);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                } catch (final InterruptedException ex2) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+                attempt++;
+            }
+        }
+    }
+
+}
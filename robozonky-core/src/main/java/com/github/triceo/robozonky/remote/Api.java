@@ -17,9 +17,20 @@
 package com.github.triceo.robozonky.remote;
 
 import java.util.List;
+import javax.ws.rs.core.Response;
 
 public interface Api {
 
     List<Loan> getLoans();
 
+    /**
+     * Retrieve the loans, unless they have not changed since the previous call. Arguments come from the headers of the
+     * response to the previous call.
+     *
+     * @param entityTag Entity tag of the previous response, or null if none.
+     * @param lastModified Last modification date of the previous response, or null if none.
+     * @return Response with the list of loans as entity, or 304 (Not Modified). Must be closed by the caller.
+     */
+    Response getLoans(String entityTag, String lastModified);
+
 }
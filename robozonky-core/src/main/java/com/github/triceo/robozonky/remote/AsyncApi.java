@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.remote;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Asynchronous variant of any of the remote APIs, such as {@link ZonkyApi}, {@link InvestingZonkyApi} or
+ * {@link ZotifyApi}. The RESTEasy client proxies behind these APIs only support blocking calls, therefore every call
+ * is performed by the blocking API on a separate thread. Independent calls can then be issued at once, and their
+ * results composed once they arrive.
+ *
+ * @param <T> Type of the blocking API.
+ */
+public class AsyncApi<T extends Api> {
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "robozonky-async-api");
+        t.setDaemon(true); // never block JVM exit
+        return t;
+    });
+
+    /**
+     * Wrap a blocking API, performing the calls on a shared pool of threads.
+     *
+     * @param api Blocking API to perform the calls.
+     * @param <T> Type of the blocking API.
+     * @return Asynchronous API.
+     */
+    public static <T extends Api> AsyncApi<T> of(final T api) {
+        return new AsyncApi<>(api, AsyncApi.DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Wait for the result of an asynchronous call, as if the call was made synchronously.
+     *
+     * @param stage Result of {@link #call(Function)}.
+     * @param <R> Type of the result.
+     * @return The result.
+     * @throws RuntimeException The exception that the call failed with.
+     */
+    public static <R> R await(final CompletionStage<R> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (final CompletionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IllegalStateException("Should not happen.", cause);
+        }
+    }
+
+    private final T api;
+    private final Executor executor;
+
+    /**
+     * @param api Blocking API to perform the calls.
+     * @param executor Executor to perform the blocking calls on.
+     */
+    public AsyncApi(final T api, final Executor executor) {
+        this.api = api;
+        this.executor = executor;
+    }
+
+    /**
+     * Perform a call in the background.
+     *
+     * @param call Call to perform on the blocking API, such as {@code ZonkyApi::getWallet}.
+     * @param <R> Type of the result.
+     * @return Completes with the result of the call, or exceptionally with the exception the call failed with.
+     */
+    public <R> CompletionStage<R> call(final Function<T, R> call) {
+        return CompletableFuture.supplyAsync(() -> call.apply(this.api), this.executor);
+    }
+
+}
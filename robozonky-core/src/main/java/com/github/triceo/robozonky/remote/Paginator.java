@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.remote;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazily walks through all the pages of a paginated Zonky API endpoint, such as
+ * {@link ZonkyApi#getBlockedAmounts(int, int)}, {@link ZonkyApi#getLoans(int, int)} or
+ * {@link ZonkyApi#getInvestments(InvestmentStatuses, int, int)}. While the items of one page are being consumed, the
+ * next page is already being retrieved in the background. A page with less than the requested number of items is the
+ * last page, so that the pagination ends without an extra request and even if the server ignores the page number.
+ * The page size must therefore not exceed what the server is willing to list on a single page.
+ *
+ * @param <T> Type of the items on the pages.
+ */
+public class Paginator<T> implements Iterator<T>, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Paginator.class);
+
+    /**
+     * Number of items requested per page, unless specified otherwise.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 99;
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "robozonky-paginator");
+        t.setDaemon(true); // never block JVM exit
+        return t;
+    });
+
+    /**
+     * Represents a paginated endpoint of the API.
+     *
+     * @param <T> Type of the items on the pages.
+     */
+    @FunctionalInterface
+    public interface PageSource<T> {
+
+        /**
+         * Retrieve one page from the endpoint.
+         *
+         * @param pageSize How many items should be listed on the page.
+         * @param pageNo Number of the page to show, where 0 is the first page.
+         * @return Items on that particular page.
+         */
+        List<T> getPage(int pageSize, int pageNo);
+
+    }
+
+    /**
+     * Expose all the items of a paginated endpoint as a stream, using {@link #DEFAULT_PAGE_SIZE}. Closing the stream
+     * cancels retrieval of the next page.
+     *
+     * @param source Paginated endpoint.
+     * @param <T> Type of the items on the pages.
+     * @return Lazy sequential stream of items, in the order given by the pages.
+     */
+    public static <T> Stream<T> stream(final PageSource<T> source) {
+        return Paginator.stream(source, Paginator.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Expose all the items of a paginated endpoint as a stream. Closing the stream cancels retrieval of the next page.
+     *
+     * @param source Paginated endpoint.
+     * @param pageSize How many items should be requested per page.
+     * @param <T> Type of the items on the pages.
+     * @return Lazy sequential stream of items, in the order given by the pages.
+     */
+    public static <T> Stream<T> stream(final PageSource<T> source, final int pageSize) {
+        final Paginator<T> paginator = new Paginator<>(source, pageSize);
+        final Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(paginator, Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(paginator::close);
+    }
+
+    private final PageSource<T> source;
+    private final int pageSize;
+    private Iterator<T> currentPage = Collections.emptyIterator();
+    private CompletableFuture<List<T>> nextPage;
+    private int nextPageNo = 0;
+    private boolean exhausted = false;
+
+    /**
+     * @param source Paginated endpoint.
+     * @param pageSize How many items should be requested per page.
+     */
+    public Paginator(final PageSource<T> source, final int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1.");
+        }
+        this.source = source;
+        this.pageSize = pageSize;
+    }
+
+    private List<T> retrievePage(final int pageNo) {
+        Paginator.LOGGER.trace("Requesting page {} of size {}.", pageNo, this.pageSize);
+        final List<T> page = this.source.getPage(this.pageSize, pageNo);
+        return page == null ? Collections.emptyList() : page;
+    }
+
+    private List<T> awaitNextPage() {
+        if (this.nextPage == null) { // first page, nothing to wait for
+            return this.retrievePage(this.nextPageNo);
+        }
+        try {
+            return this.nextPage.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for next page.", ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IllegalStateException("Should not happen.", cause);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!this.currentPage.hasNext()) {
+            if (this.exhausted) {
+                return false;
+            }
+            final List<T> page = this.awaitNextPage();
+            this.nextPageNo++;
+            if (page.size() < this.pageSize) {
+                this.exhausted = true;
+                this.nextPage = null;
+            } else { // there may be more pages, start retrieving the next one while this one is being consumed
+                final int pageNo = this.nextPageNo;
+                this.nextPage = CompletableFuture.supplyAsync(() -> this.retrievePage(pageNo), Paginator.EXECUTOR);
+            }
+            this.currentPage = page.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return this.currentPage.next();
+    }
+
+    /**
+     * Stop paginating. Any page retrieval in progress will be cancelled and no other pages will be retrieved.
+     */
+    @Override
+    public void close() {
+        this.exhausted = true;
+        this.currentPage = Collections.emptyIterator();
+        if (this.nextPage != null) {
+            this.nextPage.cancel(true);
+            this.nextPage = null;
+        }
+    }
+
+}
@@ -26,6 +26,8 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +69,7 @@ public interface ZonkyApi extends Api {
      * @param pageSize How many items should be listed on the page.
      * @param pageNo Number of the page to show, where 0 is the first page.
      * @return Blocked amount on that particular page.
+     * @see Paginator
      */
     @GET
     @Path(ZonkyApi.WALLET + "/blocked-amounts")
@@ -106,6 +109,23 @@ public interface ZonkyApi extends Api {
     @Override
     List<Loan> getLoans();
 
+    @GET
+    @Path(ZonkyApi.MARKETPLACE)
+    @Override
+    Response getLoans(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String entityTag,
+                      @HeaderParam(HttpHeaders.IF_MODIFIED_SINCE) String lastModified);
+
+    /**
+     * Retrieve loans on the marketplace. This query is paginated.
+     *
+     * @param pageSize How many items should be listed on the page.
+     * @param pageNo Number of the page to show, where 0 is the first page.
+     * @return Loans on that particular page.
+     * @see Paginator
+     */
+    @GET
+    @Path(ZonkyApi.MARKETPLACE)
+    List<Loan> getLoans(@HeaderParam("X-Size") int pageSize, @HeaderParam("X-Page") int pageNo);
 
     @GET
     @Path(ZonkyApi.ME + "/logout")
@@ -125,5 +145,19 @@ public interface ZonkyApi extends Api {
     @Path(ZonkyApi.INVESTMENTS)
     Collection<Investment> getInvestments(@QueryParam("loan.status__in") InvestmentStatuses statuses);
 
+    /**
+     * Retrieve user's investments in the given states. This query is paginated.
+     *
+     * @param statuses States of the investments to list.
+     * @param pageSize How many items should be listed on the page.
+     * @param pageNo Number of the page to show, where 0 is the first page.
+     * @return Investments on that particular page.
+     * @see Paginator
+     */
+    @GET
+    @Path(ZonkyApi.INVESTMENTS)
+    List<Investment> getInvestments(@QueryParam("loan.status__in") InvestmentStatuses statuses,
+                                    @HeaderParam("X-Size") int pageSize, @HeaderParam("X-Page") int pageNo);
+
 }
 
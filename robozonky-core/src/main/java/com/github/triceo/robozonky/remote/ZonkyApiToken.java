@@ -17,7 +17,10 @@
 package com.github.triceo.robozonky.remote;
 
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Objects;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -38,15 +41,85 @@ import javax.xml.bind.annotation.XmlRootElement;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class ZonkyApiToken implements BaseEntity {
 
+    /**
+     * JAXB is expensive to initialize and only needed for the legacy format, so it is only initialized on first use.
+     */
+    private static final class JaxbHolder {
+
+        private static final JAXBContext CONTEXT;
+        static {
+            try {
+                CONTEXT = JAXBContext.newInstance(ZonkyApiToken.class);
+            } catch (final JAXBException ex) {
+                throw new IllegalStateException("Should not happen.", ex);
+            }
+        }
+
+    }
+
+    private static final String FORMAT_VERSION = "1";
+    private static final String SEPARATOR = ";";
+    private static final String NULL = "-";
+
+    private static String encodeField(final String value) {
+        if (value == null) {
+            return ZonkyApiToken.NULL;
+        }
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeField(final String value) {
+        if (ZonkyApiToken.NULL.equals(value)) {
+            return null;
+        }
+        return new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Convert the token to a compact string, to be read by {@link #decode(String)}.
+     *
+     * @param token Token to convert.
+     * @return Single-line string representing the token.
+     */
+    public static String encode(final ZonkyApiToken token) {
+        return String.join(ZonkyApiToken.SEPARATOR, ZonkyApiToken.FORMAT_VERSION,
+                ZonkyApiToken.encodeField(token.getAccessToken()), ZonkyApiToken.encodeField(token.getRefreshToken()),
+                ZonkyApiToken.encodeField(token.getType()), ZonkyApiToken.encodeField(token.getScope()),
+                String.valueOf(token.getExpiresIn()));
+    }
+
+    /**
+     * Read a token previously converted by {@link #encode(ZonkyApiToken)}. Also reads tokens in the legacy XML
+     * format, previously written by {@link #marshal(ZonkyApiToken)}.
+     *
+     * @param token String representing the token.
+     * @return The token.
+     * @throws IllegalArgumentException When the string does not represent a token.
+     */
+    public static ZonkyApiToken decode(final String token) {
+        final String trimmed = token.trim();
+        if (trimmed.startsWith("<")) { // legacy format
+            try {
+                return ZonkyApiToken.unmarshal(new StringReader(trimmed));
+            } catch (final JAXBException ex) {
+                throw new IllegalArgumentException("Not a valid token.", ex);
+            }
+        }
+        final String[] parts = trimmed.split(ZonkyApiToken.SEPARATOR, -1);
+        if (parts.length != 6 || !ZonkyApiToken.FORMAT_VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Not a valid token.");
+        }
+        return new ZonkyApiToken(ZonkyApiToken.decodeField(parts[1]), ZonkyApiToken.decodeField(parts[2]),
+                Integer.parseInt(parts[5]), ZonkyApiToken.decodeField(parts[3]), ZonkyApiToken.decodeField(parts[4]));
+    }
+
     public static ZonkyApiToken unmarshal(final Reader token) throws JAXBException {
-        final JAXBContext ctx = JAXBContext.newInstance(ZonkyApiToken.class);
-        final Unmarshaller u = ctx.createUnmarshaller();
+        final Unmarshaller u = JaxbHolder.CONTEXT.createUnmarshaller();
         return (ZonkyApiToken)u.unmarshal(token);
     }
 
     public static String marshal(final ZonkyApiToken token) throws JAXBException {
-        final JAXBContext ctx = JAXBContext.newInstance(ZonkyApiToken.class);
-        final Marshaller m = ctx.createMarshaller();
+        final Marshaller m = JaxbHolder.CONTEXT.createMarshaller();
         final StringWriter w = new StringWriter();
         m.marshal(token, w);
         return w.toString();
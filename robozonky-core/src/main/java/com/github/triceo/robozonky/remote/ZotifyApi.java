@@ -18,9 +18,12 @@ package com.github.triceo.robozonky.remote;
 import java.util.List;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 /**
  * Simple Zonky API chache from zotify.cz.
@@ -35,5 +38,11 @@ public interface ZotifyApi extends Api {
     @Override
     List<Loan> getLoans();
 
+    @GET
+    @Path("/json")
+    @Override
+    Response getLoans(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String entityTag,
+                      @HeaderParam(HttpHeaders.IF_MODIFIED_SINCE) String lastModified);
+
 }
 
@@ -26,6 +26,7 @@ import com.github.triceo.robozonky.remote.BlockedAmount;
 import com.github.triceo.robozonky.remote.InvestingZonkyApi;
 import com.github.triceo.robozonky.remote.Investment;
 import com.github.triceo.robozonky.remote.Loan;
+import com.github.triceo.robozonky.remote.Rating;
 import com.github.triceo.robozonky.remote.Statistics;
 import com.github.triceo.robozonky.remote.ZonkyApi;
 import com.github.triceo.robozonky.remote.ZotifyApi;
@@ -55,6 +56,7 @@ public class InvestorTest {
         final Loan l = Mockito.mock(Loan.class);
         Mockito.when(l.getId()).thenReturn(id);
         Mockito.when(l.getAmount()).thenReturn((double)amount);
+        Mockito.when(l.getRating()).thenReturn(Rating.A);
         return l;
     }
 
@@ -107,8 +109,9 @@ public class InvestorTest {
         // finally test
         final Investor investor = new Investor(mockApi, Mockito.mock(ZotifyApi.class), strategyMock,
                 BigDecimal.valueOf(1000));
-        final Optional<Investment> result = investor.investOnce(BigDecimal.valueOf(1000), new Statistics(),
-                Collections.emptyList());
+        final Optional<Investment> result = investor.investOnce(Arrays.asList(mockLoan1, mockLoan2),
+                PortfolioOverview.calculate(BigDecimal.valueOf(1000), new Statistics(), Collections.emptyList()),
+                new LoanIdSet());
         // check that the first loan properly failed over to the second
         Mockito.verify(mockApi, Mockito.times(2)).invest(Matchers.any());
         final SoftAssertions softly = new SoftAssertions();
@@ -141,29 +144,96 @@ public class InvestorTest {
         final ZotifyApi zotifyApi = Mockito.mock(ZotifyApi.class);
         // and now actually test that the succeeding loan will be invested into ...
         final Investor i = new Investor(api, zotifyApi, strategy, balance);
+        final PortfolioOverview portfolio = PortfolioOverview.calculate(balance, stats, Collections.emptyList());
+        // the strategy will accept everything it is given, in the given order
         Mockito.when(strategy.getMatchingLoans(Matchers.any(), Matchers.any()))
-                .thenReturn(Arrays.asList(overBalance, underMinimum, overAmount, success));
-        final Optional<Investment> result = i.investOnce(balance, stats, Collections.emptyList());
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+        final Optional<Investment> result = i.investOnce(Arrays.asList(overBalance, underMinimum, overAmount, success),
+                portfolio, new LoanIdSet());
         Assertions.assertThat(result).isPresent();
         Assertions.assertThat(result.get().getLoanId()).isEqualTo(success.getId());
         Mockito.verify(api, Mockito.times(1)).invest(Matchers.any());
         // ... no matter which place it takes
-        Mockito.when(strategy.getMatchingLoans(Matchers.any(), Matchers.any()))
-                .thenReturn(Arrays.asList(success, overBalance, underMinimum, overAmount));
-        final Optional<Investment> result2 = i.investOnce(balance, stats, Collections.emptyList());
+        final Optional<Investment> result2 = i.investOnce(Arrays.asList(success, overBalance, underMinimum, overAmount),
+                portfolio, new LoanIdSet());
         Assertions.assertThat(result2).isPresent();
         Assertions.assertThat(result2.get().getLoanId()).isEqualTo(success.getId());
         Mockito.verify(api, Mockito.times(2)).invest(Matchers.any());
         // ... even when nothing is accepted
         final Loan alreadyPresent = InvestorTest.getMockLoanWithIdAndAmount(6, 10000);
-        Mockito.when(strategy.getMatchingLoans(Matchers.any(), Matchers.any()))
-                .thenReturn(Arrays.asList(overBalance, underMinimum, overAmount, alreadyPresent));
         final Investment alreadyPresentInvestment = new Investment(alreadyPresent, 200);
         final Optional<Investment> result3 =
-                i.investOnce(balance, stats, Collections.singletonList(alreadyPresentInvestment));
+                i.investOnce(Arrays.asList(overBalance, underMinimum, overAmount, alreadyPresent), portfolio,
+                        LoanIdSet.of(Collections.singletonList(alreadyPresentInvestment)));
         Assertions.assertThat(result3).isEmpty();
     }
 
+    @Test
+    public void marketplaceRetrievedOncePerSession() {
+        final Loan l1 = InvestorTest.getMockLoanWithIdAndAmount(1, 10000);
+        final Loan l2 = InvestorTest.getMockLoanWithIdAndAmount(2, 10000);
+        final InvestingZonkyApi api = Mockito.mock(InvestingZonkyApi.class);
+        Mockito.when(api.getBlockedAmounts(Matchers.anyInt(), Matchers.anyInt())).thenReturn(Collections.emptyList());
+        final ZotifyApi zotifyApi = Mockito.mock(ZotifyApi.class);
+        Mockito.when(zotifyApi.getLoans()).thenReturn(Arrays.asList(l1, l2));
+        final InvestmentStrategy strategy = Mockito.mock(InvestmentStrategy.class);
+        Mockito.when(strategy.getMatchingLoans(Matchers.any(), Matchers.any()))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+        Mockito.when(strategy.recommendInvestmentAmount(Matchers.any(), Matchers.any())).thenReturn(200);
+        final Investor i = new Investor(api, zotifyApi, strategy, BigDecimal.valueOf(1000));
+        // both loans are invested into, yet the marketplace is only downloaded once
+        Assertions.assertThat(i.invest()).extracting("loanId").containsExactly(l1.getId(), l2.getId());
+        Mockito.verify(zotifyApi, Mockito.times(1)).getLoans();
+        Mockito.verify(api, Mockito.times(2)).invest(Matchers.any());
+    }
+
+    @Test
+    public void loansNotInvestedIntoOfferedAgain() {
+        final Loan invested = InvestorTest.getMockLoanWithIdAndAmount(1, 10000);
+        final Loan notInvested = InvestorTest.getMockLoanWithIdAndAmount(2, 10000);
+        final InvestingZonkyApi api = Mockito.mock(InvestingZonkyApi.class);
+        Mockito.when(api.getBlockedAmounts(Matchers.anyInt(), Matchers.anyInt())).thenReturn(Collections.emptyList());
+        final ZotifyApi zotifyApi = Mockito.mock(ZotifyApi.class);
+        final Marketplace marketplace = Mockito.spy(new Marketplace());
+        Mockito.doAnswer(invocation -> marketplace.update(Arrays.asList(invested, notInvested)))
+                .when(marketplace).getNewOrChangedLoans(zotifyApi);
+        final InvestmentStrategy strategy = Mockito.mock(InvestmentStrategy.class);
+        Mockito.when(strategy.getMatchingLoans(Matchers.any(), Matchers.any()))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+        Mockito.when(strategy.recommendInvestmentAmount(Matchers.any(), Matchers.any())).thenReturn(200);
+        // the balance only allows for one investment
+        final Investor i = new Investor(api, zotifyApi, marketplace, strategy, BigDecimal.valueOf(300));
+        Assertions.assertThat(i.invest()).extracting("loanId").containsExactly(invested.getId());
+        Mockito.verify(marketplace).forget(notInvested.getId());
+        Mockito.verify(marketplace, Mockito.never()).forget(invested.getId());
+    }
+
+    @Test
+    public void loansRejectedOfferedAgainWhenPortfolioChanges() {
+        final Loan loan = InvestorTest.getMockLoanWithIdAndAmount(1, 10000);
+        final ZonkyApi api = Mockito.mock(ZonkyApi.class);
+        Mockito.when(api.getBlockedAmounts(Matchers.anyInt(), Matchers.anyInt())).thenReturn(Collections.emptyList());
+        final ZotifyApi zotifyApi = Mockito.mock(ZotifyApi.class);
+        final Marketplace marketplace = Mockito.spy(new Marketplace());
+        Mockito.doAnswer(invocation -> marketplace.update(Collections.singletonList(loan)))
+                .when(marketplace).getNewOrChangedLoans(zotifyApi);
+        final InvestmentStrategy strategy = Mockito.mock(InvestmentStrategy.class);
+        Mockito.when(strategy.getMatchingLoans(Matchers.any(), Matchers.any())).thenReturn(Collections.emptyList());
+        // the strategy rejects the loan
+        Assertions.assertThat(new Investor(api, zotifyApi, marketplace, strategy, BigDecimal.valueOf(1000)).invest())
+                .isEmpty();
+        Mockito.verify(strategy, Mockito.times(1)).getMatchingLoans(Matchers.any(), Matchers.any());
+        // neither the loan nor the portfolio have changed, the loan is not offered again
+        Assertions.assertThat(new Investor(api, zotifyApi, marketplace, strategy, BigDecimal.valueOf(1000)).invest())
+                .isEmpty();
+        Mockito.verify(strategy, Mockito.times(1)).getMatchingLoans(Matchers.any(), Matchers.any());
+        // the balance has changed, the loan is offered again
+        Assertions.assertThat(new Investor(api, zotifyApi, marketplace, strategy, BigDecimal.valueOf(2000)).invest())
+                .isEmpty();
+        Mockito.verify(strategy, Mockito.times(2)).getMatchingLoans(Matchers.eq(Collections.singletonList(loan)),
+                Matchers.any());
+    }
+
     private static class InvestmentBaseMatcher extends BaseMatcher<Investment> {
         private final Loan matching;
 
@@ -195,7 +265,8 @@ public class InvestorTest {
                 Arrays.asList(new BlockedAmount(0, 1000), new BlockedAmount(loan1id, loan1amount),
                         new BlockedAmount(loan2Id, loan2amount))
         );
-        final List<Investment> result = Investor.retrieveInvestmentsRepresentedByBlockedAmounts(api);
+        final List<Investment> result = Investor.retrieveInvestmentsRepresentedByBlockedAmounts(api,
+                new ParallelRetriever());
         // the 0 ID blocked amount is Zonky's investors' fee, which should not be looked up as a loan
         Assertions.assertThat(result).hasSize(2);
         Assertions.assertThat(result.get(0).getLoanId()).isEqualTo(l1.getId());
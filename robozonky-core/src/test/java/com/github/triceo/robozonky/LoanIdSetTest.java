@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky;
+
+import java.util.Arrays;
+
+import com.github.triceo.robozonky.remote.Investment;
+import com.github.triceo.robozonky.remote.Loan;
+import org.assertj.core.api.Assertions;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class LoanIdSetTest {
+
+    private static Investment getMockInvestmentWithId(final int id) {
+        final Loan l = Mockito.mock(Loan.class);
+        Mockito.when(l.getId()).thenReturn(id);
+        return new Investment(l, 200);
+    }
+
+    @Test
+    public void addAndContains() {
+        final LoanIdSet set = LoanIdSet.of(Arrays.asList(LoanIdSetTest.getMockInvestmentWithId(1),
+                LoanIdSetTest.getMockInvestmentWithId(100000)));
+        final SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(set.contains(1)).isTrue();
+        softly.assertThat(set.contains(100000)).isTrue();
+        softly.assertThat(set.contains(2)).isFalse();
+        softly.assertThat(set.contains(-1)).isFalse();
+        softly.assertThat(set.add(1)).isFalse();
+        softly.assertThat(set.add(2)).isTrue();
+        softly.assertThat(set.contains(2)).isTrue();
+        softly.assertThat(set.size()).isEqualTo(3);
+        softly.assertAll();
+    }
+
+    @Test
+    public void streamAndClear() {
+        final LoanIdSet set = new LoanIdSet();
+        set.add(5);
+        set.add(1);
+        Assertions.assertThat(set.stream().toArray()).containsExactly(1, 5);
+        set.clear();
+        Assertions.assertThat(set.size()).isZero();
+        Assertions.assertThat(set.stream().count()).isZero();
+    }
+
+    @Test
+    public void negativeIdRejected() {
+        Assertions.assertThatThrownBy(() -> new LoanIdSet().add(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
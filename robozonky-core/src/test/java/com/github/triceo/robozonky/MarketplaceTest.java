@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import com.github.triceo.robozonky.remote.Api;
+import com.github.triceo.robozonky.remote.Loan;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class MarketplaceTest {
+
+    private static Loan getMockLoan(final int id, final double remaining) {
+        final Loan l = Mockito.mock(Loan.class);
+        Mockito.when(l.getId()).thenReturn(id);
+        Mockito.when(l.getRemainingInvestment()).thenReturn(remaining);
+        return l;
+    }
+
+    private static Response getMockResponse(final Response.Status status, final List<Loan> loans) {
+        final Response r = Mockito.mock(Response.class);
+        Mockito.when(r.getStatus()).thenReturn(status.getStatusCode());
+        Mockito.when(r.getStatusInfo()).thenReturn(status);
+        Mockito.when(r.getHeaderString(HttpHeaders.ETAG)).thenReturn("\"etag\"");
+        Mockito.when(r.readEntity(Matchers.any(GenericType.class))).thenReturn(loans);
+        return r;
+    }
+
+    @Test
+    public void onlyNewAndChangedLoansReturned() {
+        final Loan unchanged = MarketplaceTest.getMockLoan(1, 1000);
+        final Loan changing = MarketplaceTest.getMockLoan(2, 1000);
+        final Loan changed = MarketplaceTest.getMockLoan(2, 800);
+        final Loan added = MarketplaceTest.getMockLoan(3, 1000);
+        final Marketplace m = new Marketplace();
+        Assertions.assertThat(m.update(Arrays.asList(unchanged, changing))).containsExactly(unchanged, changing);
+        Assertions.assertThat(m.update(Arrays.asList(unchanged, changed, added))).containsExactly(changed, added);
+        Assertions.assertThat(m.update(Arrays.asList(unchanged, changed, added))).isEmpty();
+        // loan that disappeared and came back again is new
+        Assertions.assertThat(m.update(Collections.singletonList(added))).isEmpty();
+        Assertions.assertThat(m.update(Arrays.asList(unchanged, added))).containsExactly(unchanged);
+        // after reset, everything is new again
+        m.reset();
+        Assertions.assertThat(m.update(Arrays.asList(unchanged, added))).containsExactly(unchanged, added);
+    }
+
+    @Test
+    public void portfolioTracked() {
+        final Loan loan = MarketplaceTest.getMockLoan(1, 1000);
+        final PortfolioOverview portfolio = new PortfolioOverview(1000, 0, new int[] {0});
+        final Marketplace m = new Marketplace();
+        Assertions.assertThat(m.hasBalanceChanged(1000)).isTrue();
+        Assertions.assertThat(m.hasPortfolioChanged(portfolio)).isTrue();
+        m.update(Collections.singletonList(loan));
+        m.setPortfolio(portfolio);
+        Assertions.assertThat(m.update(Collections.singletonList(loan))).isEmpty();
+        Assertions.assertThat(m.getLoans()).containsExactly(loan);
+        Assertions.assertThat(m.hasBalanceChanged(1000)).isFalse();
+        Assertions.assertThat(m.hasBalanceChanged(999)).isTrue();
+        Assertions.assertThat(m.hasPortfolioChanged(new PortfolioOverview(1000, 0, new int[] {0}))).isFalse();
+        Assertions.assertThat(m.hasPortfolioChanged(new PortfolioOverview(1000, 0, new int[] {1}))).isTrue();
+        // after reset, portfolio is forgotten
+        m.reset();
+        Assertions.assertThat(m.getLoans()).isEmpty();
+        Assertions.assertThat(m.hasPortfolioChanged(portfolio)).isTrue();
+    }
+
+    @Test
+    public void forgottenLoanReturnedAgain() {
+        final Loan forgotten = MarketplaceTest.getMockLoan(1, 1000);
+        final Loan remembered = MarketplaceTest.getMockLoan(2, 1000);
+        final Response ok = MarketplaceTest.getMockResponse(Response.Status.OK, Arrays.asList(forgotten, remembered));
+        final Api api = Mockito.mock(Api.class);
+        Mockito.when(api.getLoans(Matchers.any(), Matchers.any())).thenReturn(ok);
+        final Marketplace m = new Marketplace();
+        Assertions.assertThat(m.getNewOrChangedLoans(api)).containsExactly(forgotten, remembered);
+        m.forget(forgotten.getId());
+        // the server must not be allowed to report the marketplace unchanged
+        Assertions.assertThat(m.getNewOrChangedLoans(api)).containsExactly(forgotten);
+        Mockito.verify(api, Mockito.times(2)).getLoans(Matchers.isNull(String.class), Matchers.isNull(String.class));
+    }
+
+    @Test
+    public void conditionalRequest() {
+        final Loan loan = MarketplaceTest.getMockLoan(1, 1000);
+        final Response ok = MarketplaceTest.getMockResponse(Response.Status.OK, Collections.singletonList(loan));
+        final Response notModified = MarketplaceTest.getMockResponse(Response.Status.NOT_MODIFIED, null);
+        final Api api = Mockito.mock(Api.class);
+        Mockito.when(api.getLoans(Matchers.isNull(String.class), Matchers.isNull(String.class))).thenReturn(ok);
+        Mockito.when(api.getLoans(Matchers.eq("\"etag\""), Matchers.isNull(String.class))).thenReturn(notModified);
+        final Marketplace m = new Marketplace();
+        Assertions.assertThat(m.getNewOrChangedLoans(api)).containsExactly(loan);
+        Assertions.assertThat(m.getNewOrChangedLoans(api)).isEmpty();
+        Mockito.verify(ok, Mockito.times(1)).close();
+        Mockito.verify(notModified, Mockito.times(1)).close();
+        Mockito.verify(notModified, Mockito.never()).readEntity(Matchers.any(GenericType.class));
+    }
+
+    @Test
+    public void failedRequest() {
+        final Response error = MarketplaceTest.getMockResponse(Response.Status.SERVICE_UNAVAILABLE, null);
+        final Api api = Mockito.mock(Api.class);
+        Mockito.when(api.getLoans(Matchers.any(), Matchers.any())).thenReturn(error);
+        Assertions.assertThatThrownBy(() -> new Marketplace().getNewOrChangedLoans(api))
+                .isInstanceOf(WebApplicationException.class);
+        Mockito.verify(error, Mockito.times(1)).close();
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class ParallelRetrieverTest {
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void resultsInOrderAndParallelismBounded() {
+        final int parallelism = 3;
+        final AtomicInteger inFlight = new AtomicInteger(0), maxInFlight = new AtomicInteger(0);
+        final List<Integer> inputs = IntStream.range(0, 20).boxed().collect(Collectors.toList());
+        final List<Integer> results = new ParallelRetriever(parallelism, Duration.ofSeconds(10)).retrieve(inputs, i -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            ParallelRetrieverTest.sleep(20 - i); // later inputs finish sooner
+            inFlight.decrementAndGet();
+            return i * 2;
+        });
+        Assertions.assertThat(results).isEqualTo(inputs.stream().map(i -> i * 2).collect(Collectors.toList()));
+        Assertions.assertThat(maxInFlight.get()).isLessThanOrEqualTo(parallelism);
+    }
+
+    @Test
+    public void failurePropagated() {
+        final ParallelRetriever r = new ParallelRetriever();
+        Assertions.assertThatThrownBy(() -> r.retrieve(Arrays.asList(1, 2), i -> {
+            if (i == 2) {
+                throw new UnsupportedOperationException();
+            }
+            return i;
+        })).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void timeoutEnforced() {
+        final ParallelRetriever r = new ParallelRetriever(1, Duration.ofMillis(50));
+        Assertions.assertThatThrownBy(() -> r.retrieve(Arrays.asList(1, 2), i -> {
+            ParallelRetrieverTest.sleep(i == 2 ? 10000 : 0);
+            return i;
+        })).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void threadsReusedAcrossCalls() {
+        final int parallelism = 2;
+        final ParallelRetriever r = new ParallelRetriever(parallelism, Duration.ofSeconds(10));
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final List<Integer> inputs = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+        for (int i = 0; i < 3; i++) {
+            r.retrieve(inputs, input -> threads.add(Thread.currentThread()));
+        }
+        Assertions.assertThat(threads).hasSize(parallelism);
+    }
+
+    @Test
+    public void usableAfterTimeout() {
+        final ParallelRetriever r = new ParallelRetriever(1, Duration.ofMillis(50));
+        Assertions.assertThatThrownBy(() -> r.retrieve(Arrays.asList(1, 2), i -> {
+            ParallelRetrieverTest.sleep(10000);
+            return i;
+        })).isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(r.retrieve(Arrays.asList(1, 2), i -> i)).containsExactly(1, 2);
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import com.github.triceo.robozonky.remote.Investment;
+import com.github.triceo.robozonky.remote.Rating;
+import com.github.triceo.robozonky.remote.RiskPortfolio;
+import com.github.triceo.robozonky.remote.Statistics;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class PortfolioTest {
+
+    private static Investment getMockInvestment(final Rating rating, final int amount) {
+        final Investment i = Mockito.mock(Investment.class);
+        Mockito.when(i.getRating()).thenReturn(rating);
+        Mockito.when(i.getAmount()).thenReturn(amount);
+        return i;
+    }
+
+    @Test
+    public void applyingInvestmentDoesNotChangeOverviews() {
+        final Statistics stats = Mockito.mock(Statistics.class);
+        Mockito.when(stats.getRiskPortfolio())
+                .thenReturn(Collections.singletonList(new RiskPortfolio(Rating.B, -1, 600, -1, -1)));
+        final Portfolio portfolio = new Portfolio(BigDecimal.valueOf(1000), stats,
+                Collections.singletonList(PortfolioTest.getMockInvestment(Rating.B, 200)));
+        final PortfolioOverview before = portfolio.getOverview();
+        portfolio.apply(PortfolioTest.getMockInvestment(Rating.A, 200));
+        final PortfolioOverview after = portfolio.getOverview();
+
+        final SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(before.getCzkAvailable()).isEqualTo(1000);
+        softly.assertThat(before.getCzkInvested()).isEqualTo(800);
+        softly.assertThat(before.getCzkInvested(Rating.A)).isEqualTo(0);
+        softly.assertThat(before.getShareOnInvestment(Rating.B)).isEqualTo(new BigDecimal("1.0000"));
+        softly.assertThat(portfolio.getCzkAvailable()).isEqualTo(800);
+        softly.assertThat(after.getCzkAvailable()).isEqualTo(800);
+        softly.assertThat(after.getCzkInvested()).isEqualTo(1000);
+        softly.assertThat(after.getCzkInvested(Rating.A)).isEqualTo(200);
+        softly.assertThat(after.getShareOnInvestment(Rating.A)).isEqualTo(new BigDecimal("0.2000"));
+        softly.assertThat(after.getShareOnInvestment(Rating.B)).isEqualTo(new BigDecimal("0.8000"));
+        softly.assertAll();
+    }
+
+}
@@ -32,7 +32,7 @@ public class AuthenticatedFilterTest extends AbstractCommonFilterTest {
 
     @Override
     protected CommonFilter getTestedFilter() {
-        return new AuthenticatedFilter(token);
+        return new AuthenticatedFilter(() -> token, new RateLimiter());
     }
 
     @Test
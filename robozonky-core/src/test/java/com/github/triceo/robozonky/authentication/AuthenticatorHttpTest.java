@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.authentication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Scanner;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+
+import com.github.triceo.robozonky.remote.Loan;
+import com.github.triceo.robozonky.remote.Wallet;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Makes sure that the providers registered with RESTEasy are enough for the APIs to work over actual HTTP.
+ */
+public class AuthenticatorHttpTest {
+
+    private static final String TOKEN = "{\"access_token\":\"abc\",\"refresh_token\":\"def\",\"token_type\":\"bearer\"," +
+            "\"scope\":\"SCOPE_APP_WEB\",\"expires_in\":299}";
+    private static final String WALLET = "{\"id\":1,\"balance\":1000,\"availableBalance\":800," +
+            "\"blockedBalance\":200,\"variableSymbol\":123}";
+
+    private static String read(final InputStream s) {
+        final Scanner scanner = new Scanner(s, StandardCharsets.UTF_8.name()).useDelimiter("\\A");
+        return scanner.hasNext() ? scanner.next() : "";
+    }
+
+    private static void respond(final HttpExchange exchange, final String json) throws IOException {
+        final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (final OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private HttpServer server;
+    private String url;
+    private volatile String loginForm, authorization;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/oauth/token", exchange -> {
+            loginForm = AuthenticatorHttpTest.read(exchange.getRequestBody());
+            AuthenticatorHttpTest.respond(exchange, AuthenticatorHttpTest.TOKEN);
+        });
+        server.createContext("/users/me/wallet", exchange -> {
+            authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            AuthenticatorHttpTest.respond(exchange, AuthenticatorHttpTest.WALLET);
+        });
+        server.createContext("/json", exchange -> AuthenticatorHttpTest.respond(exchange, "[]"));
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void apisWork() {
+        try (final Authentication auth = Authenticator.withCredentials("user", "pwd", true).authenticate(url, url)) {
+            Assertions.assertThat(loginForm).contains("username=user").contains("password=pwd");
+            Assertions.assertThat(auth.getZonkyApiToken().getAccessToken()).isEqualTo("abc");
+            final Wallet wallet = auth.getZonkyApi().getWallet();
+            Assertions.assertThat(wallet.getAvailableBalance()).isEqualByComparingTo("800");
+            Assertions.assertThat(authorization).isEqualTo("Bearer abc");
+            Assertions.assertThat(auth.getZotifyApi().getLoans()).isEmpty();
+            final Response response = auth.getZotifyApi().getLoans(null, null);
+            try {
+                Assertions.assertThat(response.readEntity(new GenericType<List<Loan>>() {})).isEmpty();
+            } finally {
+                response.close();
+            }
+        }
+    }
+
+}
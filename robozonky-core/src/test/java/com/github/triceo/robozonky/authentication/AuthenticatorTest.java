@@ -16,6 +16,9 @@
 
 package com.github.triceo.robozonky.authentication;
 
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import com.github.triceo.robozonky.remote.InvestingZonkyApi;
@@ -47,6 +50,7 @@ public class AuthenticatorTest {
         task.accept(dryMock);
         task.accept(liveMock);
         final ResteasyWebTarget target = Mockito.mock(ResteasyWebTarget.class);
+        Mockito.when(target.register(Matchers.any(Object.class))).thenReturn(target);
         Mockito.when(target.proxy(ZonkyApi.class)).thenReturn(dryMock);
         Mockito.when(target.proxy(InvestingZonkyApi.class)).thenReturn(liveMock);
         Mockito.when(target.proxy(ZotifyApi.class)).thenReturn(Mockito.mock(ZotifyApi.class));
@@ -119,4 +123,46 @@ public class AuthenticatorTest {
         Assertions.assertThat(result.getZonkyApiToken()).isNotEqualTo(mockToken);
     }
 
+    @Test
+    public void tokenRefreshedInBackground() throws InterruptedException {
+        final ZonkyApiToken mockToken = Mockito.mock(ZonkyApiToken.class); // expires right away
+        final ResteasyClientBuilder mock = AuthenticatorTest.mockResteasy(AuthenticatorTest.DUMMY_URL, mockToken);
+        final ZonkyApi apiMock = mock.build().target(AuthenticatorTest.DUMMY_URL).proxy(ZonkyApi.class);
+        final CountDownLatch refreshed = new CountDownLatch(1);
+        try (final Authentication result = Authenticator.withAccessToken(AuthenticatorTest.DUMMY_USER, mockToken, false)
+                .refreshingToken(Duration.ofSeconds(60), t -> refreshed.countDown())
+                .authenticate(AuthenticatorTest.DUMMY_URL, AuthenticatorTest.DUMMY_URL, mock)) {
+            Assertions.assertThat(refreshed.await(10, TimeUnit.SECONDS)).isTrue();
+            Mockito.verify(apiMock, Mockito.times(1)).refresh(Matchers.any(), Matchers.any(), Matchers.any());
+            Assertions.assertThat(result.getZonkyApiToken()).isNotEqualTo(mockToken);
+        }
+    }
+
+    @Test
+    public void clientsClosedWithAuthentication() {
+        final ResteasyClientBuilder mock = AuthenticatorTest.mockResteasy(AuthenticatorTest.DUMMY_URL, false);
+        final ResteasyClient client = mock.build();
+        final Authentication result = Authenticator.withAccessToken(AuthenticatorTest.DUMMY_USER,
+                Mockito.mock(ZonkyApiToken.class), false)
+                .authenticate(AuthenticatorTest.DUMMY_URL, AuthenticatorTest.DUMMY_URL, mock);
+        Mockito.verify(client, Mockito.never()).close();
+        Assertions.assertThat(result.getZotifyRateLimiter()).isNotSameAs(result.getZonkyRateLimiter());
+        result.close();
+        Mockito.verify(client, Mockito.times(2)).close(); // one client per host
+    }
+
+    @Test
+    public void clientsClosedWhenAuthenticationFails() {
+        final ResteasyClientBuilder mock = AuthenticatorTest.mockResteasy(AuthenticatorTest.DUMMY_URL, false);
+        final ResteasyClient client = mock.build();
+        final ZonkyApi apiMock = client.target(AuthenticatorTest.DUMMY_URL).proxy(ZonkyApi.class);
+        Mockito.when(apiMock.login(Matchers.any(), Matchers.any(), Matchers.any(), Matchers.any()))
+                .thenThrow(IllegalStateException.class);
+        Assertions.assertThatThrownBy(() ->
+                Authenticator.withCredentials(AuthenticatorTest.DUMMY_USER, AuthenticatorTest.DUMMY_PWD, false)
+                        .authenticate(AuthenticatorTest.DUMMY_URL, AuthenticatorTest.DUMMY_URL, mock))
+                .isInstanceOf(IllegalStateException.class);
+        Mockito.verify(client, Mockito.times(2)).close();
+    }
+
 }
@@ -28,7 +28,7 @@ public class AuthorizationFilterTest extends AbstractCommonFilterTest {
 
     @Override
     protected CommonFilter getTestedFilter() {
-        return new AuthenticationFilter();
+        return new AuthenticationFilter(new RateLimiter());
     }
 
     @Test
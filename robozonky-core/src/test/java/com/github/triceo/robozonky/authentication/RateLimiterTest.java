@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.authentication;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.assertj.core.api.Assertions;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    private RateLimiter getLimiter() {
+        return new RateLimiter(2, 1, clock::get);
+    }
+
+    @Test
+    public void burstThenWait() {
+        final RateLimiter limiter = this.getLimiter();
+        final SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.READ)).isEqualTo(0);
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.READ)).isEqualTo(0);
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.READ)).isEqualTo(RateLimiterTest.SECOND / 2);
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.READ)).isEqualTo(RateLimiterTest.SECOND);
+        // separate budget for writes
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.WRITE)).isEqualTo(0);
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.WRITE)).isEqualTo(RateLimiterTest.SECOND);
+        softly.assertAll();
+    }
+
+    @Test
+    public void refillsOverTime() {
+        final RateLimiter limiter = this.getLimiter();
+        limiter.reserve(RateLimiter.Budget.READ);
+        limiter.reserve(RateLimiter.Budget.READ);
+        clock.addAndGet(RateLimiterTest.SECOND);
+        final SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.READ)).isEqualTo(0);
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.READ)).isEqualTo(0);
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.READ)).isGreaterThan(0);
+        softly.assertAll();
+    }
+
+    @Test
+    public void adaptsToThrottling() {
+        final RateLimiter limiter = this.getLimiter();
+        limiter.onResponse(RateLimiter.Budget.READ, 429, "5");
+        final SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(limiter.getThrottledResponses()).isEqualTo(1);
+        softly.assertThat(limiter.getRate(RateLimiter.Budget.READ)).isEqualTo(1.0);
+        softly.assertThat(limiter.getRate(RateLimiter.Budget.WRITE)).isEqualTo(1.0);
+        softly.assertThat(limiter.getRemainingPause()).isEqualTo(Duration.ofSeconds(5));
+        // every request on the host waits for the pause to end
+        softly.assertThat(limiter.reserve(RateLimiter.Budget.WRITE)).isEqualTo(5 * RateLimiterTest.SECOND);
+        softly.assertAll();
+        // successful responses gradually restore the rate
+        clock.addAndGet(10 * RateLimiterTest.SECOND);
+        for (int i = 0; i < 100; i++) {
+            limiter.onResponse(RateLimiter.Budget.READ, 200, null);
+        }
+        Assertions.assertThat(limiter.getRate(RateLimiter.Budget.READ)).isEqualTo(2.0);
+    }
+
+    @Test
+    public void probesAboveInitialRate() {
+        final RateLimiter limiter = this.getLimiter();
+        for (int i = 0; i < 100; i++) {
+            limiter.onResponse(RateLimiter.Budget.READ, 200, null);
+        }
+        final double probed = limiter.getRate(RateLimiter.Budget.READ);
+        // probing stops at a finite multiple of the initial rate
+        Assertions.assertThat(probed).isEqualTo(2.0 * RateLimiter.PROBING_FACTOR);
+        // once the server objects, the rate never again grows past where it objected
+        limiter.onResponse(RateLimiter.Budget.READ, 429, null);
+        for (int i = 0; i < 1000; i++) {
+            limiter.onResponse(RateLimiter.Budget.READ, 200, null);
+        }
+        Assertions.assertThat(limiter.getRate(RateLimiter.Budget.READ)).isEqualTo(probed);
+    }
+
+    @Test
+    public void retryAfterFormats() {
+        final ZonedDateTime now = ZonedDateTime.now().withNano(0);
+        final String date = now.plusSeconds(30).format(DateTimeFormatter.RFC_1123_DATE_TIME);
+        final SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(RateLimiter.parseRetryAfter(null, () -> now)).isEqualTo(Duration.ZERO);
+        softly.assertThat(RateLimiter.parseRetryAfter("120", () -> now)).isEqualTo(Duration.ofMinutes(2));
+        softly.assertThat(RateLimiter.parseRetryAfter(date, () -> now)).isEqualTo(Duration.ofSeconds(30));
+        softly.assertThat(RateLimiter.parseRetryAfter("garbage", () -> now)).isEqualTo(Duration.ZERO);
+        softly.assertAll();
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.authentication;
+
+import java.time.Instant;
+import javax.ws.rs.NotAuthorizedException;
+
+import com.github.triceo.robozonky.remote.InvestingZonkyApi;
+import com.github.triceo.robozonky.remote.Investment;
+import com.github.triceo.robozonky.remote.Wallet;
+import com.github.triceo.robozonky.remote.ZonkyApi;
+import com.github.triceo.robozonky.remote.ZonkyApiToken;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class ReauthenticatingApiTest {
+
+    private final ZonkyApiToken stale = Mockito.mock(ZonkyApiToken.class);
+    private final ZonkyApiToken fresh = Mockito.mock(ZonkyApiToken.class);
+    private final RefreshableToken token = new RefreshableToken(stale, Instant.now(), t -> fresh, null, null);
+
+    @Test
+    public void idempotentRequestRepeated() {
+        final Wallet wallet = Mockito.mock(Wallet.class);
+        final ZonkyApi api = Mockito.mock(ZonkyApi.class);
+        Mockito.when(api.getWallet()).thenThrow(new NotAuthorizedException("Bearer")).thenReturn(wallet);
+        final ZonkyApi wrapped = ReauthenticatingApi.wrap(api, ZonkyApi.class, token);
+        Assertions.assertThat(wrapped.getWallet()).isSameAs(wallet);
+        Assertions.assertThat(token.get()).isSameAs(fresh);
+        Mockito.verify(api, Mockito.times(2)).getWallet();
+    }
+
+    @Test
+    public void otherRequestNotRepeated() {
+        final InvestingZonkyApi api = Mockito.mock(InvestingZonkyApi.class);
+        Mockito.doThrow(new NotAuthorizedException("Bearer")).when(api).invest(Matchers.any());
+        final InvestingZonkyApi wrapped = ReauthenticatingApi.wrap(api, InvestingZonkyApi.class, token);
+        Assertions.assertThatThrownBy(() -> wrapped.invest(Mockito.mock(Investment.class)))
+                .isInstanceOf(NotAuthorizedException.class);
+        Assertions.assertThat(token.get()).isSameAs(fresh); // next requests will use the new token
+        Mockito.verify(api, Mockito.times(1)).invest(Matchers.any());
+    }
+
+    @Test
+    public void otherFailuresPassThrough() {
+        final ZonkyApi api = Mockito.mock(ZonkyApi.class);
+        Mockito.when(api.getWallet()).thenThrow(IllegalStateException.class);
+        final ZonkyApi wrapped = ReauthenticatingApi.wrap(api, ZonkyApi.class, token);
+        Assertions.assertThatThrownBy(wrapped::getWallet).isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(token.get()).isSameAs(stale);
+    }
+
+}
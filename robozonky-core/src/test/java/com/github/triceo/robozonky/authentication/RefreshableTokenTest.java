@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.authentication;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.triceo.robozonky.remote.ZonkyApiToken;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class RefreshableTokenTest {
+
+    private static ZonkyApiToken getToken(final int expiresIn) {
+        return new ZonkyApiToken("access", "refresh", expiresIn, "bearer", "SCOPE_APP_WEB");
+    }
+
+    @Test
+    public void refreshTime() {
+        final Instant now = Instant.now();
+        final ZonkyApiToken token = RefreshableTokenTest.getToken(300);
+        Assertions.assertThat(RefreshableToken.getRefreshTime(token, now, Duration.ofSeconds(60)))
+                .isEqualTo(now.plusSeconds(240));
+        // never refresh in the first half of the token's life
+        Assertions.assertThat(RefreshableToken.getRefreshTime(token, now, Duration.ofSeconds(200)))
+                .isEqualTo(now.plusSeconds(150));
+    }
+
+    @Test
+    public void refreshedOnceOnRequest() {
+        final ZonkyApiToken stale = RefreshableTokenTest.getToken(0);
+        final ZonkyApiToken fresh = RefreshableTokenTest.getToken(3600);
+        final AtomicInteger refreshes = new AtomicInteger(0);
+        try (final RefreshableToken t = new RefreshableToken(stale, Instant.now(), old -> {
+            refreshes.incrementAndGet();
+            return fresh;
+        }, null, null)) {
+            Assertions.assertThat(t.get()).isSameAs(stale); // no background refresh
+            Assertions.assertThat(t.refresh(stale)).isSameAs(fresh);
+            // another caller who saw the stale token gets the fresh one without another refresh
+            Assertions.assertThat(t.refresh(stale)).isSameAs(fresh);
+            Assertions.assertThat(t.get()).isSameAs(fresh);
+        }
+        Assertions.assertThat(refreshes.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void refreshedInBackground() throws InterruptedException {
+        final ZonkyApiToken expired = RefreshableTokenTest.getToken(0);
+        final ZonkyApiToken fresh = RefreshableTokenTest.getToken(3600);
+        final AtomicInteger refreshes = new AtomicInteger(0);
+        final CountDownLatch refreshed = new CountDownLatch(1);
+        try (final RefreshableToken t = new RefreshableToken(expired, Instant.now(), old -> {
+            refreshes.incrementAndGet();
+            return fresh;
+        }, Duration.ofSeconds(60), newToken -> refreshed.countDown())) {
+            Assertions.assertThat(refreshed.await(10, TimeUnit.SECONDS)).isTrue();
+            Assertions.assertThat(t.get()).isSameAs(fresh);
+        }
+        Assertions.assertThat(refreshes.get()).isEqualTo(1); // the fresh token is not refreshed again right away
+    }
+
+    @Test
+    public void failedRefreshKeepsToken() throws InterruptedException {
+        final ZonkyApiToken expired = RefreshableTokenTest.getToken(0);
+        final CountDownLatch attempted = new CountDownLatch(1);
+        try (final RefreshableToken t = new RefreshableToken(expired, Instant.now(), old -> {
+            attempted.countDown();
+            throw new IllegalStateException();
+        }, Duration.ofSeconds(60), newToken -> {})) {
+            Assertions.assertThat(attempted.await(10, TimeUnit.SECONDS)).isTrue();
+            Assertions.assertThat(t.get()).isSameAs(expired);
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.operations;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    private static final Supplier<String> FAILING = () -> {
+        throw new IllegalStateException();
+    };
+
+    private final AtomicLong clock = new AtomicLong(0);
+    private final CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofNanos(100),
+            ex -> ex instanceof IllegalStateException, clock::get);
+
+    private void fail() {
+        Assertions.assertThatThrownBy(() -> breaker.call(CircuitBreakerTest.FAILING))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        this.fail();
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        this.fail();
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        // fails fast, without calling the action
+        final AtomicInteger calls = new AtomicInteger(0);
+        Assertions.assertThatThrownBy(() -> breaker.call(calls::incrementAndGet))
+                .isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(calls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void successResetsFailures() {
+        this.fail();
+        Assertions.assertThat(breaker.call(() -> "result")).isEqualTo("result");
+        this.fail();
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void uncountedFailuresIgnored() {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertThatThrownBy(() -> breaker.call(() -> {
+                throw new IllegalArgumentException();
+            })).isInstanceOf(IllegalArgumentException.class);
+        }
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void closesAfterSuccessfulTrial() {
+        this.fail();
+        this.fail();
+        clock.addAndGet(100);
+        this.fail(); // the trial fails, circuit opens again
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        clock.addAndGet(100);
+        Assertions.assertThat(breaker.call(() -> "result")).isEqualTo("result");
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.operations;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class DeadlineTest {
+
+    @Test
+    public void finishesInTime() {
+        Assertions.assertThat(new Deadline(Duration.ofSeconds(10)).call(() -> "result")).isEqualTo("result");
+    }
+
+    @Test
+    public void timesOut() {
+        Assertions.assertThatThrownBy(() -> new Deadline(Duration.ofMillis(10)).call(() -> {
+            try {
+                TimeUnit.SECONDS.sleep(10);
+            } catch (final InterruptedException ex) {
+                // interrupted when the deadline passes
+            }
+            return "result";
+        })).isInstanceOf(IllegalStateException.class).hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    public void rethrowsFailure() {
+        final IllegalArgumentException ex = new IllegalArgumentException();
+        Assertions.assertThatThrownBy(() -> new Deadline(Duration.ofSeconds(10)).call(() -> {
+            throw ex;
+        })).isSameAs(ex);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.operations;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.triceo.robozonky.remote.ZonkyApi;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class RetryTest {
+
+    private static Retry getRetry(final int maxAttempts) {
+        return new Retry(maxAttempts, Duration.ofMillis(1), Duration.ofMillis(4),
+                ex -> ex instanceof IllegalStateException);
+    }
+
+    @Test
+    public void succeedsAfterTransientFailures() {
+        final AtomicInteger attempts = new AtomicInteger(0);
+        final String result = RetryTest.getRetry(3).call(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException();
+            }
+            return "result";
+        });
+        Assertions.assertThat(result).isEqualTo("result");
+        Assertions.assertThat(attempts.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        final AtomicInteger attempts = new AtomicInteger(0);
+        Assertions.assertThatThrownBy(() -> RetryTest.getRetry(3).call(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException();
+        })).isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(attempts.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void doesNotRetryOtherFailures() {
+        final AtomicInteger attempts = new AtomicInteger(0);
+        Assertions.assertThatThrownBy(() -> RetryTest.getRetry(3).call(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException();
+        })).isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void delayGrowsExponentiallyUpToLimit() {
+        final Retry r = RetryTest.getRetry(10);
+        Assertions.assertThat(r.getDelayLimit(1)).isEqualTo(1);
+        Assertions.assertThat(r.getDelayLimit(2)).isEqualTo(2);
+        Assertions.assertThat(r.getDelayLimit(3)).isEqualTo(4);
+        Assertions.assertThat(r.getDelayLimit(4)).isEqualTo(4);
+        Assertions.assertThat(r.getDelayLimit(100)).isEqualTo(4);
+    }
+
+    @Test
+    public void decoratesOperation() {
+        final AtomicInteger attempts = new AtomicInteger(0);
+        final LogoutOperation op = new LogoutOperation() {
+            @Override
+            protected Boolean perform(final ZonkyApi input) {
+                if (attempts.incrementAndGet() < 2) {
+                    throw new IllegalStateException();
+                }
+                return true;
+            }
+        };
+        Assertions.assertThat(op.decorate(RetryTest.getRetry(1)).apply(null)).isEmpty();
+        attempts.set(0);
+        Assertions.assertThat(op.decorate(RetryTest.getRetry(2)).apply(null)).hasValue(true);
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.remote;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class AsyncApiTest {
+
+    @Test
+    public void callsPerformedConcurrently() {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final ZonkyApi zonky = Mockito.mock(ZonkyApi.class);
+        final Statistics stats = Mockito.mock(Statistics.class);
+        final Wallet wallet = Mockito.mock(Wallet.class);
+        Mockito.when(zonky.getStatistics()).then(invocation -> { // only returns when the other call has started
+            latch.countDown();
+            latch.await(10, TimeUnit.SECONDS);
+            return stats;
+        });
+        Mockito.when(zonky.getWallet()).then(invocation -> {
+            latch.countDown();
+            latch.await(10, TimeUnit.SECONDS);
+            return wallet;
+        });
+        final AsyncApi<ZonkyApi> api = AsyncApi.of(zonky);
+        final CompletionStage<Statistics> futureStats = api.call(ZonkyApi::getStatistics);
+        final CompletionStage<Wallet> futureWallet = api.call(ZonkyApi::getWallet);
+        Assertions.assertThat(AsyncApi.await(futureStats)).isSameAs(stats);
+        Assertions.assertThat(AsyncApi.await(futureWallet)).isSameAs(wallet);
+        Assertions.assertThat(latch.getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void exceptionRethrownAsIs() {
+        final ZonkyApi zonky = Mockito.mock(ZonkyApi.class);
+        final IllegalArgumentException ex = new IllegalArgumentException();
+        Mockito.when(zonky.getWallet()).thenThrow(ex);
+        final CompletionStage<Wallet> result = AsyncApi.of(zonky).call(ZonkyApi::getWallet);
+        Assertions.assertThatThrownBy(() -> AsyncApi.await(result)).isSameAs(ex);
+    }
+
+}
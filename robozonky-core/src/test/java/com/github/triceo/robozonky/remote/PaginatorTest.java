@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.remote;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class PaginatorTest {
+
+    private static final int TOTAL = 25;
+
+    private static List<Integer> getPage(final int pageSize, final int pageNo) {
+        final int first = pageSize * pageNo;
+        return IntStream.range(first, Math.min(first + pageSize, PaginatorTest.TOTAL)).boxed()
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void allPagesRetrieved() {
+        final AtomicInteger requests = new AtomicInteger(0);
+        try (final Stream<Integer> s = Paginator.stream((size, page) -> {
+            requests.incrementAndGet();
+            return PaginatorTest.getPage(size, page);
+        }, 10)) {
+            Assertions.assertThat(s.collect(Collectors.toList()))
+                    .isEqualTo(IntStream.range(0, PaginatorTest.TOTAL).boxed().collect(Collectors.toList()));
+        }
+        Assertions.assertThat(requests.get()).isEqualTo(3); // the third page is short, therefore the last
+    }
+
+    @Test
+    public void emptyPageEndsPagination() {
+        final AtomicInteger requests = new AtomicInteger(0);
+        try (final Stream<Integer> s = Paginator.stream((size, page) -> {
+            requests.incrementAndGet();
+            return PaginatorTest.getPage(size, page);
+        }, 5)) {
+            Assertions.assertThat(s.count()).isEqualTo(PaginatorTest.TOTAL);
+        }
+        Assertions.assertThat(requests.get()).isEqualTo(6);
+    }
+
+    @Test
+    public void stopsWhenConsumerStops() {
+        final AtomicInteger requests = new AtomicInteger(0);
+        try (final Stream<Integer> s = Paginator.stream((size, page) -> {
+            requests.incrementAndGet();
+            return PaginatorTest.getPage(size, page);
+        }, 5)) {
+            Assertions.assertThat(s.findFirst()).contains(0);
+        }
+        Assertions.assertThat(requests.get()).isLessThanOrEqualTo(2); // first page and possibly the one prefetched
+    }
+
+    @Test
+    public void serverIgnoringPageNumber() {
+        final AtomicInteger requests = new AtomicInteger(0);
+        try (final Stream<Integer> s = Paginator.stream((size, page) -> {
+            requests.incrementAndGet();
+            return PaginatorTest.getPage(3, 0);
+        }, 10)) {
+            Assertions.assertThat(s.count()).isEqualTo(3);
+        }
+        Assertions.assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void zonkyEndpointsPaginated() {
+        final Loan loan = Mockito.mock(Loan.class);
+        final Investment investment = Mockito.mock(Investment.class);
+        final InvestmentStatuses statuses = InvestmentStatuses.all();
+        final ZonkyApi api = Mockito.mock(ZonkyApi.class);
+        Mockito.when(api.getLoans(Matchers.anyInt(), Matchers.anyInt())).thenReturn(Collections.emptyList());
+        Mockito.when(api.getLoans(Matchers.eq(1), Matchers.eq(0))).thenReturn(Collections.singletonList(loan));
+        Mockito.when(api.getInvestments(Matchers.eq(statuses), Matchers.anyInt(), Matchers.anyInt()))
+                .thenReturn(Collections.emptyList());
+        Mockito.when(api.getInvestments(Matchers.eq(statuses), Matchers.eq(1), Matchers.eq(0)))
+                .thenReturn(Collections.singletonList(investment));
+        try (final Stream<Loan> s = Paginator.stream(api::getLoans, 1)) {
+            Assertions.assertThat(s.collect(Collectors.toList())).containsExactly(loan);
+        }
+        try (final Stream<Investment> s = Paginator.stream((size, page) -> api.getInvestments(statuses, size, page),
+                1)) {
+            Assertions.assertThat(s.collect(Collectors.toList())).containsExactly(investment);
+        }
+    }
+
+    @Test
+    public void failurePropagated() {
+        final Paginator<Integer> p = new Paginator<>((size, page) -> {
+            if (page > 0) {
+                throw new IllegalArgumentException();
+            }
+            return PaginatorTest.getPage(size, page);
+        }, 5);
+        IntStream.range(0, 5).forEach(i -> Assertions.assertThat(p.next()).isEqualTo(i));
+        Assertions.assertThatThrownBy(p::hasNext).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
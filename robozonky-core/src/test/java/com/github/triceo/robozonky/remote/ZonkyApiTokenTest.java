@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.remote;
+
+import java.util.UUID;
+import javax.xml.bind.JAXBException;
+
+import org.assertj.core.api.Assertions;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.Test;
+
+public class ZonkyApiTokenTest {
+
+    private static final ZonkyApiToken TOKEN = new ZonkyApiToken(UUID.randomUUID().toString(),
+            UUID.randomUUID().toString(), 299, "bearer", "SCOPE_APP_WEB");
+
+    private static void assertSame(final ZonkyApiToken actual, final ZonkyApiToken expected) {
+        final SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(actual.getAccessToken()).isEqualTo(expected.getAccessToken());
+        softly.assertThat(actual.getRefreshToken()).isEqualTo(expected.getRefreshToken());
+        softly.assertThat(actual.getType()).isEqualTo(expected.getType());
+        softly.assertThat(actual.getScope()).isEqualTo(expected.getScope());
+        softly.assertThat(actual.getExpiresIn()).isEqualTo(expected.getExpiresIn());
+        softly.assertAll();
+    }
+
+    @Test
+    public void encodedAndDecoded() {
+        final String encoded = ZonkyApiToken.encode(ZonkyApiTokenTest.TOKEN);
+        Assertions.assertThat(encoded).doesNotContain("\n");
+        ZonkyApiTokenTest.assertSame(ZonkyApiToken.decode(encoded), ZonkyApiTokenTest.TOKEN);
+    }
+
+    @Test
+    public void nullsSurvive() {
+        final ZonkyApiToken token = new ZonkyApiToken(null, "", 0, null, null);
+        ZonkyApiTokenTest.assertSame(ZonkyApiToken.decode(ZonkyApiToken.encode(token)), token);
+    }
+
+    @Test
+    public void legacyFormatDecoded() throws JAXBException {
+        final String legacy = ZonkyApiToken.marshal(ZonkyApiTokenTest.TOKEN);
+        ZonkyApiTokenTest.assertSame(ZonkyApiToken.decode(legacy), ZonkyApiTokenTest.TOKEN);
+    }
+
+    @Test
+    public void garbageRejected() {
+        Assertions.assertThatThrownBy(() -> ZonkyApiToken.decode("")).isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> ZonkyApiToken.decode("2;-;-;-;-;0"))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> ZonkyApiToken.decode("<token>"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
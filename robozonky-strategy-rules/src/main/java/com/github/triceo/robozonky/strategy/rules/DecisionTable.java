@@ -0,0 +1,302 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.triceo.robozonky.PortfolioOverview;
+import com.github.triceo.robozonky.remote.Loan;
+import com.github.triceo.robozonky.remote.Rating;
+import com.github.triceo.robozonky.strategy.rules.facts.ProposedLoan;
+import com.github.triceo.robozonky.strategy.rules.facts.RatingShare;
+import com.github.triceo.robozonky.strategy.rules.facts.Wallet;
+
+/**
+ * One rule table of a decision table, compiled into flat arrays of predicates. Every row applies to loans of exactly
+ * one {@link Rating} and no two rows apply to the same one, so that at most one row may ever match a loan. That is
+ * what makes the outcome independent of the order in which Drools would have fired the rules.
+ *
+ * Immutable, therefore thread-safe. Matching does not allocate.
+ */
+class DecisionTable {
+
+    /**
+     * Properties of the facts that the conditions may constrain.
+     */
+    enum Field {
+
+        TERM_IN_MONTHS(ProposedLoan.class, "termInMonths") {
+            @Override
+            double get(final Loan loan, final double[] portfolio) {
+                return loan.getTermInMonths();
+            }
+        },
+        AMOUNT(ProposedLoan.class, "amount") {
+            @Override
+            double get(final Loan loan, final double[] portfolio) {
+                return (int) loan.getAmount();
+            }
+        },
+        INVESTMENTS_COUNT(ProposedLoan.class, "investmentsCount") {
+            @Override
+            double get(final Loan loan, final double[] portfolio) {
+                return loan.getInvestmentsCount();
+            }
+        },
+        REMAINING_INVESTMENT(ProposedLoan.class, "remainingInvestment") {
+            @Override
+            double get(final Loan loan, final double[] portfolio) {
+                return (int) loan.getRemainingInvestment();
+            }
+        },
+        INTEREST_RATE(ProposedLoan.class, "interestRate") {
+            @Override
+            double get(final Loan loan, final double[] portfolio) {
+                return loan.getInterestRate() == null ? 0 : loan.getInterestRate().doubleValue();
+            }
+        },
+        INVESTMENT_RATE(ProposedLoan.class, "investmentRate") {
+            @Override
+            double get(final Loan loan, final double[] portfolio) {
+                return loan.getInvestmentRate() == null ? 0 : loan.getInvestmentRate().doubleValue();
+            }
+        },
+        CZK_AVAILABLE(Wallet.class, "czkAvailable") {
+            @Override
+            double get(final Loan loan, final double[] portfolio) {
+                return portfolio[0];
+            }
+        },
+        CZK_INVESTED(Wallet.class, "czkInvested") {
+            @Override
+            double get(final Loan loan, final double[] portfolio) {
+                return portfolio[1];
+            }
+        },
+        SHARE(RatingShare.class, "share") {
+            @Override
+            double get(final Loan loan, final double[] portfolio) {
+                return portfolio[2 + loan.getRating().ordinal()];
+            }
+        };
+
+        static Field find(final Class<?> fact, final String property) {
+            for (final Field f : Field.values()) {
+                if (f.fact == fact && f.property.equals(property)) {
+                    return f;
+                }
+            }
+            return null;
+        }
+
+        private final Class<?> fact;
+        private final String property;
+
+        Field(final Class<?> fact, final String property) {
+            this.fact = fact;
+            this.property = property;
+        }
+
+        /**
+         * @param loan Loan to read the property of. Its rating is not null.
+         * @param portfolio Portfolio, as returned by {@link DecisionTable#toArray(PortfolioOverview)}.
+         * @return Value of the property, as Drools would have compared it.
+         */
+        abstract double get(final Loan loan, final double[] portfolio);
+
+    }
+
+    enum Operator {
+
+        EQUAL("==") {
+            @Override
+            boolean test(final double actual, final double operand) {
+                return actual == operand;
+            }
+        },
+        NOT_EQUAL("!=") {
+            @Override
+            boolean test(final double actual, final double operand) {
+                return actual != operand;
+            }
+        },
+        LESS("<") {
+            @Override
+            boolean test(final double actual, final double operand) {
+                return actual < operand;
+            }
+        },
+        LESS_OR_EQUAL("<=") {
+            @Override
+            boolean test(final double actual, final double operand) {
+                return actual <= operand;
+            }
+        },
+        GREATER(">") {
+            @Override
+            boolean test(final double actual, final double operand) {
+                return actual > operand;
+            }
+        },
+        GREATER_OR_EQUAL(">=") {
+            @Override
+            boolean test(final double actual, final double operand) {
+                return actual >= operand;
+            }
+        };
+
+        static Operator find(final String symbol) {
+            for (final Operator o : Operator.values()) {
+                if (o.symbol.equals(symbol)) {
+                    return o;
+                }
+            }
+            return null;
+        }
+
+        private final String symbol;
+
+        Operator(final String symbol) {
+            this.symbol = symbol;
+        }
+
+        abstract boolean test(final double actual, final double operand);
+
+    }
+
+    /**
+     * A single row of the rule table, as it is being parsed.
+     */
+    static class Row {
+
+        private final Rating rating;
+        private final int value;
+        private final List<Field> fields = new ArrayList<>();
+        private final List<Operator> operators = new ArrayList<>();
+        private final List<Double> operands = new ArrayList<>();
+
+        /**
+         * @param rating Rating of the loans that the row applies to.
+         * @param value Outcome of the row, such as priority or amount to invest.
+         */
+        Row(final Rating rating, final int value) {
+            this.rating = rating;
+            this.value = value;
+        }
+
+        void addPredicate(final Field field, final Operator operator, final double operand) {
+            this.fields.add(field);
+            this.operators.add(operator);
+            this.operands.add(operand);
+        }
+
+    }
+
+    static final DecisionTable EMPTY = new DecisionTable(new ArrayList<>());
+
+    /**
+     * Put the portfolio in a form that the predicates can read without allocating anything.
+     *
+     * @param portfolio Portfolio to convert.
+     * @return Available balance, invested balance, then the share of every rating in the order of their ordinals.
+     */
+    static double[] toArray(final PortfolioOverview portfolio) {
+        final Rating[] ratings = Rating.values();
+        final double[] result = new double[2 + ratings.length];
+        result[0] = portfolio.getCzkAvailable();
+        result[1] = portfolio.getCzkInvested();
+        for (final Rating r : ratings) {
+            result[2 + r.ordinal()] = portfolio.getShareOnInvestment(r).doubleValue();
+        }
+        return result;
+    }
+
+    private final int[] rowsByRating = new int[Rating.values().length];
+    private final int[] values;
+    /**
+     * Predicates of row i are at positions from predicateStarts[i] (inclusive) to predicateStarts[i + 1] (exclusive)
+     * in the arrays that follow.
+     */
+    private final int[] predicateStarts;
+    private final Field[] fields;
+    private final Operator[] operators;
+    private final double[] operands;
+
+    /**
+     * @param rows Rows of the table, no two of them for the same rating.
+     */
+    DecisionTable(final List<Row> rows) {
+        Arrays.fill(this.rowsByRating, -1);
+        this.values = new int[rows.size()];
+        this.predicateStarts = new int[rows.size() + 1];
+        final int predicateCount = rows.stream().mapToInt(r -> r.fields.size()).sum();
+        this.fields = new Field[predicateCount];
+        this.operators = new Operator[predicateCount];
+        this.operands = new double[predicateCount];
+        int predicate = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            final Row row = rows.get(i);
+            if (this.rowsByRating[row.rating.ordinal()] >= 0) {
+                throw new IllegalArgumentException("More than one row for rating " + row.rating);
+            }
+            this.rowsByRating[row.rating.ordinal()] = i;
+            this.values[i] = row.value;
+            this.predicateStarts[i] = predicate;
+            for (int j = 0; j < row.fields.size(); j++, predicate++) {
+                this.fields[predicate] = row.fields.get(j);
+                this.operators[predicate] = row.operators.get(j);
+                this.operands[predicate] = row.operands.get(j);
+            }
+        }
+        this.predicateStarts[rows.size()] = predicate;
+    }
+
+    /**
+     * Find the row that matches the loan.
+     *
+     * @param loan Loan in question.
+     * @param portfolio Portfolio, as returned by {@link #toArray(PortfolioOverview)}.
+     * @return Index of the matching row, or -1 if none matches.
+     */
+    int match(final Loan loan, final double[] portfolio) {
+        final Rating rating = loan.getRating();
+        if (rating == null) {
+            return -1;
+        }
+        final int row = this.rowsByRating[rating.ordinal()];
+        if (row < 0) {
+            return -1;
+        }
+        for (int i = this.predicateStarts[row]; i < this.predicateStarts[row + 1]; i++) {
+            if (!this.operators[i].test(this.fields[i].get(loan, portfolio), this.operands[i])) {
+                return -1;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * @param row Index of the row, as returned by {@link #match(Loan, double[])}.
+     * @return Outcome of the row, such as priority or amount to invest.
+     */
+    int getValue(final int row) {
+        return this.values[row];
+    }
+
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.triceo.robozonky.remote.Rating;
+import com.github.triceo.robozonky.strategy.rules.facts.ProposedLoan;
+import com.github.triceo.robozonky.strategy.rules.facts.RatingShare;
+import com.github.triceo.robozonky.strategy.rules.facts.Wallet;
+import org.drools.decisiontable.parser.xls.ExcelParser;
+import org.drools.template.parser.DataListener;
+import org.drools.template.parser.DecisionTableParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a decision table cell by cell and compiles it for {@link NativeInvestmentStrategy}, without Drools ever
+ * seeing it. Only understands decision tables laid out like the example strategy: one rule table that accepts loans
+ * with a priority, at most one rule table that sets the amount to invest, every row for a single rating and the
+ * conditions being simple comparisons of {@link ProposedLoan}, {@link Wallet} and {@link RatingShare} properties with
+ * the values in the cells. Anything else makes the decision table unsupported, as the Drools semantics would
+ * otherwise have to be guessed.
+ *
+ * Not thread-safe, a new instance is required for every decision table.
+ */
+class DecisionTableParser implements DataListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecisionTableParser.class);
+
+    private enum TableKind {
+        ACCEPTANCE, AMOUNT
+    }
+
+    private static final String CONDITION = "CONDITION", ACTION = "ACTION", NO_LOOP = "NO-LOOP";
+    private static final Set<String> PROPERTIES = new HashSet<>();
+    private static final Map<String, Class<?>> ACCEPTANCE_FACTS = new TreeMap<>(), AMOUNT_FACTS = new TreeMap<>();
+    private static final String ACCEPTANCE_ACTION =
+            "AcceptedLoana=newAcceptedLoan();a.setId($l.getId());a.setAmount(0);a.setPriority($1);insert(a);";
+    private static final String AMOUNT_ACTION = "modify($a){setAmount($1)}";
+    private static final String LOAN_JOIN = "Id==$a.id", RATING_JOIN = "rating==$l.rating";
+    private static final Pattern CONSTRAINT = Pattern.compile("(\\w+)(==|!=|<=|>=|<|>)(Rating\\.)?\\$(\\d+)");
+
+    static {
+        DecisionTableParser.PROPERTIES.add("RULESET");
+        DecisionTableParser.PROPERTIES.add("IMPORT");
+        DecisionTableParser.PROPERTIES.add("NOTES");
+        DecisionTableParser.ACCEPTANCE_FACTS.put("$l:ProposedLoan", ProposedLoan.class);
+        DecisionTableParser.ACCEPTANCE_FACTS.put("Wallet", Wallet.class);
+        DecisionTableParser.ACCEPTANCE_FACTS.put("notAcceptedLoan(id==$l.getId());Wallet", Wallet.class);
+        DecisionTableParser.ACCEPTANCE_FACTS.put("RatingShare", RatingShare.class);
+        DecisionTableParser.ACCEPTANCE_FACTS.put("notAcceptedLoan(id==$l.getId());RatingShare", RatingShare.class);
+        DecisionTableParser.AMOUNT_FACTS.put("$a:AcceptedLoan();$l:ProposedLoan", ProposedLoan.class);
+        DecisionTableParser.AMOUNT_FACTS.put("Wallet", Wallet.class);
+        DecisionTableParser.AMOUNT_FACTS.put("RatingShare", RatingShare.class);
+    }
+
+    /**
+     * Compile the decision table.
+     *
+     * @param strategyFile Decision table in question.
+     * @return Empty if the decision table is not supported or could not be read, in which case Drools should process
+     * it instead.
+     */
+    static Optional<NativeInvestmentStrategy> parse(final File strategyFile) {
+        final DecisionTableParser parser = new DecisionTableParser();
+        // parsing the file directly would open it for writing, and write it back when done
+        try (final InputStream stream = new FileInputStream(strategyFile)) {
+            new ExcelParser(parser).parseFile(stream);
+        } catch (final DecisionTableParseException | IOException ex) {
+            DecisionTableParser.LOGGER.debug("Failed reading '{}'.", strategyFile, ex);
+            return Optional.empty();
+        }
+        return parser.getResult();
+    }
+
+    private static String normalize(final String code) {
+        return code.replaceAll("\\s", "").replace("$param", "$1");
+    }
+
+    /**
+     * One comparison within a condition column, such as "amount > $1".
+     */
+    private static class Constraint {
+
+        private final DecisionTable.Field field; // null for the rating
+        private final DecisionTable.Operator operator;
+        private final int parameter;
+
+        Constraint(final DecisionTable.Field field, final DecisionTable.Operator operator, final int parameter) {
+            this.field = field;
+            this.operator = operator;
+            this.parameter = parameter;
+        }
+
+    }
+
+    private static class ConditionColumn {
+
+        private final List<Constraint> constraints;
+        private final int parameterCount;
+
+        ConditionColumn(final List<Constraint> constraints) {
+            this.constraints = constraints;
+            this.parameterCount = constraints.stream().mapToInt(c -> c.parameter).max().orElse(0);
+        }
+
+    }
+
+    private String unsupportedReason = null;
+    private int currentRow = -1;
+    private final SortedMap<Integer, String> cells = new TreeMap<>();
+    private final Set<Integer> mergedCells = new HashSet<>();
+    // state of the rule table being read, if any
+    private int tableRow = -1, tableColumn = -1;
+    private final SortedMap<Integer, String> keywords = new TreeMap<>(), objectTypes = new TreeMap<>(),
+            templates = new TreeMap<>();
+    private final Set<Integer> mergedObjectTypes = new HashSet<>();
+    private TableKind tableKind = null;
+    private int actionColumn = -1;
+    private final SortedMap<Integer, ConditionColumn> conditions = new TreeMap<>();
+    private final List<DecisionTable.Row> rows = new ArrayList<>();
+    private final Set<Rating> ratings = EnumSet.noneOf(Rating.class);
+    // results
+    private DecisionTable acceptance = null, amounts = null;
+
+    private boolean isSupported() {
+        return this.unsupportedReason == null;
+    }
+
+    private void unsupported(final String reason) {
+        if (this.isSupported()) {
+            this.unsupportedReason = reason;
+        }
+    }
+
+    private boolean isInTable() {
+        return this.tableRow >= 0;
+    }
+
+    /**
+     * @return Empty if the decision table can not be evaluated without Drools.
+     */
+    Optional<NativeInvestmentStrategy> getResult() {
+        if (this.isSupported() && this.acceptance == null) {
+            this.unsupported("No rule table accepts loans.");
+        }
+        if (!this.isSupported()) {
+            DecisionTableParser.LOGGER.debug("Decision table needs Drools: {}", this.unsupportedReason);
+            return Optional.empty();
+        }
+        return Optional.of(new NativeInvestmentStrategy(this.acceptance,
+                this.amounts == null ? DecisionTable.EMPTY : this.amounts));
+    }
+
+    @Override
+    public void startSheet(final String name) {
+        this.currentRow = -1;
+    }
+
+    @Override
+    public void finishSheet() {
+        if (!this.isSupported()) {
+            return;
+        }
+        this.finishRow();
+        if (this.isInTable()) {
+            this.finishTable();
+        }
+    }
+
+    @Override
+    public void newRow(final int rowNumber, final int columns) {
+        if (!this.isSupported()) {
+            return;
+        }
+        if (this.currentRow >= 0) {
+            this.finishRow();
+            while (this.currentRow + 1 < rowNumber && this.isSupported()) { // rows without any cells
+                this.currentRow++;
+                this.finishRow();
+            }
+        }
+        this.currentRow = rowNumber;
+    }
+
+    @Override
+    public void newCell(final int row, final int column, final String value, final int mergedColStart) {
+        if (!this.isSupported() || value == null || value.trim().isEmpty()) {
+            return;
+        }
+        this.cells.put(column, value.trim());
+        if (mergedColStart != DataListener.NON_MERGED && mergedColStart != column) {
+            this.mergedCells.add(column);
+        }
+    }
+
+    private void finishRow() {
+        if (!this.isInTable()) {
+            this.processPropertyRow();
+        } else {
+            this.processTableRow(this.currentRow - this.tableRow);
+        }
+        this.cells.clear();
+        this.mergedCells.clear();
+    }
+
+    private void processPropertyRow() {
+        int valueColumn = -1;
+        for (final Map.Entry<Integer, String> cell : this.cells.entrySet()) {
+            final int column = cell.getKey();
+            final String value = cell.getValue();
+            if (this.mergedCells.contains(column) || column == valueColumn) {
+                continue;
+            } else if (DecisionTableParser.PROPERTIES.contains(value.toUpperCase())) {
+                valueColumn = column + 1;
+            } else if (value.startsWith("RuleTable") && this.cells.tailMap(column + 1).isEmpty()) {
+                this.tableRow = this.currentRow;
+                this.tableColumn = column;
+            } else {
+                this.unsupported("Unknown cell: " + value);
+            }
+        }
+    }
+
+    private SortedMap<Integer, String> getTableCells() {
+        return this.cells.tailMap(this.tableColumn);
+    }
+
+    private void processTableRow(final int offset) {
+        switch (offset) {
+            case 1:
+                this.processKeywords();
+                break;
+            case 2:
+                this.processColumnCells(this.objectTypes);
+                this.mergedObjectTypes.addAll(this.mergedCells);
+                break;
+            case 3:
+                this.processColumnCells(this.templates);
+                break;
+            case 4: // descriptions of the columns, just for the user
+                this.processHeader();
+                break;
+            default:
+                this.processRule();
+        }
+    }
+
+    private void processKeywords() {
+        for (final Map.Entry<Integer, String> cell : this.getTableCells().entrySet()) {
+            final String keyword = cell.getValue().toUpperCase();
+            if (this.mergedCells.contains(cell.getKey())) {
+                this.unsupported("Merged keywords.");
+            } else if (keyword.equals(DecisionTableParser.CONDITION) || keyword.equals(DecisionTableParser.ACTION)
+                    || keyword.equals(DecisionTableParser.NO_LOOP)) {
+                this.keywords.put(cell.getKey(), keyword);
+            } else {
+                this.unsupported("Unknown keyword: " + keyword);
+            }
+        }
+    }
+
+    private void processColumnCells(final Map<Integer, String> target) {
+        for (final Map.Entry<Integer, String> cell : this.getTableCells().entrySet()) {
+            if (this.keywords.containsKey(cell.getKey())) {
+                target.put(cell.getKey(), DecisionTableParser.normalize(cell.getValue()));
+            }
+        }
+    }
+
+    private void processHeader() {
+        for (final Map.Entry<Integer, String> keyword : this.keywords.entrySet()) {
+            final int column = keyword.getKey();
+            switch (keyword.getValue()) {
+                case DecisionTableParser.ACTION:
+                    final String template = this.templates.get(column);
+                    if (this.tableKind != null || this.objectTypes.containsKey(column)) {
+                        this.unsupported("Unknown action.");
+                    } else if (DecisionTableParser.ACCEPTANCE_ACTION.equals(template)) {
+                        this.tableKind = TableKind.ACCEPTANCE;
+                    } else if (DecisionTableParser.AMOUNT_ACTION.equals(template)) {
+                        this.tableKind = TableKind.AMOUNT;
+                    } else {
+                        this.unsupported("Unknown action: " + template);
+                    }
+                    this.actionColumn = column;
+                    break;
+                case DecisionTableParser.NO_LOOP: // only ever changes how often the rules fire, not their outcome
+                    if (this.objectTypes.containsKey(column) || this.templates.containsKey(column)) {
+                        this.unsupported("Unknown attribute.");
+                    }
+                    break;
+                default: // conditions are processed once the kind of the table is known
+                    break;
+            }
+        }
+        if (this.tableKind == null) {
+            this.unsupported("Rule table without action.");
+            return;
+        }
+        final Map<String, Class<?>> facts = this.tableKind == TableKind.ACCEPTANCE ?
+                DecisionTableParser.ACCEPTANCE_FACTS : DecisionTableParser.AMOUNT_FACTS;
+        boolean loanSeen = false;
+        for (final Map.Entry<Integer, String> keyword : this.keywords.entrySet()) {
+            final int column = keyword.getKey();
+            if (!keyword.getValue().equals(DecisionTableParser.CONDITION)) {
+                continue;
+            }
+            final Class<?> fact = facts.get(this.objectTypes.get(column));
+            final String template = this.templates.get(column);
+            if (fact == null || template == null) {
+                this.unsupported("Unknown condition: " + this.objectTypes.get(column) + " " + template);
+            } else if (fact == ProposedLoan.class && loanSeen && !this.mergedObjectTypes.contains(column)) {
+                this.unsupported("Loan conditions not merged into a single pattern.");
+            } else {
+                loanSeen = loanSeen || fact == ProposedLoan.class;
+                this.processCondition(column, fact, template);
+            }
+        }
+    }
+
+    private void processCondition(final int column, final Class<?> fact, final String template) {
+        final List<Constraint> constraints = new ArrayList<>();
+        boolean joined = false;
+        for (final String code : template.split(",")) {
+            if (fact == ProposedLoan.class && this.tableKind == TableKind.AMOUNT &&
+                    code.equalsIgnoreCase(DecisionTableParser.LOAN_JOIN)) {
+                joined = true;
+                continue;
+            } else if (fact == RatingShare.class && code.equals(DecisionTableParser.RATING_JOIN)) {
+                joined = true;
+                continue;
+            }
+            final Matcher m = DecisionTableParser.CONSTRAINT.matcher(code);
+            if (!m.matches()) {
+                this.unsupported("Unknown constraint: " + code);
+                return;
+            }
+            final DecisionTable.Operator operator = DecisionTable.Operator.find(m.group(2));
+            final int parameter = Integer.parseInt(m.group(4));
+            if (m.group(3) != null) { // Rating.$1
+                if (fact != ProposedLoan.class || !m.group(1).equals("rating")
+                        || operator != DecisionTable.Operator.EQUAL) {
+                    this.unsupported("Unknown constraint: " + code);
+                    return;
+                }
+                constraints.add(new Constraint(null, operator, parameter));
+            } else {
+                final DecisionTable.Field field = DecisionTable.Field.find(fact, m.group(1));
+                if (field == null) {
+                    this.unsupported("Unknown constraint: " + code);
+                    return;
+                }
+                constraints.add(new Constraint(field, operator, parameter));
+            }
+        }
+        /*
+         * without the join, the condition would apply to an unrelated loan or rating share. the join only applies to
+         * the rules that fill in its column, which every rule does for the column with the rating.
+         */
+        final boolean joinRequired = fact == RatingShare.class || (this.tableKind == TableKind.AMOUNT &&
+                constraints.stream().anyMatch(c -> c.field == null));
+        if (joinRequired && !joined) {
+            this.unsupported("Condition not related to the loan: " + template);
+        } else {
+            this.conditions.put(column, new ConditionColumn(constraints));
+        }
+    }
+
+    private void processRule() {
+        final SortedMap<Integer, String> ruleCells = new TreeMap<>(this.getTableCells());
+        ruleCells.keySet().retainAll(this.keywords.keySet());
+        if (ruleCells.isEmpty()) { // rule table ends with the first empty row
+            this.finishTable();
+            return;
+        } else if (ruleCells.keySet().stream().anyMatch(this.mergedCells::contains)) {
+            this.unsupported("Merged rule cells.");
+            return;
+        }
+        final String action = ruleCells.get(this.actionColumn);
+        if (action == null) { // rule without consequences
+            return;
+        }
+        final Map<Integer, String[]> parameters = new TreeMap<>();
+        Rating rating = null;
+        for (final Map.Entry<Integer, ConditionColumn> condition : this.conditions.entrySet()) {
+            final String cell = ruleCells.get(condition.getKey());
+            if (cell == null) { // condition does not apply to this rule
+                continue;
+            }
+            final String[] values = cell.split(",", -1);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = values[i].trim();
+            }
+            if (values.length != condition.getValue().parameterCount) {
+                this.unsupported("Wrong number of values: " + cell);
+                return;
+            }
+            parameters.put(condition.getKey(), values);
+            for (final Constraint c : condition.getValue().constraints) {
+                if (c.field == null) { // the first rating found is the rating of the rule, any other is an error
+                    try {
+                        rating = rating == null ? Rating.valueOf(values[c.parameter - 1]) : null;
+                    } catch (final IllegalArgumentException ex) {
+                        rating = null;
+                    }
+                    if (rating == null) {
+                        this.unsupported("Rule without a single rating: " + cell);
+                        return;
+                    }
+                }
+            }
+        }
+        if (rating == null || !this.ratings.add(rating)) {
+            this.unsupported("Rule not for a single rating, or for a rating already used.");
+            return;
+        }
+        try {
+            final DecisionTable.Row row = new DecisionTable.Row(rating, Integer.parseInt(action));
+            for (final Map.Entry<Integer, String[]> p : parameters.entrySet()) {
+                for (final Constraint c : this.conditions.get(p.getKey()).constraints) {
+                    if (c.field != null) {
+                        row.addPredicate(c.field, c.operator, Double.parseDouble(p.getValue()[c.parameter - 1]));
+                    }
+                }
+            }
+            this.rows.add(row);
+        } catch (final NumberFormatException ex) {
+            this.unsupported("Not a number: " + ex.getMessage());
+        }
+    }
+
+    private void finishTable() {
+        if (this.currentRow - this.tableRow <= 4) {
+            this.unsupported("Incomplete rule table.");
+        } else if (this.tableKind == TableKind.ACCEPTANCE && this.acceptance == null) {
+            this.acceptance = new DecisionTable(this.rows);
+        } else if (this.tableKind == TableKind.AMOUNT && this.amounts == null) {
+            this.amounts = new DecisionTable(this.rows);
+        } else {
+            this.unsupported("More than one rule table of the same kind.");
+        }
+        this.tableRow = -1;
+        this.tableColumn = -1;
+        this.keywords.clear();
+        this.objectTypes.clear();
+        this.templates.clear();
+        this.mergedObjectTypes.clear();
+        this.tableKind = null;
+        this.actionColumn = -1;
+        this.conditions.clear();
+        this.rows.clear();
+        this.ratings.clear();
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.triceo.robozonky.PortfolioOverview;
+import com.github.triceo.robozonky.remote.Loan;
+
+/**
+ * Result of a single evaluation of loans by the rules. Immutable, therefore safe to share between threads.
+ */
+class Evaluation {
+
+    static final Evaluation EMPTY = new Evaluation(Collections.emptyList(), new int[0]);
+
+    private static long pack(final int loanId, final int amount) {
+        return ((long) loanId << 32) | (amount & 0xFFFFFFFFL);
+    }
+
+    private final List<Loan> matchingLoans;
+    /**
+     * Loan ID in the upper half, recommended amount in the lower half. Sorted, which sorts by loan ID.
+     */
+    private final long[] recommendedAmounts;
+
+    /**
+     * @param matchingLoans Acceptable loans, ordered by their priority.
+     * @param recommendedAmounts Amount to invest into each of the loans, in the same order.
+     */
+    Evaluation(final List<Loan> matchingLoans, final int[] recommendedAmounts) {
+        this.matchingLoans = matchingLoans;
+        this.recommendedAmounts = new long[recommendedAmounts.length];
+        for (int i = 0; i < recommendedAmounts.length; i++) {
+            this.recommendedAmounts[i] = Evaluation.pack(matchingLoans.get(i).getId(), recommendedAmounts[i]);
+        }
+        Arrays.sort(this.recommendedAmounts);
+    }
+
+    /**
+     * @return Acceptable loans, ordered by their priority.
+     * @see com.github.triceo.robozonky.strategy.InvestmentStrategy#getMatchingLoans(List, PortfolioOverview)
+     */
+    public List<Loan> getMatchingLoans() {
+        return this.matchingLoans;
+    }
+
+    /**
+     * @param loan Loan in question.
+     * @return How much should be invested into the loan, 0 when not acceptable.
+     */
+    public int getRecommendedAmount(final Loan loan) {
+        final int loanId = loan.getId();
+        // the smallest possible value for the loan ID sorts before any actual value for that ID
+        final int position = Arrays.binarySearch(this.recommendedAmounts, Evaluation.pack(loanId, 0));
+        final int index = position < 0 ? -position - 1 : position;
+        if (index < this.recommendedAmounts.length && (int) (this.recommendedAmounts[index] >> 32) == loanId) {
+            return (int) this.recommendedAmounts[index];
+        }
+        return 0;
+    }
+
+}
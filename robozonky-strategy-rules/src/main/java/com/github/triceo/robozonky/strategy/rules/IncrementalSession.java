@@ -0,0 +1,269 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.github.triceo.robozonky.PortfolioOverview;
+import com.github.triceo.robozonky.remote.Loan;
+import com.github.triceo.robozonky.remote.Rating;
+import com.github.triceo.robozonky.strategy.rules.facts.AcceptedLoan;
+import com.github.triceo.robozonky.strategy.rules.facts.ProposedLoan;
+import com.github.triceo.robozonky.strategy.rules.facts.RatingShare;
+import com.github.triceo.robozonky.strategy.rules.facts.Wallet;
+import org.kie.api.KieBase;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.event.rule.DefaultRuleRuntimeEventListener;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.api.runtime.rule.Match;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A rule session that is kept for many evaluations. Between them, only the facts that changed are inserted, updated
+ * or deleted, so that the rules only need to evaluate the change. {@link AcceptedLoan}s are derived from the other
+ * facts and therefore deleted whenever the facts they may have been derived from change: those of a particular loan
+ * when the loan changes or disappears, or when any of the portfolio facts ({@link Wallet}, {@link RatingShare}) that
+ * the rules fired for the loan matched change.
+ *
+ * Rules only fire again when any of their own facts change. Therefore, loans whose conclusions were deleted are updated
+ * as well, so that they are evaluated again from scratch. Loans that no rule fired for are left to Drools, which
+ * matches them against the changed portfolio facts by itself. As with {@link DecisionTable}, the rules are expected to
+ * accept every loan by at most one rule. Where more rules compete for the same loan, the outcome already depended on
+ * the order in which Drools fired them.
+ *
+ * Not thread-safe, only one evaluation may run at a time.
+ */
+class IncrementalSession {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalSession.class);
+
+    private final KieSession session;
+    private final Map<Integer, Loan> loans = new HashMap<>();
+    private final Map<Integer, FactHandle> loanHandles = new HashMap<>();
+    private final Map<Rating, FactHandle> ratingShareHandles = new EnumMap<>(Rating.class);
+    private FactHandle walletHandle = null;
+    private final Map<FactHandle, AcceptedLoan> acceptedLoans = new LinkedHashMap<>();
+    // portfolio facts matched by the rules fired for every loan
+    private final Map<Integer, Set<FactHandle>> portfolioDependencies = new HashMap<>();
+    private int reevaluatedLoans = 0;
+
+    IncrementalSession(final KieBase kieBase) {
+        this.session = kieBase.newKieSession();
+        this.session.addEventListener(new DefaultRuleRuntimeEventListener() { // keep track of the rules' results
+
+            @Override
+            public void objectInserted(final ObjectInsertedEvent event) {
+                if (event.getObject() instanceof AcceptedLoan) {
+                    IncrementalSession.this.acceptedLoans.put(event.getFactHandle(),
+                            (AcceptedLoan) event.getObject());
+                }
+            }
+
+            @Override
+            public void objectDeleted(final ObjectDeletedEvent event) {
+                IncrementalSession.this.acceptedLoans.remove(event.getFactHandle());
+            }
+
+        });
+        this.session.addEventListener(new DefaultAgendaEventListener() { // keep track of what the results depend on
+
+            @Override
+            public void afterMatchFired(final AfterMatchFiredEvent event) {
+                IncrementalSession.this.recordDependencies(event.getMatch());
+            }
+
+        });
+    }
+
+    private void recordDependencies(final Match match) {
+        final Set<FactHandle> portfolioFacts = new HashSet<>();
+        Integer loanId = null;
+        for (final FactHandle handle : match.getFactHandles()) {
+            final Object fact = handle == null ? null : this.session.getObject(handle); // null for "not" patterns
+            if (fact instanceof Wallet || fact instanceof RatingShare) {
+                portfolioFacts.add(handle);
+            } else if (fact instanceof ProposedLoan) {
+                loanId = ((ProposedLoan) fact).getId();
+            } else if (fact instanceof AcceptedLoan && loanId == null) {
+                loanId = ((AcceptedLoan) fact).getId();
+            }
+        }
+        if (loanId != null && !portfolioFacts.isEmpty()) {
+            this.portfolioDependencies.computeIfAbsent(loanId, k -> new HashSet<>()).addAll(portfolioFacts);
+        }
+    }
+
+    private Loan matchLoan(final AcceptedLoan l) {
+        final Loan loan = this.loans.get(l.getId());
+        if (loan == null) {
+            throw new IllegalStateException("Could not find matching loan. Should not have happened.");
+        }
+        return loan;
+    }
+
+    private void deleteAcceptedLoans(final Predicate<AcceptedLoan> filter) {
+        final Collection<FactHandle> toDelete = this.acceptedLoans.entrySet().stream()
+                .filter(e -> filter.test(e.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        toDelete.forEach(this.session::delete);
+    }
+
+    /**
+     * Forget the conclusions about a loan and have the rules evaluate it again from scratch.
+     *
+     * @param id ID of the loan in question.
+     * @param loan The loan's new version.
+     */
+    private void reevaluateLoan(final int id, final Loan loan) {
+        this.deleteAcceptedLoans(a -> a.getId() == id);
+        this.portfolioDependencies.remove(id);
+        this.session.update(this.loanHandles.get(id), new ProposedLoan(loan));
+    }
+
+    /**
+     * Bring the portfolio facts up to date.
+     *
+     * @param portfolio Current portfolio.
+     * @return Portfolio facts that were updated. Newly inserted ones are not included, as no loan could have been
+     * evaluated against them yet.
+     */
+    private Set<FactHandle> updatePortfolio(final PortfolioOverview portfolio) {
+        final Set<FactHandle> changed = new HashSet<>();
+        for (final Rating r : Rating.values()) {
+            final RatingShare share = new RatingShare(r, portfolio.getShareOnInvestment(r));
+            final FactHandle handle = this.ratingShareHandles.get(r);
+            if (handle == null) {
+                this.ratingShareHandles.put(r, this.session.insert(share));
+            } else if (((RatingShare) this.session.getObject(handle)).getShare() != share.getShare()) {
+                this.session.update(handle, share);
+                changed.add(handle);
+            }
+        }
+        final Wallet wallet = new Wallet(portfolio.getCzkAvailable(), portfolio.getCzkInvested());
+        if (this.walletHandle == null) {
+            this.walletHandle = this.session.insert(wallet);
+        } else {
+            final Wallet previous = (Wallet) this.session.getObject(this.walletHandle);
+            if (previous.getCzkAvailable() != wallet.getCzkAvailable() ||
+                    previous.getCzkInvested() != wallet.getCzkInvested()) {
+                this.session.update(this.walletHandle, wallet);
+                changed.add(this.walletHandle);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Bring the loan facts up to date. Loans that are no longer available are deleted, new loans inserted and
+     * loans that changed are updated.
+     *
+     * @param availableLoans Loans currently available.
+     */
+    private void updateLoans(final List<Loan> availableLoans) {
+        final Set<Integer> availableIds = new HashSet<>(availableLoans.size());
+        for (final Loan loan : availableLoans) {
+            final int id = loan.getId();
+            availableIds.add(id);
+            final Loan previous = this.loans.put(id, loan);
+            if (previous == null) {
+                this.loanHandles.put(id, this.session.insert(new ProposedLoan(loan)));
+            } else if (previous != loan) {
+                this.reevaluateLoan(id, loan);
+            }
+        }
+        final Iterator<Map.Entry<Integer, FactHandle>> handles = this.loanHandles.entrySet().iterator();
+        while (handles.hasNext()) {
+            final Map.Entry<Integer, FactHandle> e = handles.next();
+            final int id = e.getKey();
+            if (!availableIds.contains(id)) {
+                this.deleteAcceptedLoans(a -> a.getId() == id);
+                this.portfolioDependencies.remove(id);
+                this.session.delete(e.getValue());
+                this.loans.remove(id);
+                handles.remove();
+            }
+        }
+    }
+
+    /**
+     * Evaluate the loans.
+     *
+     * @param availableLoans Loans to be evaluated for acceptability.
+     * @param portfolio Aggregation of information as to the user's current portfolio.
+     * @return Result of the evaluation, independent of any further evaluations.
+     */
+    public Evaluation evaluate(final List<Loan> availableLoans, final PortfolioOverview portfolio) {
+        IncrementalSession.LOGGER.trace("Started matching loans.");
+        final Set<FactHandle> changed = this.updatePortfolio(portfolio);
+        final List<Integer> affected = this.portfolioDependencies.entrySet().stream()
+                .filter(e -> !Collections.disjoint(e.getValue(), changed))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        affected.forEach(id -> this.reevaluateLoan(id, this.loans.get(id)));
+        this.reevaluatedLoans = affected.size();
+        this.updateLoans(availableLoans);
+        IncrementalSession.LOGGER.trace("Facts updated in session.");
+        this.session.fireAllRules();
+        IncrementalSession.LOGGER.trace("Drools finished.");
+        final List<AcceptedLoan> accepted = new ArrayList<>(this.acceptedLoans.values());
+        // results in the order of decreasing priority
+        accepted.sort((a, b) -> Integer.compare(b.getPriority(), a.getPriority()));
+        final List<Loan> matchingLoans = new ArrayList<>(accepted.size());
+        final int[] recommendedAmounts = new int[accepted.size()];
+        for (int i = 0; i < recommendedAmounts.length; i++) {
+            final AcceptedLoan l = accepted.get(i);
+            matchingLoans.add(this.matchLoan(l));
+            recommendedAmounts[i] = l.getAmount();
+        }
+        IncrementalSession.LOGGER.trace("Loans matched.");
+        return new Evaluation(Collections.unmodifiableList(matchingLoans), recommendedAmounts);
+    }
+
+    /**
+     * @return How many of the loans already known to the last {@link #evaluate(List, PortfolioOverview)} were
+     * evaluated again from scratch because the portfolio facts that their rules matched had changed.
+     */
+    int getReevaluatedLoans() {
+        return this.reevaluatedLoans;
+    }
+
+    /**
+     * Release the resources held by the session. The session may no longer be used afterwards.
+     */
+    public void dispose() {
+        this.session.dispose();
+    }
+
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Optional;
+import java.util.function.Function;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.github.triceo.robozonky.remote.Rating;
+import com.github.triceo.robozonky.strategy.rules.facts.AcceptedLoan;
+import com.github.triceo.robozonky.strategy.rules.facts.ProposedLoan;
+import com.github.triceo.robozonky.strategy.rules.facts.RatingShare;
+import com.github.triceo.robozonky.strategy.rules.facts.Wallet;
+import org.drools.core.util.Drools;
+import org.drools.core.util.DroolsStreamUtils;
+import org.kie.api.KieBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the most recently compiled decision table on disk, so that it need not be compiled again on the next start.
+ * Cached rules are only used when the decision table, the Drools version and the facts are all the same as when they
+ * were compiled. Otherwise they are compiled anew and replace the cached ones.
+ *
+ * The cache is kept next to the decision table, where nobody may write who could not already change the rules. Since
+ * reading it means deserializing Java objects, the cached bytes are additionally signed with a secret only readable by
+ * the user, and never deserialized unless the signature matches.
+ */
+class KieBaseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KieBaseCache.class);
+
+    static final File DEFAULT_SECRET_FILE =
+            new File(System.getProperty("user.home"), ".robozonky" + File.separator + "kbase.secret");
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int SECRET_LENGTH = 32;
+    private static final Class<?>[] FACTS =
+            new Class<?>[] {AcceptedLoan.class, ProposedLoan.class, RatingShare.class, Wallet.class, Rating.class};
+    private static final String FACTS_VERSION = KieBaseCache.calculateFactsVersion();
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    static String sha256(final byte[]... contents) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (final byte[] content : contents) {
+                digest.update(content);
+            }
+            return KieBaseCache.toHex(digest.digest());
+        } catch (final NoSuchAlgorithmException ex) { // every JVM is required to support SHA-256
+            throw new IllegalStateException("Should not happen.", ex);
+        }
+    }
+
+    private static String hmac(final byte[] secret, final byte[] content) {
+        try {
+            final Mac mac = Mac.getInstance(KieBaseCache.MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, KieBaseCache.MAC_ALGORITHM));
+            return KieBaseCache.toHex(mac.doFinal(content));
+        } catch (final NoSuchAlgorithmException | InvalidKeyException ex) { // every JVM is required to support it
+            throw new IllegalStateException("Should not happen.", ex);
+        }
+    }
+
+    private static void replace(final Path source, final Path target) throws IOException {
+        try { // readers must never see a partially written file
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String calculateFactsVersion() {
+        final byte[][] classes = new byte[KieBaseCache.FACTS.length][];
+        for (int i = 0; i < classes.length; i++) {
+            final Class<?> fact = KieBaseCache.FACTS[i];
+            try (final InputStream is = fact.getResourceAsStream(fact.getSimpleName() + ".class")) {
+                final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = is.read(buffer)) >= 0) {
+                    os.write(buffer, 0, read);
+                }
+                classes[i] = os.toByteArray();
+            } catch (final IOException ex) {
+                throw new IllegalStateException("Should not happen.", ex);
+            }
+        }
+        final String version = KieBaseCache.class.getPackage().getImplementationVersion();
+        return (version == null ? "" : version + '+') + KieBaseCache.sha256(classes).substring(0, 16);
+    }
+
+    /**
+     * Identify the fact classes that the rules are compiled against. Rules compiled against different fact classes
+     * may fail in all sorts of ways when loaded, even if the Drools version is the same.
+     *
+     * @return Changes whenever RoboZonky is upgraded, or the fact classes change.
+     */
+    static String getFactsVersion() {
+        return KieBaseCache.FACTS_VERSION;
+    }
+
+    /**
+     * Identify the environment that the rules are compiled in. Rules compiled in a different one must not be loaded.
+     *
+     * @return Changes whenever Drools or RoboZonky is upgraded, or the fact classes change.
+     */
+    static String getCompilerKey() {
+        return Drools.getFullVersion() + '@' + KieBaseCache.getFactsVersion();
+    }
+
+    /**
+     * Identify the compiled form of a decision table.
+     *
+     * @param strategyFile Decision table in question.
+     * @return Changes whenever the contents of the decision table change, or when Drools or RoboZonky is upgraded.
+     * @throws IOException When the decision table can not be read.
+     */
+    static String getKey(final File strategyFile) throws IOException {
+        return KieBaseCache.sha256(Files.readAllBytes(strategyFile.toPath())) + '@' + KieBaseCache.getCompilerKey();
+    }
+
+    /**
+     * Write the rules along with the key they were compiled for. Shared by the cache and by {@link StrategyCompiler}.
+     *
+     * @param os Stream to write to. Will not be closed.
+     * @param key Key that {@link #read(InputStream, String, Function)} will require.
+     * @param kieBase Rules to write.
+     * @param signer Calculates the signature of the serialized rules, which the reader will verify.
+     * @throws IOException When the rules could not be written.
+     */
+    static void write(final OutputStream os, final String key, final KieBase kieBase,
+                      final Function<byte[], String> signer) throws IOException {
+        final byte[] serialized = DroolsStreamUtils.streamOut(kieBase); // streaming directly would close the stream
+        final DataOutputStream data = new DataOutputStream(os);
+        data.writeUTF(key);
+        data.writeUTF(signer.apply(serialized));
+        data.writeInt(serialized.length);
+        data.write(serialized);
+        data.flush();
+    }
+
+    /**
+     * Read the rules previously written by {@link #write(OutputStream, String, KieBase, Function)}. The rules are only
+     * deserialized when written for the given key, and when their signature matches.
+     *
+     * @param is Stream to read from. Will not be closed.
+     * @param key Key that the rules must have been written with.
+     * @param signer Same as the one the rules were written with.
+     * @return Empty when the rules were written for a different key.
+     * @throws IOException When the rules could not be read, or their signature does not match.
+     * @throws ClassNotFoundException When the rules refer to classes that do not exist.
+     */
+    static Optional<KieBase> read(final InputStream is, final String key, final Function<byte[], String> signer)
+            throws IOException, ClassNotFoundException {
+        final DataInputStream data = new DataInputStream(is);
+        final String actualKey = data.readUTF();
+        if (!key.equals(actualKey)) {
+            KieBaseCache.LOGGER.debug("Rules written for '{}', expected '{}'.", actualKey, key);
+            return Optional.empty();
+        }
+        final String signature = data.readUTF();
+        final int length = data.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupted rules.");
+        }
+        final byte[] serialized = new byte[length];
+        data.readFully(serialized);
+        final byte[] expected = signer.apply(serialized).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII))) {
+            throw new IOException("Rules have been modified since written.");
+        }
+        return Optional.of((KieBase) DroolsStreamUtils.streamIn(serialized, KieBaseCache.class.getClassLoader()));
+    }
+
+    /**
+     * Read the secret to sign the cached rules with, creating it when there is none yet.
+     *
+     * @param secretFile Where the secret is kept.
+     * @return The secret.
+     * @throws IOException When the secret could neither be read nor created.
+     */
+    static byte[] getSecret(final File secretFile) throws IOException {
+        final Path target = secretFile.getAbsoluteFile().toPath();
+        if (Files.isReadable(target)) {
+            final byte[] secret = Files.readAllBytes(target);
+            if (secret.length == KieBaseCache.SECRET_LENGTH) {
+                return secret;
+            }
+        }
+        final byte[] secret = new byte[KieBaseCache.SECRET_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        Files.createDirectories(target.getParent());
+        // temporary files are only accessible to their owner, where the file system supports it
+        final Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, secret);
+            KieBaseCache.replace(tmp, target);
+            KieBaseCache.LOGGER.debug("Created new secret in '{}'.", target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return secret;
+    }
+
+    /**
+     * @param strategyFile Decision table in question.
+     * @return Cache kept next to the decision table, signed with the secret in {@link #DEFAULT_SECRET_FILE}.
+     */
+    static KieBaseCache forStrategy(final File strategyFile) {
+        final File absolute = strategyFile.getAbsoluteFile();
+        return new KieBaseCache(new File(absolute.getParentFile(), absolute.getName() + ".kbase"),
+                KieBaseCache.DEFAULT_SECRET_FILE);
+    }
+
+    private final File cacheFile, secretFile;
+
+    KieBaseCache(final File cacheFile, final File secretFile) {
+        this.cacheFile = cacheFile;
+        this.secretFile = secretFile;
+    }
+
+    File getCacheFile() {
+        return this.cacheFile;
+    }
+
+    /**
+     * Load the cached rules.
+     *
+     * @param key As returned by {@link #getKey(File)}.
+     * @return Empty when nothing cached, or when cached for a different key.
+     */
+    public Optional<KieBase> get(final String key) {
+        if (!this.cacheFile.canRead()) {
+            return Optional.empty();
+        }
+        try (final InputStream is = new BufferedInputStream(new FileInputStream(this.cacheFile))) {
+            final byte[] secret = KieBaseCache.getSecret(this.secretFile);
+            final Optional<KieBase> result = KieBaseCache.read(is, key, b -> KieBaseCache.hmac(secret, b));
+            if (result.isPresent()) {
+                KieBaseCache.LOGGER.debug("Using cached rules from '{}'.", this.cacheFile.getAbsolutePath());
+            } else {
+                KieBaseCache.LOGGER.debug("Cached rules are stale.");
+            }
+            return result;
+        } catch (final IOException | ClassNotFoundException | RuntimeException ex) {
+            KieBaseCache.LOGGER.debug("Failed reading cached rules, ignoring.", ex);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replace the cached rules. Failure to do so is not fatal, the rules will only be compiled again next time.
+     *
+     * @param key As returned by {@link #getKey(File)}.
+     * @param kieBase Rules compiled for the key.
+     */
+    public void set(final String key, final KieBase kieBase) {
+        final Path target = this.cacheFile.getAbsoluteFile().toPath();
+        try {
+            final byte[] secret = KieBaseCache.getSecret(this.secretFile);
+            final Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                try (final OutputStream os = new BufferedOutputStream(new FileOutputStream(tmp.toFile()))) {
+                    KieBaseCache.write(os, key, kieBase, b -> KieBaseCache.hmac(secret, b));
+                }
+                KieBaseCache.replace(tmp, target);
+                KieBaseCache.LOGGER.debug("Cached rules in '{}'.", target);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (final IOException | RuntimeException ex) {
+            KieBaseCache.LOGGER.debug("Failed caching rules.", ex);
+        }
+    }
+
+}
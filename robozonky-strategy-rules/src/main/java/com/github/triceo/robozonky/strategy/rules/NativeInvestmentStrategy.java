@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.triceo.robozonky.PortfolioOverview;
+import com.github.triceo.robozonky.remote.Loan;
+import com.github.triceo.robozonky.strategy.InvestmentStrategy;
+
+/**
+ * Evaluates a decision table without Drools, using the tables compiled by {@link DecisionTableParser}. Gives the same
+ * results as {@link RuleBasedInvestmentStrategy} would for the same decision table, with loans of the same priority
+ * kept in the order in which they were given.
+ *
+ * Thread-safe. Before {@link #recommendInvestmentAmount(Loan, PortfolioOverview)}, you must call
+ * {@link #getMatchingLoans(List, PortfolioOverview)} from the same thread. Otherwise the strategy does not have the
+ * decision data. Alternatively, {@link #evaluate(List, PortfolioOverview)} returns all the decision data at once.
+ */
+class NativeInvestmentStrategy implements InvestmentStrategy {
+
+    private final DecisionTable acceptance;
+    private final DecisionTable amounts;
+    private final ThreadLocal<Evaluation> lastEvaluation = ThreadLocal.withInitial(() -> Evaluation.EMPTY);
+
+    /**
+     * @param acceptance Which loans to accept, the outcome being their priority.
+     * @param amounts How much to invest into the accepted loans, the outcome being the amount.
+     */
+    NativeInvestmentStrategy(final DecisionTable acceptance, final DecisionTable amounts) {
+        this.acceptance = acceptance;
+        this.amounts = amounts;
+    }
+
+    /**
+     * Evaluate the loans. Apart from the result itself, the only allocations are a handful of arrays per call,
+     * regardless of the number of loans.
+     *
+     * @param availableLoans Loans to be evaluated for acceptability.
+     * @param portfolio Aggregation of information as to the user's current portfolio.
+     * @return Result of the evaluation, private to the caller.
+     */
+    Evaluation evaluate(final List<Loan> availableLoans, final PortfolioOverview portfolio) {
+        final double[] facts = DecisionTable.toArray(portfolio);
+        // decreasing priority in the upper half, index of the loan in the lower half; sorting sorts by both
+        final long[] accepted = new long[availableLoans.size()];
+        int acceptedCount = 0;
+        for (int i = 0; i < accepted.length; i++) {
+            final int row = this.acceptance.match(availableLoans.get(i), facts);
+            if (row >= 0) {
+                accepted[acceptedCount++] = (-(long) this.acceptance.getValue(row) << 32) | i;
+            }
+        }
+        Arrays.sort(accepted, 0, acceptedCount);
+        final List<Loan> matchingLoans = new ArrayList<>(acceptedCount);
+        final int[] recommendedAmounts = new int[acceptedCount];
+        for (int i = 0; i < acceptedCount; i++) {
+            final Loan loan = availableLoans.get((int) accepted[i]);
+            matchingLoans.add(loan);
+            final int row = this.amounts.match(loan, facts);
+            recommendedAmounts[i] = row < 0 ? 0 : this.amounts.getValue(row);
+        }
+        return new Evaluation(Collections.unmodifiableList(matchingLoans), recommendedAmounts);
+    }
+
+    @Override
+    public List<Loan> getMatchingLoans(final List<Loan> availableLoans, final PortfolioOverview portfolio) {
+        final Evaluation result = this.evaluate(availableLoans, portfolio);
+        this.lastEvaluation.set(result);
+        return result.getMatchingLoans();
+    }
+
+    /**
+     * Does not actually do anything. Only returns a result that had previously been calculated when
+     * {@link #getMatchingLoans(List, PortfolioOverview)} was called from the same thread.
+     *
+     * @param loan Loan in question.
+     * @param portfolio Aggregation of information as to the user's current portfolio.
+     * @return How much should be invested into the loan.
+     */
+    @Override
+    public int recommendInvestmentAmount(final Loan loan, final PortfolioOverview portfolio) {
+        return this.lastEvaluation.get().getRecommendedAmount(loan);
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.io.File;
+import java.util.Optional;
+
+import com.github.triceo.robozonky.strategy.InvestmentStrategy;
+import com.github.triceo.robozonky.strategy.InvestmentStrategyParseException;
+import com.github.triceo.robozonky.strategy.InvestmentStrategyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluates simple decision tables without Drools, which loads much faster and evaluates loans much faster than the
+ * rules would. See {@link DecisionTableParser} for what makes a decision table simple. All other decision tables are
+ * passed to {@link RuleBasedInvestmentStrategyService}. Supports XLS and XLSX as decision table file formats.
+ */
+public class NativeInvestmentStrategyService implements InvestmentStrategyService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeInvestmentStrategyService.class);
+
+    private final InvestmentStrategyService fallback;
+
+    NativeInvestmentStrategyService(final InvestmentStrategyService fallback) {
+        this.fallback = fallback;
+    }
+
+    public NativeInvestmentStrategyService() {
+        this(new RuleBasedInvestmentStrategyService());
+    }
+
+    @Override
+    public InvestmentStrategy parse(final File strategyFile) throws InvestmentStrategyParseException {
+        final Optional<NativeInvestmentStrategy> strategy = DecisionTableParser.parse(strategyFile);
+        if (strategy.isPresent()) {
+            NativeInvestmentStrategyService.LOGGER.debug("Decision table will be evaluated without Drools.");
+            return strategy.get();
+        }
+        NativeInvestmentStrategyService.LOGGER.debug("Decision table will be evaluated by Drools.");
+        return this.fallback.parse(strategyFile);
+    }
+
+    @Override
+    public boolean isSupported(final File strategyFile) {
+        return strategyFile.getAbsolutePath().endsWith(".xls") || strategyFile.getAbsolutePath().endsWith(".xlsx");
+    }
+
+}
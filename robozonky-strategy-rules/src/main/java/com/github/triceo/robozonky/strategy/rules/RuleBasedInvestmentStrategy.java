@@ -16,100 +16,114 @@
 
 package com.github.triceo.robozonky.strategy.rules;
 
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
 
 import com.github.triceo.robozonky.PortfolioOverview;
 import com.github.triceo.robozonky.remote.Loan;
-import com.github.triceo.robozonky.remote.Rating;
 import com.github.triceo.robozonky.strategy.InvestmentStrategy;
-import com.github.triceo.robozonky.strategy.rules.facts.AcceptedLoan;
-import com.github.triceo.robozonky.strategy.rules.facts.ProposedLoan;
-import com.github.triceo.robozonky.strategy.rules.facts.RatingShare;
-import com.github.triceo.robozonky.strategy.rules.facts.Wallet;
-import org.kie.api.runtime.KieContainer;
-import org.kie.api.runtime.KieSession;
+import org.kie.api.KieBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This strategy implements evaluation using a Drools decision table. See http://www.drools.org/
  *
+ * Thread-safe. Evaluations run in a bounded pool of {@link IncrementalSession}s, so that as many of them can run in
+ * parallel as there are sessions. Sessions are only created when an evaluation finds none idle, so the pool only
+ * grows to its full size under that much concurrency. Callers waiting for a session block until one is returned to the
+ * pool. Sessions that fail are never returned, a new one is created in their place when next needed.
+ *
  * Before {@link #recommendInvestmentAmount(Loan, PortfolioOverview)}, you must call
- * {@link #getMatchingLoans(List, PortfolioOverview)}. Otherwise the strategy does not have the decision data.
+ * {@link #getMatchingLoans(List, PortfolioOverview)} from the same thread. Otherwise the strategy does not have the
+ * decision data. Alternatively, {@link #evaluate(List, PortfolioOverview)} returns all the decision data at once.
  */
 class RuleBasedInvestmentStrategy implements InvestmentStrategy {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RuleBasedInvestmentStrategy.class);
 
-    private static Loan matchLoan(final AcceptedLoan l, final List<Loan> loans) {
-        for (final Loan loan: loans) {
-            if (loan.getId() == l.getId()) {
-                return loan;
-            }
-        }
-        throw new IllegalStateException("Could not find matching loan. Should not have happened.");
+    private final KieBase kieBase;
+    private final Deque<IncrementalSession> sessions = new ConcurrentLinkedDeque<>();
+    private final Semaphore permits;
+    private final ThreadLocal<Evaluation> lastEvaluation = ThreadLocal.withInitial(() -> Evaluation.EMPTY);
+
+    RuleBasedInvestmentStrategy(final KieBase kieBase, final int poolSize) {
+        this.kieBase = kieBase;
+        this.permits = new Semaphore(poolSize);
+        RuleBasedInvestmentStrategy.LOGGER.debug("Will use up to {} rule sessions.", poolSize);
     }
 
-    private final KieContainer kieContainer;
-    private final Map<Loan, Integer> recommendedAmounts = new HashMap<>();
+    RuleBasedInvestmentStrategy(final KieBase kieBase) {
+        this(kieBase, Runtime.getRuntime().availableProcessors());
+    }
+
+    private IncrementalSession borrowSession() {
+        try {
+            this.permits.acquire();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for rule session.", ex);
+        }
+        // most recently used session has the facts closest to the current ones, and will have the least to update
+        final IncrementalSession session = this.sessions.pollFirst();
+        if (session != null) {
+            return session;
+        }
+        try { // none idle, yet fewer than the maximum exist
+            RuleBasedInvestmentStrategy.LOGGER.trace("Creating rule session.");
+            return new IncrementalSession(this.kieBase);
+        } catch (final Throwable ex) {
+            this.permits.release();
+            throw ex;
+        }
+    }
 
-    RuleBasedInvestmentStrategy(final KieContainer kieContainer) {
-        this.kieContainer = kieContainer;
+    /**
+     * Evaluate the loans in one of the pooled sessions.
+     *
+     * @param availableLoans Loans to be evaluated for acceptability.
+     * @param portfolio Aggregation of information as to the user's current portfolio.
+     * @return Result of the evaluation, private to the caller.
+     */
+    Evaluation evaluate(final List<Loan> availableLoans, final PortfolioOverview portfolio) {
+        final IncrementalSession session = this.borrowSession();
+        try {
+            final Evaluation result = session.evaluate(availableLoans, portfolio);
+            this.sessions.addFirst(session);
+            return result;
+        } catch (final Throwable ex) { // the facts in the session can no longer be trusted, whatever the failure
+            RuleBasedInvestmentStrategy.LOGGER.debug("Discarding rule session.", ex);
+            try {
+                session.dispose();
+            } catch (final RuntimeException disposalEx) {
+                RuleBasedInvestmentStrategy.LOGGER.debug("Failed disposing of rule session.", disposalEx);
+            }
+            throw ex;
+        } finally {
+            this.permits.release();
+        }
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public synchronized List<Loan> getMatchingLoans(final List<Loan> availableLoans,
-                                                    final PortfolioOverview portfolio) {
-        this.recommendedAmounts.clear();
-        RuleBasedInvestmentStrategy.LOGGER.trace("Started matching loans.");
-        final KieSession session = this.kieContainer.newKieSession();
-        // insert facts into session
-        availableLoans.stream().map(ProposedLoan::new).forEach(session::insert);
-        Arrays.stream(Rating.values())
-                .map(r -> new RatingShare(r, portfolio.getShareOnInvestment(r)))
-                .forEach(session::insert);
-        session.insert(new Wallet(portfolio.getCzkAvailable(), portfolio.getCzkInvested()));
-        // reason over facts and process results
-        RuleBasedInvestmentStrategy.LOGGER.trace("Facts inserted into session.");
-        session.fireAllRules();
-        RuleBasedInvestmentStrategy.LOGGER.trace("Drools finished.");
-        final Collection<AcceptedLoan> result =
-                (Collection<AcceptedLoan>)session.getObjects(o -> o instanceof AcceptedLoan);
-        session.dispose();
-        RuleBasedInvestmentStrategy.LOGGER.trace("Session disposed.");
-        final Map<AcceptedLoan, Loan> map = result.stream()
-                .collect(Collectors.toMap(Function.identity(),
-                        l -> RuleBasedInvestmentStrategy.matchLoan(l, availableLoans)));
-        map.forEach((fake, actual) -> this.recommendedAmounts.put(actual, fake.getAmount()));
-        RuleBasedInvestmentStrategy.LOGGER.trace("Found recommended amounts.");
-        // return results in the order of decreasing priority
-        final List<Loan> finalResult = result.stream()
-                .sorted((a, b) -> Integer.compare(b.getPriority(), a.getPriority()))
-                .map(map::get)
-                .collect(Collectors.toList());
-        RuleBasedInvestmentStrategy.LOGGER.trace("Loans matched.");
-        return finalResult;
+    public List<Loan> getMatchingLoans(final List<Loan> availableLoans, final PortfolioOverview portfolio) {
+        final Evaluation result = this.evaluate(availableLoans, portfolio);
+        this.lastEvaluation.set(result);
+        return result.getMatchingLoans();
     }
 
     /**
      * Does not actually do anything. Only returns a result that had previously been calculated when
-     * {@link #getMatchingLoans(List, PortfolioOverview)} was called.
+     * {@link #getMatchingLoans(List, PortfolioOverview)} was called from the same thread.
      *
      * @param loan Loan in question.
      * @param portfolio Aggregation of information as to the user's current portfolio.
      * @return How much should be invested into the loan.
      */
     @Override
-    public synchronized int recommendInvestmentAmount(final Loan loan, final PortfolioOverview portfolio) {
-        final Integer result = this.recommendedAmounts.get(loan);
-        return (result == null) ? 0 : result;
+    public int recommendInvestmentAmount(final Loan loan, final PortfolioOverview portfolio) {
+        return this.lastEvaluation.get().getRecommendedAmount(loan);
     }
 
 }
@@ -17,11 +17,15 @@
 package com.github.triceo.robozonky.strategy.rules;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 import com.github.triceo.robozonky.strategy.InvestmentStrategy;
 import com.github.triceo.robozonky.strategy.InvestmentStrategyParseException;
 import com.github.triceo.robozonky.strategy.InvestmentStrategyService;
+import org.kie.api.KieBase;
 import org.kie.api.KieServices;
 import org.kie.api.builder.KieBuilder;
 import org.kie.api.builder.KieFileSystem;
@@ -34,15 +38,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Parses and loads a Drools-based decision table. Supports XLS and XLSX as decision table file formats.
+ * Parses and loads a Drools-based decision table. Supports XLS and XLSX as decision table file formats. Compiling the
+ * decision table is expensive, therefore the result is cached on disk next to the decision table and reused as long
+ * as the decision table does not change. Alternatively, decision tables compiled ahead of time by
+ * {@link StrategyCompiler} are loaded from JAR files, without any compilation at all.
  */
 public class RuleBasedInvestmentStrategyService implements InvestmentStrategyService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RuleBasedInvestmentStrategyService.class);
     private static final ReleaseId RELEASE_ID = KieServices.Factory.get().getRepository().getDefaultReleaseId();
 
-    @Override
-    public InvestmentStrategy parse(final File strategyFile) throws InvestmentStrategyParseException {
+    private final Function<File, KieBaseCache> caches;
+
+    RuleBasedInvestmentStrategyService(final KieBaseCache cache) {
+        this.caches = strategyFile -> cache;
+    }
+
+    public RuleBasedInvestmentStrategyService() {
+        this.caches = KieBaseCache::forStrategy;
+    }
+
+    static KieBase compile(final File strategyFile) throws InvestmentStrategyParseException {
         RuleBasedInvestmentStrategyService.LOGGER.trace("Parsing '{}' started.", strategyFile);
         final KieServices kieServices = KieServices.Factory.get();
         final KieModuleModel kieModuleModel = kieServices.newKieModuleModel();
@@ -58,12 +74,38 @@ public class RuleBasedInvestmentStrategyService implements InvestmentStrategySer
             throw new InvestmentStrategyParseException("Failed parsing decision table. Reason: " + messages);
         }
         final KieContainer container = kieServices.newKieContainer(RuleBasedInvestmentStrategyService.RELEASE_ID);
-        return new RuleBasedInvestmentStrategy(container);
+        return container.getKieBase();
+    }
+
+    private static boolean isPrecompiled(final File strategyFile) {
+        return strategyFile.getAbsolutePath().endsWith(".jar");
+    }
+
+    @Override
+    public InvestmentStrategy parse(final File strategyFile) throws InvestmentStrategyParseException {
+        if (RuleBasedInvestmentStrategyService.isPrecompiled(strategyFile)) {
+            return new RuleBasedInvestmentStrategy(StrategyCompiler.load(strategyFile));
+        }
+        final String key;
+        try {
+            key = KieBaseCache.getKey(strategyFile);
+        } catch (final IOException ex) {
+            throw new InvestmentStrategyParseException("Failed reading decision table.", ex);
+        }
+        final KieBaseCache cache = this.caches.apply(strategyFile);
+        final Optional<KieBase> cached = cache.get(key);
+        if (cached.isPresent()) {
+            return new RuleBasedInvestmentStrategy(cached.get());
+        }
+        final KieBase kieBase = RuleBasedInvestmentStrategyService.compile(strategyFile);
+        cache.set(key, kieBase);
+        return new RuleBasedInvestmentStrategy(kieBase);
     }
 
     @Override
     public boolean isSupported(final File strategyFile) {
-        return strategyFile.getAbsolutePath().endsWith(".xls") || strategyFile.getAbsolutePath().endsWith(".xlsx");
+        return strategyFile.getAbsolutePath().endsWith(".xls") || strategyFile.getAbsolutePath().endsWith(".xlsx") ||
+                RuleBasedInvestmentStrategyService.isPrecompiled(strategyFile);
     }
 
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import com.github.triceo.robozonky.strategy.InvestmentStrategyParseException;
+import org.drools.core.util.Drools;
+import org.kie.api.KieBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles a decision table ahead of time into a JAR file, which {@link RuleBasedInvestmentStrategyService} can then
+ * load without generating and compiling any rules on startup. The rules are stored the same way as in
+ * {@link KieBaseCache}, keyed by {@link KieBaseCache#getCompilerKey()}, so that the JAR can only be loaded with the
+ * same versions of Drools and RoboZonky that it was compiled with.
+ *
+ * Usage: <code>StrategyCompiler strategy.xlsx strategy.jar</code>
+ */
+public class StrategyCompiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StrategyCompiler.class);
+    private static final String KIEBASE_ENTRY = "strategy.kbase";
+    private static final Attributes.Name DROOLS_VERSION = new Attributes.Name("Drools-Version");
+    private static final Attributes.Name FACTS_VERSION = new Attributes.Name("RoboZonky-Facts-Version");
+    private static final Attributes.Name STRATEGY_SOURCE = new Attributes.Name("RoboZonky-Strategy-Source");
+
+    /**
+     * Compile the decision table into a JAR file.
+     *
+     * @param strategyFile Decision table.
+     * @param target JAR file to be created or overwritten.
+     * @throws InvestmentStrategyParseException When the decision table could not be compiled.
+     * @throws IOException When the JAR file could not be written.
+     */
+    public static void compile(final File strategyFile, final File target)
+            throws InvestmentStrategyParseException, IOException {
+        final KieBase kieBase = RuleBasedInvestmentStrategyService.compile(strategyFile);
+        final Manifest manifest = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.put(StrategyCompiler.DROOLS_VERSION, Drools.getFullVersion());
+        attributes.put(StrategyCompiler.FACTS_VERSION, KieBaseCache.getFactsVersion());
+        attributes.put(StrategyCompiler.STRATEGY_SOURCE, strategyFile.getName());
+        try (final JarOutputStream jar = new JarOutputStream(new FileOutputStream(target), manifest)) {
+            jar.putNextEntry(new JarEntry(StrategyCompiler.KIEBASE_ENTRY));
+            KieBaseCache.write(jar, KieBaseCache.getCompilerKey(), kieBase, KieBaseCache::sha256);
+            jar.closeEntry();
+        }
+    }
+
+    /**
+     * Load rules from a JAR file previously created by {@link #compile(File, File)}.
+     *
+     * @param jarFile JAR file in question.
+     * @return Compiled rules.
+     * @throws InvestmentStrategyParseException When the file is not a compiled strategy, or when it was compiled
+     * with a different version of Drools or RoboZonky.
+     */
+    public static KieBase load(final File jarFile) throws InvestmentStrategyParseException {
+        try (final JarFile jar = new JarFile(jarFile)) {
+            final Manifest manifest = jar.getManifest();
+            final JarEntry entry = jar.getJarEntry(StrategyCompiler.KIEBASE_ENTRY);
+            if (manifest == null || entry == null) {
+                throw new InvestmentStrategyParseException("Not a compiled strategy: " + jarFile.getAbsolutePath());
+            }
+            final Attributes attributes = manifest.getMainAttributes();
+            try (final InputStream is = jar.getInputStream(entry)) {
+                final Optional<KieBase> result =
+                        KieBaseCache.read(is, KieBaseCache.getCompilerKey(), KieBaseCache::sha256);
+                if (!result.isPresent()) { // the manifest only says what the difference is, the entry decides
+                    throw new InvestmentStrategyParseException("Strategy compiled with Drools " +
+                            attributes.getValue(StrategyCompiler.DROOLS_VERSION) + " and facts version " +
+                            attributes.getValue(StrategyCompiler.FACTS_VERSION) + ", but Drools " +
+                            Drools.getFullVersion() + " and facts version " + KieBaseCache.getFactsVersion() +
+                            " are used. Please compile the strategy again.");
+                }
+                StrategyCompiler.LOGGER.debug("Loaded strategy compiled from '{}'.",
+                        attributes.getValue(StrategyCompiler.STRATEGY_SOURCE));
+                return result.get();
+            }
+        } catch (final IOException | ClassNotFoundException | ClassCastException ex) {
+            throw new InvestmentStrategyParseException("Failed reading compiled strategy.", ex);
+        }
+    }
+
+    public static void main(final String... args) {
+        if (args.length != 2) {
+            StrategyCompiler.LOGGER.error("Usage: StrategyCompiler <decision table> <target JAR>");
+            System.exit(1);
+        }
+        final File target = new File(args[1]);
+        try {
+            StrategyCompiler.compile(new File(args[0]), target);
+            StrategyCompiler.LOGGER.info("Strategy compiled into '{}'.", target.getAbsolutePath());
+        } catch (final InvestmentStrategyParseException | IOException ex) {
+            StrategyCompiler.LOGGER.error("Failed compiling strategy.", ex);
+            System.exit(2);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+import org.assertj.core.api.Assertions;
+import org.drools.template.parser.DataListener;
+import org.junit.Test;
+
+public class DecisionTableParserTest {
+
+    private static final String[][] HEADER = new String[][] {
+            {"RuleSet", "example"},
+            {},
+            {"RuleTable Accept"},
+            {"CONDITION", "CONDITION", "ACTION"},
+            {"$l: ProposedLoan", "RatingShare"},
+            {"rating == Rating.$1", "rating == $l.rating, share < $1",
+                    "AcceptedLoan a = new AcceptedLoan(); a.setId($l.getId()); a.setAmount(0); a.setPriority($1); " +
+                            "insert (a);"},
+            {"Rating", "Share", "Priority"}
+    };
+
+    private static final File FILE =
+            new File("src/test/resources/com/github/triceo/robozonky/strategy/rules/ExampleStrategy.xlsx");
+
+    private static Optional<NativeInvestmentStrategy> parse(final String[]... rows) {
+        final DecisionTableParser parser = new DecisionTableParser();
+        parser.startSheet("Sheet1");
+        int rowNumber = 0;
+        for (final String[][] table : new String[][][] {DecisionTableParserTest.HEADER, rows}) {
+            for (final String[] row : table) {
+                parser.newRow(rowNumber, row.length);
+                for (int column = 0; column < row.length; column++) {
+                    parser.newCell(rowNumber, column, row[column], DataListener.NON_MERGED);
+                }
+                rowNumber++;
+            }
+        }
+        parser.finishSheet();
+        return parser.getResult();
+    }
+
+    @Test
+    public void fileNotModified() throws IOException {
+        final File file = File.createTempFile("robozonky-", ".xlsx");
+        Files.copy(DecisionTableParserTest.FILE.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        final byte[] original = Files.readAllBytes(file.toPath());
+        Assertions.assertThat(DecisionTableParser.parse(file)).isPresent();
+        Assertions.assertThat(Files.readAllBytes(file.toPath())).isEqualTo(original);
+    }
+
+    @Test
+    public void supported() {
+        Assertions.assertThat(DecisionTableParserTest.parse(new String[] {"A", "0.1", "1"},
+                new String[] {"B", null, "2"})).isPresent();
+    }
+
+    @Test
+    public void ratingRequired() {
+        Assertions.assertThat(DecisionTableParserTest.parse(new String[] {null, "0.1", "1"})).isEmpty();
+    }
+
+    @Test
+    public void ratingUsedOnce() {
+        Assertions.assertThat(DecisionTableParserTest.parse(new String[] {"A", "0.1", "1"},
+                new String[] {"A", "0.2", "2"})).isEmpty();
+    }
+
+    @Test
+    public void unknownRating() {
+        Assertions.assertThat(DecisionTableParserTest.parse(new String[] {"X", "0.1", "1"})).isEmpty();
+    }
+
+    @Test
+    public void wrongNumberOfValues() {
+        Assertions.assertThat(DecisionTableParserTest.parse(new String[] {"A", "0.1,0.2", "1"})).isEmpty();
+    }
+
+    @Test
+    public void notANumber() {
+        Assertions.assertThat(DecisionTableParserTest.parse(new String[] {"A", "$l.amount", "1"})).isEmpty();
+    }
+
+    @Test
+    public void unknownKeyword() {
+        Assertions.assertThat(DecisionTableParserTest.parse(new String[] {"A", "0.1", "1"}, new String[] {},
+                new String[] {"RuleTable Other"}, new String[] {"SALIENCE"})).isEmpty();
+    }
+
+    @Test
+    public void unknownProperty() {
+        Assertions.assertThat(DecisionTableParserTest.parse(new String[] {"A", "0.1", "1"}, new String[] {},
+                new String[] {"Sequential", "true"})).isEmpty();
+    }
+
+    @Test
+    public void moreThanOneAcceptingTable() {
+        final String[][] h = DecisionTableParserTest.HEADER;
+        Assertions.assertThat(DecisionTableParserTest.parse(new String[] {"A", "0.1", "1"}, new String[] {},
+                h[2], h[3], h[4], h[5], h[6], new String[] {"B", "0.1", "1"})).isEmpty();
+    }
+
+}
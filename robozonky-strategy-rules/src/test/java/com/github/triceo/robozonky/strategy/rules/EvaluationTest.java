@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.util.Arrays;
+
+import com.github.triceo.robozonky.remote.Loan;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class EvaluationTest {
+
+    private static Loan mockLoan(final int id) {
+        final Loan loan = Mockito.mock(Loan.class);
+        Mockito.when(loan.getId()).thenReturn(id);
+        return loan;
+    }
+
+    @Test
+    public void recommendedAmounts() {
+        final Loan first = EvaluationTest.mockLoan(Integer.MAX_VALUE), second = EvaluationTest.mockLoan(-1),
+                third = EvaluationTest.mockLoan(0), unknown = EvaluationTest.mockLoan(1);
+        final Evaluation e = new Evaluation(Arrays.asList(first, second, third), new int[] {200, 400, -1});
+        Assertions.assertThat(e.getMatchingLoans()).containsExactly(first, second, third);
+        Assertions.assertThat(e.getRecommendedAmount(first)).isEqualTo(200);
+        Assertions.assertThat(e.getRecommendedAmount(second)).isEqualTo(400);
+        Assertions.assertThat(e.getRecommendedAmount(third)).isEqualTo(-1);
+        Assertions.assertThat(e.getRecommendedAmount(unknown)).isZero();
+        // another instance of the same loan, such as when retrieved again from the API
+        Assertions.assertThat(e.getRecommendedAmount(EvaluationTest.mockLoan(-1))).isEqualTo(400);
+    }
+
+    @Test
+    public void empty() {
+        Assertions.assertThat(Evaluation.EMPTY.getMatchingLoans()).isEmpty();
+        Assertions.assertThat(Evaluation.EMPTY.getRecommendedAmount(EvaluationTest.mockLoan(1))).isZero();
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import com.github.triceo.robozonky.strategy.InvestmentStrategyParseException;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.kie.api.KieBase;
+
+public class KieBaseCacheTest {
+
+    private static final File FILE =
+            new File("src/test/resources/com/github/triceo/robozonky/strategy/rules/ExampleStrategy.xlsx");
+
+    private static File newFile() throws IOException {
+        final File f = File.createTempFile("robozonky-", ".kbase");
+        f.delete();
+        return f;
+    }
+
+    private static KieBaseCache newCache(final File cacheFile) throws IOException {
+        return new KieBaseCache(cacheFile, KieBaseCacheTest.newFile());
+    }
+
+    @Test
+    public void keyFollowsContents() throws IOException {
+        final String key = KieBaseCache.getKey(KieBaseCacheTest.FILE);
+        final File f = KieBaseCacheTest.newFile();
+        Files.copy(KieBaseCacheTest.FILE.toPath(), f.toPath());
+        Assertions.assertThat(KieBaseCache.getKey(f)).isEqualTo(key);
+        Files.write(f.toPath(), Collections.singleton("different"));
+        Assertions.assertThat(KieBaseCache.getKey(f)).isNotEqualTo(key);
+    }
+
+    @Test
+    public void keyFollowsFacts() throws IOException {
+        Assertions.assertThat(KieBaseCache.getFactsVersion()).isNotEmpty();
+        Assertions.assertThat(KieBaseCache.getKey(KieBaseCacheTest.FILE))
+                .endsWith('@' + KieBaseCache.getFactsVersion());
+    }
+
+    @Test
+    public void emptyWhenMissing() throws IOException {
+        Assertions.assertThat(KieBaseCacheTest.newCache(KieBaseCacheTest.newFile()).get("key")).isEmpty();
+    }
+
+    @Test
+    public void emptyWhenStale() throws IOException, InvestmentStrategyParseException {
+        final KieBaseCache cache = KieBaseCacheTest.newCache(KieBaseCacheTest.newFile());
+        final KieBase kieBase = RuleBasedInvestmentStrategyService.compile(KieBaseCacheTest.FILE);
+        cache.set("key", kieBase);
+        Assertions.assertThat(cache.get("key")).isPresent();
+        Assertions.assertThat(cache.get("other")).isEmpty();
+    }
+
+    @Test
+    public void emptyWhenCorrupted() throws IOException {
+        final File f = KieBaseCacheTest.newFile();
+        final KieBaseCache cache = KieBaseCacheTest.newCache(f);
+        Files.write(f.toPath(), Collections.singleton("corrupted"));
+        Assertions.assertThat(cache.get("corrupted")).isEmpty();
+    }
+
+    @Test
+    public void emptyWhenTampered() throws IOException, InvestmentStrategyParseException {
+        final File f = KieBaseCacheTest.newFile();
+        final KieBaseCache cache = KieBaseCacheTest.newCache(f);
+        cache.set("key", RuleBasedInvestmentStrategyService.compile(KieBaseCacheTest.FILE));
+        final byte[] contents = Files.readAllBytes(f.toPath());
+        contents[contents.length - 1] ^= 1; // within the serialized rules
+        Files.write(f.toPath(), contents);
+        Assertions.assertThat(cache.get("key")).isEmpty();
+    }
+
+    @Test
+    public void emptyWhenSignedWithDifferentSecret() throws IOException, InvestmentStrategyParseException {
+        final File f = KieBaseCacheTest.newFile();
+        KieBaseCacheTest.newCache(f).set("key", RuleBasedInvestmentStrategyService.compile(KieBaseCacheTest.FILE));
+        Assertions.assertThat(KieBaseCacheTest.newCache(f).get("key")).isEmpty();
+    }
+
+    @Test
+    public void secretKept() throws IOException {
+        final File secretFile = new File(KieBaseCacheTest.newFile(), "secret"); // parent does not exist yet
+        final byte[] secret = KieBaseCache.getSecret(secretFile);
+        Assertions.assertThat(secretFile).exists();
+        Assertions.assertThat(KieBaseCache.getSecret(secretFile)).isEqualTo(secret);
+    }
+
+    @Test
+    public void keptNextToStrategy() {
+        final File cacheFile = KieBaseCache.forStrategy(KieBaseCacheTest.FILE).getCacheFile();
+        Assertions.assertThat(cacheFile.getParentFile())
+                .isEqualTo(KieBaseCacheTest.FILE.getAbsoluteFile().getParentFile());
+        Assertions.assertThat(cacheFile.getName()).isEqualTo("ExampleStrategy.xlsx.kbase");
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.github.triceo.robozonky.PortfolioOverview;
+import com.github.triceo.robozonky.remote.Loan;
+import com.github.triceo.robozonky.remote.Rating;
+import com.github.triceo.robozonky.strategy.InvestmentStrategy;
+import com.github.triceo.robozonky.strategy.InvestmentStrategyParseException;
+import com.github.triceo.robozonky.strategy.InvestmentStrategyService;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class NativeInvestmentStrategyServiceTest {
+
+    private static final File FILE =
+            new File("src/test/resources/com/github/triceo/robozonky/strategy/rules/ExampleStrategy.xlsx");
+
+    private static Loan mockLoan(final int id, final Random random) {
+        final Loan loan = Mockito.mock(Loan.class);
+        Mockito.when(loan.getId()).thenReturn(id);
+        Mockito.when(loan.getRating()).thenReturn(Rating.values()[random.nextInt(Rating.values().length)]);
+        Mockito.when(loan.getAmount()).thenReturn((double) random.nextInt(300000));
+        Mockito.when(loan.getTermInMonths()).thenReturn(random.nextInt(84));
+        return loan;
+    }
+
+    private static PortfolioOverview mockPortfolio(final Random random) {
+        final PortfolioOverview portfolio = Mockito.mock(PortfolioOverview.class);
+        Mockito.when(portfolio.getCzkAvailable()).thenReturn(random.nextInt(20000));
+        Mockito.when(portfolio.getCzkInvested()).thenReturn(random.nextInt(200000));
+        for (final Rating r : Rating.values()) {
+            final BigDecimal share = BigDecimal.valueOf(random.nextInt(30), 2);
+            Mockito.when(portfolio.getShareOnInvestment(r)).thenReturn(share);
+        }
+        return portfolio;
+    }
+
+    @Test
+    public void simple() throws InvestmentStrategyParseException {
+        final InvestmentStrategyService fallback = Mockito.mock(InvestmentStrategyService.class);
+        final NativeInvestmentStrategyService s = new NativeInvestmentStrategyService(fallback);
+        Assertions.assertThat(s.isSupported(NativeInvestmentStrategyServiceTest.FILE)).isTrue();
+        final InvestmentStrategy is = s.parse(NativeInvestmentStrategyServiceTest.FILE);
+        Assertions.assertThat(is).isInstanceOf(NativeInvestmentStrategy.class);
+        Mockito.verifyZeroInteractions(fallback);
+        RuleBasedInvestmentStrategyServiceTest.assertEvaluation(is);
+    }
+
+    @Test
+    public void fallsBackToDrools() throws InvestmentStrategyParseException, IOException {
+        final File file = File.createTempFile("robozonky-", ".xlsx");
+        Files.write(file.toPath(), "Not a decision table.".getBytes());
+        final InvestmentStrategyService fallback = Mockito.mock(InvestmentStrategyService.class);
+        final InvestmentStrategy strategy = Mockito.mock(InvestmentStrategy.class);
+        Mockito.when(fallback.parse(Matchers.any())).thenReturn(strategy);
+        final NativeInvestmentStrategyService s = new NativeInvestmentStrategyService(fallback);
+        Assertions.assertThat(s.parse(file)).isSameAs(strategy);
+        Mockito.verify(fallback).parse(file);
+    }
+
+    @Test
+    public void sameAsDrools() throws InvestmentStrategyParseException {
+        final NativeInvestmentStrategy nis = DecisionTableParser.parse(NativeInvestmentStrategyServiceTest.FILE)
+                .orElseThrow(() -> new IllegalStateException("Example strategy not supported."));
+        final RuleBasedInvestmentStrategy rbis = new RuleBasedInvestmentStrategy(
+                RuleBasedInvestmentStrategyService.compile(NativeInvestmentStrategyServiceTest.FILE), 1);
+        final Random random = new Random(0);
+        for (int i = 0; i < 20; i++) {
+            final List<Loan> loans = IntStream.range(0, 50)
+                    .mapToObj(id -> NativeInvestmentStrategyServiceTest.mockLoan(id, random))
+                    .collect(Collectors.toList());
+            final PortfolioOverview portfolio = NativeInvestmentStrategyServiceTest.mockPortfolio(random);
+            final Evaluation expected = rbis.evaluate(loans, portfolio);
+            final Evaluation actual = nis.evaluate(loans, portfolio);
+            // loans of the same priority may come in any order with Drools
+            Assertions.assertThat(actual.getMatchingLoans())
+                    .containsOnlyElementsOf(expected.getMatchingLoans())
+                    .hasSameSizeAs(expected.getMatchingLoans())
+                    .extracting(Loan::getRating)
+                    .containsExactlyElementsOf(expected.getMatchingLoans().stream()
+                            .map(Loan::getRating)
+                            .collect(Collectors.toList()));
+            for (final Loan loan : loans) {
+                Assertions.assertThat(actual.getRecommendedAmount(loan))
+                        .isEqualTo(expected.getRecommendedAmount(loan));
+            }
+        }
+    }
+
+}
@@ -17,6 +17,7 @@
 package com.github.triceo.robozonky.strategy.rules;
 
 import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
@@ -28,6 +29,7 @@ import com.github.triceo.robozonky.strategy.InvestmentStrategy;
 import com.github.triceo.robozonky.strategy.InvestmentStrategyParseException;
 import org.assertj.core.api.Assertions;
 import org.junit.Test;
+import org.mockito.Matchers;
 import org.mockito.Mockito;
 
 public class RuleBasedInvestmentStrategyServiceTest {
@@ -35,12 +37,26 @@ public class RuleBasedInvestmentStrategyServiceTest {
     private static final File FILE =
             new File("src/test/resources/com/github/triceo/robozonky/strategy/rules/ExampleStrategy.xlsx");
 
-    @Test
-    public void simple() throws InvestmentStrategyParseException {
-        final RuleBasedInvestmentStrategyService s = new RuleBasedInvestmentStrategyService();
-        Assertions.assertThat(s.isSupported(RuleBasedInvestmentStrategyServiceTest.FILE)).isTrue();
-        final InvestmentStrategy is = s.parse(RuleBasedInvestmentStrategyServiceTest.FILE);
-        Assertions.assertThat(is).isNotNull();
+    private static final File SECRET_FILE = RuleBasedInvestmentStrategyServiceTest.newSecretFile();
+
+    private static File newSecretFile() {
+        try {
+            return File.createTempFile("robozonky-", ".secret");
+        } catch (final IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static KieBaseCache newCache(final File cacheFile) {
+        cacheFile.delete();
+        return new KieBaseCache(cacheFile, RuleBasedInvestmentStrategyServiceTest.SECRET_FILE);
+    }
+
+    private static KieBaseCache newCache() throws IOException {
+        return RuleBasedInvestmentStrategyServiceTest.newCache(File.createTempFile("robozonky-", ".kbase"));
+    }
+
+    static void assertEvaluation(final InvestmentStrategy is) {
         // let's make up some loans; B will not be accepted, D will be prioritized over A
         final Loan aaaaa = Mockito.mock(Loan.class); // will not be accepted since AAAAA are ignored
         Mockito.when(aaaaa.getId()).thenReturn(1);
@@ -80,4 +96,41 @@ public class RuleBasedInvestmentStrategyServiceTest {
         Assertions.assertThat(is.recommendInvestmentAmount(aa, portfolio)).isZero();
     }
 
+    @Test
+    public void simple() throws InvestmentStrategyParseException, IOException {
+        final RuleBasedInvestmentStrategyService s =
+                new RuleBasedInvestmentStrategyService(RuleBasedInvestmentStrategyServiceTest.newCache());
+        Assertions.assertThat(s.isSupported(RuleBasedInvestmentStrategyServiceTest.FILE)).isTrue();
+        final InvestmentStrategy is = s.parse(RuleBasedInvestmentStrategyServiceTest.FILE);
+        Assertions.assertThat(is).isNotNull();
+        RuleBasedInvestmentStrategyServiceTest.assertEvaluation(is);
+    }
+
+    @Test
+    public void cached() throws InvestmentStrategyParseException, IOException {
+        final File cacheFile = File.createTempFile("robozonky-", ".kbase");
+        final KieBaseCache cache = RuleBasedInvestmentStrategyServiceTest.newCache(cacheFile);
+        new RuleBasedInvestmentStrategyService(cache).parse(RuleBasedInvestmentStrategyServiceTest.FILE);
+        final String key = KieBaseCache.getKey(RuleBasedInvestmentStrategyServiceTest.FILE);
+        Assertions.assertThat(cache.get(key)).isPresent();
+        // a new service, as if on the next start, will evaluate the same with the rules it did not compile
+        final KieBaseCache spy =
+                Mockito.spy(new KieBaseCache(cacheFile, RuleBasedInvestmentStrategyServiceTest.SECRET_FILE));
+        final InvestmentStrategy is = new RuleBasedInvestmentStrategyService(spy)
+                .parse(RuleBasedInvestmentStrategyServiceTest.FILE);
+        Mockito.verify(spy, Mockito.never()).set(Matchers.anyString(), Matchers.any());
+        RuleBasedInvestmentStrategyServiceTest.assertEvaluation(is);
+    }
+
+    @Test
+    public void precompiled() throws InvestmentStrategyParseException, IOException {
+        final File jar = File.createTempFile("robozonky-", ".jar");
+        StrategyCompiler.compile(RuleBasedInvestmentStrategyServiceTest.FILE, jar);
+        final KieBaseCache cache = Mockito.mock(KieBaseCache.class);
+        final RuleBasedInvestmentStrategyService s = new RuleBasedInvestmentStrategyService(cache);
+        Assertions.assertThat(s.isSupported(jar)).isTrue();
+        RuleBasedInvestmentStrategyServiceTest.assertEvaluation(s.parse(jar));
+        Mockito.verifyZeroInteractions(cache);
+    }
+
 }
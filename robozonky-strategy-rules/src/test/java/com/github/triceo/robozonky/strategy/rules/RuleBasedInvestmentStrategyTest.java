@@ -0,0 +1,253 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.github.triceo.robozonky.PortfolioOverview;
+import com.github.triceo.robozonky.remote.Loan;
+import com.github.triceo.robozonky.remote.Rating;
+import com.github.triceo.robozonky.strategy.InvestmentStrategy;
+import com.github.triceo.robozonky.strategy.InvestmentStrategyParseException;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.kie.api.KieBase;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieFileSystem;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class RuleBasedInvestmentStrategyTest {
+
+    private static final File FILE =
+            new File("src/test/resources/com/github/triceo/robozonky/strategy/rules/ExampleStrategy.xlsx");
+
+    private static Loan mockLoan(final int id, final Rating rating, final int termInMonths) {
+        final Loan loan = Mockito.mock(Loan.class);
+        Mockito.when(loan.getId()).thenReturn(id);
+        Mockito.when(loan.getRating()).thenReturn(rating);
+        Mockito.when(loan.getAmount()).thenReturn(50000.0);
+        Mockito.when(loan.getTermInMonths()).thenReturn(termInMonths);
+        return loan;
+    }
+
+    private static PortfolioOverview mockPortfolio(final BigDecimal shareOfAaaa) {
+        final PortfolioOverview portfolio = Mockito.mock(PortfolioOverview.class);
+        Mockito.when(portfolio.getCzkAvailable()).thenReturn(10000);
+        Mockito.when(portfolio.getCzkInvested()).thenReturn(100000);
+        Arrays.stream(Rating.values())
+                .forEach(r -> Mockito.when(portfolio.getShareOnInvestment(r)).thenReturn(BigDecimal.ZERO));
+        Mockito.when(portfolio.getShareOnInvestment(Rating.AAAA)).thenReturn(shareOfAaaa);
+        return portfolio;
+    }
+
+    private static KieBase compile() throws InvestmentStrategyParseException {
+        return RuleBasedInvestmentStrategyService.compile(RuleBasedInvestmentStrategyTest.FILE);
+    }
+
+    private static KieBase compile(final String drl) {
+        final KieServices kieServices = KieServices.Factory.get();
+        final KieFileSystem kfs = kieServices.newKieFileSystem();
+        kfs.write("src/main/resources/accept.drl", drl);
+        kieServices.newKieBuilder(kfs).buildAll();
+        return kieServices.newKieContainer(kieServices.getRepository().getDefaultReleaseId()).getKieBase();
+    }
+
+    @Test
+    public void incrementalEvaluation() throws InvestmentStrategyParseException {
+        final InvestmentStrategy is = new RuleBasedInvestmentStrategy(RuleBasedInvestmentStrategyTest.compile());
+        final Loan aaaa = RuleBasedInvestmentStrategyTest.mockLoan(1, Rating.AAAA, 30);
+        final Loan d = RuleBasedInvestmentStrategyTest.mockLoan(2, Rating.D, 30);
+        final PortfolioOverview portfolio = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        Assertions.assertThat(is.getMatchingLoans(Arrays.asList(aaaa, d), portfolio)).containsExactly(d, aaaa);
+        // loan disappears, portfolio stays the same
+        final PortfolioOverview same = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        Assertions.assertThat(is.getMatchingLoans(Collections.singletonList(aaaa), same)).containsExactly(aaaa);
+        Assertions.assertThat(is.recommendInvestmentAmount(aaaa, same)).isEqualTo(400);
+        Assertions.assertThat(is.recommendInvestmentAmount(d, same)).isZero();
+        // new loan appears
+        final Loan d2 = RuleBasedInvestmentStrategyTest.mockLoan(3, Rating.D, 30);
+        Assertions.assertThat(is.getMatchingLoans(Arrays.asList(aaaa, d2), same)).containsExactly(d2, aaaa);
+        Assertions.assertThat(is.recommendInvestmentAmount(d2, same)).isEqualTo(200);
+        // portfolio changes so that the first loan is no longer acceptable
+        final PortfolioOverview changed = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ONE);
+        Assertions.assertThat(is.getMatchingLoans(Arrays.asList(aaaa, d2), changed)).containsExactly(d2);
+        Assertions.assertThat(is.recommendInvestmentAmount(aaaa, changed)).isZero();
+        // portfolio changes back, and the first loan is acceptable again
+        Assertions.assertThat(is.getMatchingLoans(Arrays.asList(aaaa, d2), same)).containsExactly(d2, aaaa);
+        // loan changes so that it is no longer acceptable
+        final Loan aaaaChanged = RuleBasedInvestmentStrategyTest.mockLoan(1, Rating.AAAA, 50);
+        Assertions.assertThat(is.getMatchingLoans(Arrays.asList(aaaaChanged, d2), same)).containsExactly(d2);
+    }
+
+    @Test
+    public void reevaluatedOnUnrelatedPortfolioChange() {
+        // unlike the example strategy, this rule does not react to accepted loans
+        final String drl = "package com.github.triceo.robozonky.strategy.rules.test;\n" +
+                "import com.github.triceo.robozonky.remote.Rating;\n" +
+                "import com.github.triceo.robozonky.strategy.rules.facts.*;\n" +
+                "rule \"accept\" when\n" +
+                "    $l: ProposedLoan(rating == Rating.AAAA)\n" +
+                "    RatingShare(rating == $l.rating, share <= 0.5)\n" +
+                "then\n" +
+                "    AcceptedLoan a = new AcceptedLoan(); a.setId($l.getId()); a.setAmount(400); insert(a);\n" +
+                "end\n";
+        final RuleBasedInvestmentStrategy is =
+                new RuleBasedInvestmentStrategy(RuleBasedInvestmentStrategyTest.compile(drl), 1);
+        final Loan aaaa = RuleBasedInvestmentStrategyTest.mockLoan(1, Rating.AAAA, 30);
+        final PortfolioOverview portfolio = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        Assertions.assertThat(is.evaluate(Collections.singletonList(aaaa), portfolio).getMatchingLoans())
+                .containsExactly(aaaa);
+        // share of a rating that the rule does not look at changes
+        final PortfolioOverview changed = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        Mockito.when(changed.getShareOnInvestment(Rating.D)).thenReturn(BigDecimal.ONE);
+        Assertions.assertThat(is.evaluate(Collections.singletonList(aaaa), changed).getMatchingLoans())
+                .containsExactly(aaaa);
+    }
+
+    @Test
+    public void walletChangeReevaluatesOnlyLoansThatReadIt() {
+        final String drl = "package com.github.triceo.robozonky.strategy.rules.test;\n" +
+                "import com.github.triceo.robozonky.remote.Rating;\n" +
+                "import com.github.triceo.robozonky.strategy.rules.facts.*;\n" +
+                "rule \"share\" when\n" +
+                "    $l: ProposedLoan(rating == Rating.AAAA)\n" +
+                "    not AcceptedLoan(id == $l.getId())\n" +
+                "    RatingShare(rating == $l.rating, share <= 0.5)\n" +
+                "then\n" +
+                "    AcceptedLoan a = new AcceptedLoan(); a.setId($l.getId()); a.setPriority(3); insert(a);\n" +
+                "end\n" +
+                "rule \"wallet\" when\n" +
+                "    $l: ProposedLoan(rating == Rating.D)\n" +
+                "    not AcceptedLoan(id == $l.getId())\n" +
+                "    Wallet(czkAvailable >= 200)\n" +
+                "then\n" +
+                "    AcceptedLoan a = new AcceptedLoan(); a.setId($l.getId()); a.setPriority(2); insert(a);\n" +
+                "end\n" +
+                "rule \"loan only\" when\n" +
+                "    $l: ProposedLoan(rating == Rating.A)\n" +
+                "    not AcceptedLoan(id == $l.getId())\n" +
+                "then\n" +
+                "    AcceptedLoan a = new AcceptedLoan(); a.setId($l.getId()); a.setPriority(1); insert(a);\n" +
+                "end\n";
+        final IncrementalSession session = new IncrementalSession(RuleBasedInvestmentStrategyTest.compile(drl));
+        final Loan aaaa = RuleBasedInvestmentStrategyTest.mockLoan(1, Rating.AAAA, 30);
+        final Loan d = RuleBasedInvestmentStrategyTest.mockLoan(2, Rating.D, 30);
+        final Loan a = RuleBasedInvestmentStrategyTest.mockLoan(3, Rating.A, 30);
+        final List<Loan> loans = Arrays.asList(aaaa, d, a);
+        final PortfolioOverview portfolio = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        Assertions.assertThat(session.evaluate(loans, portfolio).getMatchingLoans()).containsExactly(aaaa, d, a);
+        Assertions.assertThat(session.getReevaluatedLoans()).isZero();
+        // only the loan accepted by the rule that reads the wallet is evaluated again
+        final PortfolioOverview lessMoney = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        Mockito.when(lessMoney.getCzkAvailable()).thenReturn(5000);
+        Assertions.assertThat(session.evaluate(loans, lessMoney).getMatchingLoans()).containsExactly(aaaa, d, a);
+        Assertions.assertThat(session.getReevaluatedLoans()).isEqualTo(1);
+        // and its conclusion follows the wallet
+        final PortfolioOverview noMoney = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        Mockito.when(noMoney.getCzkAvailable()).thenReturn(100);
+        Assertions.assertThat(session.evaluate(loans, noMoney).getMatchingLoans()).containsExactly(aaaa, a);
+        Assertions.assertThat(session.getReevaluatedLoans()).isEqualTo(1);
+        // the loan no longer depends on the wallet, yet Drools accepts it once the wallet allows
+        Assertions.assertThat(session.evaluate(loans, lessMoney).getMatchingLoans()).containsExactly(aaaa, d, a);
+        Assertions.assertThat(session.getReevaluatedLoans()).isZero();
+        session.dispose();
+    }
+
+    @Test
+    public void concurrentEvaluation() throws Exception {
+        final RuleBasedInvestmentStrategy is =
+                new RuleBasedInvestmentStrategy(RuleBasedInvestmentStrategyTest.compile(), 2);
+        final ExecutorService e = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = IntStream.range(0, 20).mapToObj(i -> e.submit(() -> {
+                // every thread has its own loans and its own results
+                final Loan aaaa = RuleBasedInvestmentStrategyTest.mockLoan(i * 2, Rating.AAAA, 30);
+                final Loan d = RuleBasedInvestmentStrategyTest.mockLoan(i * 2 + 1, Rating.D, 30);
+                final PortfolioOverview portfolio = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+                Assertions.assertThat(is.getMatchingLoans(Arrays.asList(aaaa, d), portfolio))
+                        .containsExactly(d, aaaa);
+                Assertions.assertThat(is.recommendInvestmentAmount(aaaa, portfolio)).isEqualTo(400);
+                Assertions.assertThat(is.recommendInvestmentAmount(d, portfolio)).isEqualTo(200);
+            })).collect(Collectors.toList());
+            for (final Future<?> f : futures) {
+                f.get(); // rethrows failed assertions
+            }
+        } finally {
+            e.shutdownNow();
+        }
+    }
+
+    @Test
+    public void recoversFromFailedEvaluation() throws InvestmentStrategyParseException {
+        final RuleBasedInvestmentStrategy is =
+                new RuleBasedInvestmentStrategy(RuleBasedInvestmentStrategyTest.compile(), 1);
+        final Loan aaaa = RuleBasedInvestmentStrategyTest.mockLoan(1, Rating.AAAA, 30);
+        final PortfolioOverview portfolio = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        final PortfolioOverview failing = Mockito.mock(PortfolioOverview.class);
+        Mockito.when(failing.getShareOnInvestment(Matchers.any())).thenThrow(new IllegalStateException());
+        Assertions.assertThatThrownBy(() -> is.evaluate(Collections.singletonList(aaaa), failing))
+                .isInstanceOf(IllegalStateException.class);
+        // the only session was replaced and is available again
+        final Evaluation result = is.evaluate(Collections.singletonList(aaaa), portfolio);
+        Assertions.assertThat(result.getMatchingLoans()).containsExactly(aaaa);
+        Assertions.assertThat(result.getRecommendedAmount(aaaa)).isEqualTo(400);
+    }
+
+    @Test
+    public void sessionsCreatedWhenNeeded() throws InvestmentStrategyParseException {
+        final KieBase kieBase = Mockito.spy(RuleBasedInvestmentStrategyTest.compile());
+        final RuleBasedInvestmentStrategy is = new RuleBasedInvestmentStrategy(kieBase, 4);
+        Mockito.verify(kieBase, Mockito.never()).newKieSession();
+        final Loan aaaa = RuleBasedInvestmentStrategyTest.mockLoan(1, Rating.AAAA, 30);
+        final PortfolioOverview portfolio = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        is.evaluate(Collections.singletonList(aaaa), portfolio);
+        is.evaluate(Collections.singletonList(aaaa), portfolio);
+        // sequential evaluations keep reusing the one session
+        Mockito.verify(kieBase, Mockito.times(1)).newKieSession();
+    }
+
+    @Test
+    public void recoversFromErrors() throws InvestmentStrategyParseException {
+        final KieBase kieBase = Mockito.spy(RuleBasedInvestmentStrategyTest.compile());
+        final RuleBasedInvestmentStrategy is = new RuleBasedInvestmentStrategy(kieBase, 1);
+        final Loan aaaa = RuleBasedInvestmentStrategyTest.mockLoan(1, Rating.AAAA, 30);
+        final PortfolioOverview portfolio = RuleBasedInvestmentStrategyTest.mockPortfolio(BigDecimal.ZERO);
+        final PortfolioOverview failing = Mockito.mock(PortfolioOverview.class);
+        Mockito.when(failing.getShareOnInvestment(Matchers.any())).thenThrow(new LinkageError());
+        Assertions.assertThatThrownBy(() -> is.evaluate(Collections.singletonList(aaaa), failing))
+                .isInstanceOf(LinkageError.class);
+        // the broken session is gone, and the failure to create a new one does not leave the pool empty
+        Mockito.doThrow(new LinkageError()).doCallRealMethod().when(kieBase).newKieSession();
+        Assertions.assertThatThrownBy(() -> is.evaluate(Collections.singletonList(aaaa), portfolio))
+                .isInstanceOf(LinkageError.class);
+        final Evaluation result = is.evaluate(Collections.singletonList(aaaa), portfolio);
+        Assertions.assertThat(result.getMatchingLoans()).containsExactly(aaaa);
+        Mockito.verify(kieBase, Mockito.times(3)).newKieSession();
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Lukáš Petrovický
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.triceo.robozonky.strategy.rules;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import com.github.triceo.robozonky.strategy.InvestmentStrategyParseException;
+import org.assertj.core.api.Assertions;
+import org.drools.core.util.Drools;
+import org.junit.Test;
+
+public class StrategyCompilerTest {
+
+    private static final File FILE =
+            new File("src/test/resources/com/github/triceo/robozonky/strategy/rules/ExampleStrategy.xlsx");
+
+    private static File writeJar(final String droolsVersion, final String factsVersion) throws IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(new Attributes.Name("Drools-Version"), droolsVersion);
+        manifest.getMainAttributes().put(new Attributes.Name("RoboZonky-Facts-Version"), factsVersion);
+        final File jar = File.createTempFile("robozonky-", ".jar");
+        try (final JarOutputStream os = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            os.putNextEntry(new JarEntry("strategy.kbase"));
+            new DataOutputStream(os).writeUTF(droolsVersion + '@' + factsVersion); // rules never reached
+            os.closeEntry();
+        }
+        return jar;
+    }
+
+    @Test
+    public void compiledAndLoaded() throws InvestmentStrategyParseException, IOException {
+        final File jar = File.createTempFile("robozonky-", ".jar");
+        StrategyCompiler.compile(StrategyCompilerTest.FILE, jar);
+        try (final JarFile f = new JarFile(jar)) {
+            Assertions.assertThat(f.getManifest().getMainAttributes().getValue("RoboZonky-Strategy-Source"))
+                    .isEqualTo(StrategyCompilerTest.FILE.getName());
+        }
+        Assertions.assertThat(StrategyCompiler.load(jar).getKiePackages()).isNotEmpty();
+    }
+
+    @Test
+    public void differentDroolsVersion() throws IOException {
+        final File jar = StrategyCompilerTest.writeJar("0.0.1", KieBaseCache.getFactsVersion());
+        Assertions.assertThatThrownBy(() -> StrategyCompiler.load(jar))
+                .isInstanceOf(InvestmentStrategyParseException.class)
+                .hasMessageContaining("Drools 0.0.1");
+    }
+
+    @Test
+    public void differentFactsVersion() throws IOException {
+        final File jar = StrategyCompilerTest.writeJar(Drools.getFullVersion(), "0.0.1");
+        Assertions.assertThatThrownBy(() -> StrategyCompiler.load(jar))
+                .isInstanceOf(InvestmentStrategyParseException.class)
+                .hasMessageContaining("facts version 0.0.1");
+    }
+
+    @Test(expected = InvestmentStrategyParseException.class)
+    public void notCompiledStrategy() throws InvestmentStrategyParseException, IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        final File jar = File.createTempFile("robozonky-", ".jar");
+        new JarOutputStream(new FileOutputStream(jar), manifest).close();
+        StrategyCompiler.load(jar);
+    }
+
+}